@@ -2,25 +2,36 @@ package client;
 
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
-import common.TicTacToeService;
-import java.rmi.Naming;
+import common.GameConstants;
+import common.GameOptions;
 
 public class ClientMain {
     public static void main(String[] args) {
         if (args.length < 2) {
-            System.err.println("Usage: java ClientMain <server_ip> <client_ip>");
+            System.err.println("Usage: java ClientMain <server_ip> <client_ip> [board_size] [win_length]");
+            System.err.println("       java ClientMain <server_ip> <client_ip> --watch <session_id>");
             System.exit(1);
         }
         
         try {
             String serverIP = args[0];
             String clientIP = args[1];
+            if (args.length > 3 && args[2].equals("--watch")) {
+                System.setProperty("java.rmi.server.hostname", clientIP);
+                new TicTacToeClient(serverIP, clientIP, GameOptions.STANDARD).watch(Integer.parseInt(args[3]));
+                return;
+            }
+            int boardSize = args.length > 2 ? Integer.parseInt(args[2]) : GameConstants.BOARD_SIZE;
+            // Larger boards default to five in a row (Gomoku style)
+            int winLength = args.length > 3 ? Integer.parseInt(args[3])
+                    : Math.min(boardSize, Math.max(GameConstants.DEFAULT_WIN_LENGTH, 5));
+            GameOptions options = new GameOptions(boardSize, winLength);
             
             // Set client IP property before any RMI operations
             System.setProperty("java.rmi.server.hostname", clientIP);
             
-            TicTacToeService service = (TicTacToeService) Naming.lookup("rmi://" + serverIP + ":1099/TicTacToeService1");
-            TicTacToeClient client = new TicTacToeClient(service, serverIP, clientIP);
+            // start() looks up the service (or opens the NIO connection) itself
+            TicTacToeClient client = new TicTacToeClient(serverIP, clientIP, options);
             client.start();
         } catch (Exception e) {
             e.printStackTrace();
@@ -1,10 +1,13 @@
 package client;
 
+import common.GameEvent;
+import common.NioGameService;
 import common.PlayerCallback;
 import common.TicTacToeService;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 
@@ -16,11 +19,28 @@ public class PlayerCallbackImpl implements PlayerCallback {
     public PlayerCallbackImpl(TicTacToeClient client, String clientIP) throws RemoteException {
         this.client = client;
         this.clientIP = clientIP;
-        System.setProperty("java.rmi.server.hostname", clientIP); 
-        PlayerCallback stub = (PlayerCallback) UnicastRemoteObject.exportObject(this, 5002); 
+        // Over the NIO transport events arrive on the service connection instead
+        if (!NioGameService.isSelected()) {
+            System.setProperty("java.rmi.server.hostname", clientIP);
+            exportOnFreePort();
+        }
         
         startHeartbeatChecker();
     }
+    // Several clients can run on one machine, so take the first free port in 5002-5100
+    private void exportOnFreePort() throws RemoteException {
+        for (int port = 5002; ; port++) {
+            try {
+                UnicastRemoteObject.exportObject(this, port);
+                return;
+            } catch (RemoteException e) {
+                if (port >= 5100 || e.getMessage() == null || !e.getMessage().contains("Port already in use")) {
+                    throw e;
+                }
+            }
+        }
+    }
+
     private void startHeartbeatChecker() {
         new Thread(() -> {
             while (serverAlive.get()) {
@@ -28,12 +48,22 @@ public class PlayerCallbackImpl implements PlayerCallback {
                     Thread.sleep(5000); // Check every 5 seconds
                     if (!serverAlive.get()) break;
                     
-                    // Test server connection using the getter
+                    // Renew our seat's lease once seated; before that just check the server
                     TicTacToeService service = client.getGameService();
-                    if (service != null) {
-                        service.ping(); 
+                    if (service == null) {
+                        continue;
+                    }
+                    if (client.getPlayerId() > 0) {
+                        if (!service.heartbeat(client.getSessionId(), client.getPlayerId())) {
+                            break; // Seat released; the session end event says why
+                        }
+                    } else {
+                        service.ping();
                     }
                 } catch (RemoteException e) {
+                    if (client.reattach()) {
+                        continue;
+                    }
                     serverAlive.set(false);
                     System.err.println("\nError: Server connection lost!");
                     System.exit(1);
@@ -45,29 +75,38 @@ public class PlayerCallbackImpl implements PlayerCallback {
     }
     
     @Override
-    public void updateBoard(char[][] board) throws RemoteException {
-        serverAlive.set(true); // Reset flag on successful communication
-        client.displayBoard(board);
-    }
-    
-    @Override
-    public void notifyTurn() throws RemoteException {
+    public void onEvents(List<GameEvent> events) throws RemoteException {
         serverAlive.set(true); // Reset flag on successful communication
-        client.notifyYourTurn();
-    }
-    
-    @Override
-    public void gameOver(String message) throws RemoteException {
-        client.gameOver(message);
-    }
-    
-    @Override
-    public void displayMessage(String message) throws RemoteException {
-        client.displayMessage(message);
-    }
-    
-    @Override
-    public void notifyNewGame() throws RemoteException {
-        client.handleNewGame();
+        for (GameEvent event : events) {
+            switch (event.getKind()) {
+                case BOARD:
+                    client.applySnapshot(event.getBoard(), event.getSequenceNumber());
+                    break;
+                case MOVE:
+                    client.applyMove(event.getRow(), event.getCol(), event.getSymbol(), event.getSequenceNumber());
+                    break;
+                case TURN:
+                    client.notifyYourTurn();
+                    break;
+                case NEW_GAME:
+                    client.handleNewGame();
+                    break;
+                case WIN:
+                case DRAW:
+                    client.gameResult(event.describe());
+                    break;
+                case REMATCH_PROMPT:
+                    client.rematchPrompt();
+                    break;
+                case SESSION_END:
+                    client.sessionEnded(event.describe());
+                    break;
+                case MOVE_REJECTED:
+                case CHAT:
+                case MESSAGE:
+                    client.displayMessage(event.describe());
+                    break;
+            }
+        }
     }
 }
@@ -5,17 +5,35 @@ import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.util.Scanner;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
+// Console client. Server callbacks only update local state and print, so they return at once;
+// a console thread turns typed lines into commands and the main thread runs them, which is
+// the only place remote calls to the server are made.
 public class TicTacToeClient {
-    private TicTacToeService gameService;
+    // What typed input currently answers
+    private enum Prompt { NONE, MOVE, REMATCH }
+
+    private volatile TicTacToeService gameService;
     private PlayerCallback callback;
-    private int playerId;
+    private GameOptions options;
+    private volatile int sessionId;
+    private volatile int playerId;
+    // Proves the seat is ours when asking a restarted server for it back
+    private volatile long resumeToken;
+    // Local copy of the board, kept current from move deltas
+    private char[][] board;
+    private long lastSequence;
+    private String lastResult = "";
     private Scanner scanner;
+    private volatile Prompt prompt = Prompt.NONE;
+    private final BlockingQueue<Runnable> commands = new LinkedBlockingQueue<>();
     private String serverIP;
     private String clientIP;
 
-    public TicTacToeClient(TicTacToeService service, String serverIP, String clientIP) {
-        this.gameService = service;
+    public TicTacToeClient(String serverIP, String clientIP, GameOptions options) {
+        this.options = options;
         this.serverIP = serverIP;
         this.clientIP = clientIP;
         this.scanner = new Scanner(System.in);
@@ -29,48 +47,85 @@ public class TicTacToeClient {
         return this.gameService;
     }
 
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    // 0 until the server has given us a seat
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    // Called by the heartbeat when the server stops answering: keeps asking for our seat until a
+    // restarted server gives it back (with the board and whose turn it is) or says it is gone
+    public boolean reattach() {
+        if (playerId <= 0) {
+            return false;
+        }
+        System.err.println("\nServer connection lost, trying to get back into session " + sessionId + "...");
+        if (gameService instanceof NioGameService) {
+            ((NioGameService) gameService).close();
+        }
+        long giveUpAt = System.currentTimeMillis() + GameConstants.REATTACH_MILLIS;
+        while (System.currentTimeMillis() < giveUpAt) {
+            try {
+                Thread.sleep(GameConstants.REATTACH_RETRY_MILLIS);
+                TicTacToeService service = lookupService();
+                if (service.resumeGame(sessionId, playerId, resumeToken, callback) == null) {
+                    return false; // The game did not survive
+                }
+                gameService = service;
+                System.out.println("Reconnected to session " + sessionId + ".");
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception e) {
+                // Still down; try again
+            }
+        }
+        return false;
+    }
+
     public void handleNewGame() {
         System.out.println("\n--- NEW GAME STARTED ---");
     }
 
-    public void start() {
-        try {
-            Registry registry;
-        try {
-            registry = LocateRegistry.getRegistry(serverIP, 1099);
-            // Test if registry is actually available
-            registry.list(); // Throw RemoteException if unreachable
-        } catch (RemoteException e) {
-            System.err.println("\nError: Could not connect to server (server unreachable)");
-            System.exit(1);
-            return;
+    // Calls and events share one connection over NIO; over RMI every session is served by the
+    // same endpoint, so one lookup covers the whole game
+    private TicTacToeService lookupService() throws Exception {
+        if (NioGameService.isSelected()) {
+            return NioGameService.connect(serverIP, GameConstants.NIO_PORT);
         }
+        Registry registry = LocateRegistry.getRegistry(serverIP, GameConstants.REGISTRY_PORT);
+        return (TicTacToeService) registry.lookup(GameConstants.SERVICE_NAME);
+    }
 
-            // First lookup the main service to find an available session
-            TicTacToeService lookupService = (TicTacToeService) registry.lookup("TicTacToeService1");
-            String sessionName="";
-            // Get an available session name
+    public void start() {
+        try {
             try {
-                sessionName = lookupService.connectToAvailableSession();
-
-            } catch (Exception e) {
-                System.out.println("Sorry no available sessions.. Please Try Later. \tEXITING.");
-                System.exit(0);
+                gameService = lookupService();
+            } catch (RemoteException e) {
+                System.err.println("\nError: Could not connect to server (server unreachable)");
+                System.exit(1);
+                return;
             }
-            System.out.println("Connecting to session: " + sessionName);
-            // Now connect to the actual game session
-            gameService = (TicTacToeService) registry.lookup(sessionName);
-
-            // Create and register the callback
             callback = new PlayerCallbackImpl(this, clientIP);
-            playerId = gameService.joinGame(callback);
-
-            if (playerId == -1) {
-                System.out.println("Could not join game. Exiting...");
+            JoinResult joined;
+            try {
+                joined = gameService.quickJoin(callback, options);
+            } catch (RemoteException e) {
+                System.out.println("Sorry no available sessions.. Please Try Later. \tEXITING.");
+                System.exit(0);
                 return;
             }
+            sessionId = joined.getSessionId();
+            playerId = joined.getPlayerId();
+            options = joined.getOptions();
+            resumeToken = joined.getResumeToken();
+            System.out.println("Connected to session: " + sessionId + " - " + options);
 
-            System.out.println("Type 'quit' at any time to exit the game.");
+            System.out.println("Type 'quit' at any time to exit the game, or 'chat <message>' to talk to your opponent.");
 
         } catch (RemoteException e) {
             System.err.println("Error: Could not connect to the server. Please check if the server is running.");
@@ -79,119 +134,223 @@ public class TicTacToeClient {
             System.err.println("Error: " + e.toString());
             System.exit(1);
         }
+
+        runConsole();
     }
 
-    public void displayBoard(char[][] board) {
-        System.out.println("\nCurrent Board:");
-        for (int i = 0; i < GameConstants.BOARD_SIZE; i++) {
-            for (int j = 0; j < GameConstants.BOARD_SIZE; j++) {
-                System.out.print(" " + board[i][j] + " ");
-                if (j < GameConstants.BOARD_SIZE - 1) {
-                    System.out.print("|");
-                }
-            }
-            System.out.println();
-            if (i < GameConstants.BOARD_SIZE - 1) {
-                System.out.println("-----------");
-            }
+    // Follows a game without taking a seat until it ends or 'quit' is typed
+    public void watch(int watchedSessionId) {
+        try {
+            gameService = lookupService();
+            callback = new PlayerCallbackImpl(this, clientIP);
+            options = gameService.watchGame(watchedSessionId, callback);
+            sessionId = watchedSessionId;
+            System.out.println("Watching session " + sessionId + " - " + options + ". Type 'quit' to stop.");
+        } catch (Exception e) {
+            System.err.println("Error: Could not watch session " + watchedSessionId + ": " + e.getMessage());
+            System.exit(1);
         }
-        System.out.println();
+        runConsole();
     }
 
-    public void notifyYourTurn() {
-        System.out.println("\nIt's your turn! Enter row and column (0-2) separated by space:");
-        try {
-            String input = scanner.nextLine().trim();
+    private void runConsole() {
+        Thread input = new Thread(this::readConsole, "console-input");
+        input.setDaemon(true);
+        input.start();
+        runCommands();
+    }
 
-            if (input.equalsIgnoreCase("quit")) {
-                quit(); 
+    // Runs queued commands on the calling thread until the client exits
+    private void runCommands() {
+        while (true) {
+            try {
+                commands.take().run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 return;
+            } catch (RuntimeException e) {
+                System.err.println("Error: " + e.getMessage());
             }
+        }
+    }
 
-            String[] parts = input.split(" ");
-            if (parts.length != 2) {
-                System.out.println("Invalid input. Please enter row and column separated by space.");
-                notifyYourTurn();
-                return;
-            }
+    private void readConsole() {
+        while (scanner.hasNextLine()) {
+            handleInput(scanner.nextLine().trim());
+        }
+        // End of input (Ctrl+D or a closed pipe): leave the game
+        commands.offer(this::quit);
+    }
 
-            int row = Integer.parseInt(parts[0]);
-            int col = Integer.parseInt(parts[1]);
+    private void handleInput(String input) {
+        if (input.equalsIgnoreCase("quit")) {
+            commands.offer(this::quit);
+            return;
+        }
+        if (input.toLowerCase().startsWith("chat ")) {
+            String text = input.substring("chat ".length());
+            commands.offer(() -> sendChat(text));
+            return;
+        }
+        switch (prompt) {
+            case MOVE:
+                readMove(input);
+                break;
+            case REMATCH:
+                readRematchAnswer(input.toLowerCase());
+                break;
+            default:
+                if (!input.isEmpty()) {
+                    System.out.println("Please wait for your turn.");
+                }
+        }
+    }
 
-            boolean validMove = gameService.makeMove(playerId, row, col);
-            if (!validMove) {
-                notifyYourTurn();
-            }
+    private void readMove(String input) {
+        String[] parts = input.split("\\s+");
+        if (parts.length != 2) {
+            System.out.println("Invalid input. Please enter row and column separated by space.");
+            return;
+        }
+        int row;
+        int col;
+        try {
+            row = Integer.parseInt(parts[0]);
+            col = Integer.parseInt(parts[1]);
         } catch (NumberFormatException e) {
             System.out.println("Please enter numbers only.");
-            notifyYourTurn();
+            return;
+        }
+        prompt = Prompt.NONE;
+        commands.offer(() -> submitMove(row, col));
+    }
+
+    private void readRematchAnswer(String response) {
+        if (!response.equals("yes") && !response.equals("no")) {
+            System.out.println("Invalid input. Please enter yes, no or quit:");
+            return;
+        }
+        prompt = Prompt.NONE;
+        commands.offer(() -> answerRematch(response.equals("yes")));
+    }
+
+    private void submitMove(int row, int col) {
+        try {
+            if (!gameService.makeMove(sessionId, playerId, row, col)) {
+                // The server already said why; ask again
+                showMovePrompt();
+            }
+        } catch (RemoteException e) {
+            // The heartbeat reconnects if the server comes back, and it resends our turn
+            System.err.println("Error: Could not reach the server. Waiting for it to come back...");
+        }
+    }
+
+    private void answerRematch(boolean yes) {
+        System.out.println("Sending response: " + (yes ? "yes" : "no"));
+        try {
+            gameService.playAgain(sessionId, playerId, yes);
+            if (!yes) {
+                System.out.println("Thank you for playing! Goodbye.");
+                quit();
+            }
         } catch (RemoteException e) {
-            System.err.println("Error: Could not reach the server. The game might be over or the server is down.");
+            System.err.println("Error: Could not reach the server. The game session might have ended.");
             quit();
-        } catch (Exception e) {
-            System.err.println("Error: " + e.getMessage());
-            quit(); // Ensure clean exit on any error
         }
     }
 
-    public void gameOver(String message) {
-        System.out.println("\n" + message);
-        System.out.println("Enter your choice (yes/no/quit):");
+    private void sendChat(String text) {
+        try {
+            gameService.sendChat(sessionId, playerId, text);
+        } catch (RemoteException e) {
+            System.err.println("Error: Could not send the chat message.");
+        }
+    }
 
-        new Thread(() -> {
-            try {
-                String response = scanner.nextLine().trim().toLowerCase();
-                switch (response) {
-                    case "quit":
-                        quit();
-                        break;
-                    case "yes":
-                    case "no":
-                        System.out.println("Sending response: " + response);
-                        try {
-                            gameService.playAgain(playerId, response.equals("yes"));
-                            if (response.equals("no")) {
-                                System.out.println("Thank you for playing! Goodbye.");
-                                Thread.sleep(1000); // Give time for message to display
-                                quit();
-                            }
-                        } catch (RemoteException e) {
-                            System.err.println("Error: Could not reach the server. The game session might have ended.");
-                            quit();
-                        }
-                        break;
-                    default:
-                        System.out.println("Invalid input. Please try again.");
-                        gameOver(message); // Restart the prompt
+    private void requestResync() {
+        try {
+            gameService.resyncBoard(sessionId, playerId);
+        } catch (RemoteException e) {
+            System.err.println("Error: Could not resynchronize the board.");
+        }
+    }
+
+    public synchronized void applySnapshot(char[][] snapshot, long sequenceNumber) {
+        board = snapshot;
+        lastSequence = sequenceNumber;
+        displayBoard(board);
+    }
+
+    public synchronized void applyMove(int row, int col, char symbol, long sequenceNumber) {
+        if (board != null && sequenceNumber <= lastSequence) {
+            return; // Already part of a newer snapshot
+        }
+        if (board == null || sequenceNumber != lastSequence + 1) {
+            // Missed a move; the server queues a full snapshot behind this delta
+            commands.offer(this::requestResync);
+            return;
+        }
+        board[row][col] = symbol;
+        lastSequence = sequenceNumber;
+        displayBoard(board);
+    }
+
+    public void displayBoard(char[][] board) {
+        int size = board.length;
+        System.out.println("\nCurrent Board:");
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                System.out.print(" " + board[i][j] + " ");
+                if (j < size - 1) {
+                    System.out.print("|");
                 }
-            } catch (Exception e) {
-                System.err.println("Error handling input: " + e.getMessage());
-                quit();
             }
-        }).start();
+            System.out.println();
+            if (i < size - 1) {
+                System.out.println("-".repeat(size * 4 - 1));
+            }
+        }
+        System.out.println();
+    }
+
+    public void notifyYourTurn() {
+        showMovePrompt();
+    }
+
+    private void showMovePrompt() {
+        prompt = Prompt.MOVE;
+        System.out.println("\nIt's your turn! Enter row and column (0-" + (options.getBoardSize() - 1)
+                + ") separated by space:");
+    }
+
+    public void gameResult(String result) {
+        lastResult = result;
+        System.out.println("\n" + result);
+    }
+
+    public void rematchPrompt() {
+        prompt = Prompt.REMATCH;
+        System.out.println("\n" + lastResult + "\nDo you want to play again? (yes/no)");
+        System.out.println("Enter your choice (yes/no/quit):");
+    }
+
+    public void sessionEnded(String reason) {
+        prompt = Prompt.NONE;
+        System.out.println("\n" + reason);
+        // Exit from the command thread so this callback still returns to the server
+        commands.offer(() -> System.exit(0));
     }
 
     public void displayMessage(String message) {
-        if (message.startsWith("GAME_OVER|")) {
-            String content = message.substring("GAME_OVER|".length());
-            if (content.startsWith("SESSION_END|")) {
-                // Handle session termination
-                String endMessage = content.substring("SESSION_END|".length());
-                System.out.println("\n" + endMessage);
-                System.exit(0);
-            } else {
-                // Handle normal game over prompt
-                gameOver(content);
-            }
-        } else {
-            System.out.println(message); // Normal message
-        }
+        System.out.println(message);
     }
 
     public void quit() {
         try {
-            if (gameService != null) {
-                gameService.quitGame(playerId);
+            // Spectators hold no seat to give up
+            if (gameService != null && playerId > 0) {
+                gameService.quitGame(sessionId, playerId);
                 System.out.println("Exiting..");
                 System.exit(0);
             }
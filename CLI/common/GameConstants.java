@@ -1,8 +1,25 @@
 package common;
 
 public interface GameConstants {
+    // Default rules; sessions may negotiate larger boards through GameOptions
     int BOARD_SIZE = 3;
+    int DEFAULT_WIN_LENGTH = 3;
+    int MAX_BOARD_SIZE = 19;
     char EMPTY = ' ';
     char PLAYER_X = 'X';
     char PLAYER_O = 'O';
-}
\ No newline at end of file
+
+    // Every session is served by one exported endpoint, so only these two ports need to be open
+    int REGISTRY_PORT = 1099;
+    int SERVICE_PORT = 1100;
+    String SERVICE_NAME = "TicTacToeService";
+
+    // -Dtictactoe.transport=rmi|nio|both on the server, rmi|nio on clients
+    String TRANSPORT_PROPERTY = "tictactoe.transport";
+    // Single multiplexed connection per client when the NIO transport is selected
+    int NIO_PORT = 1101;
+
+    // After losing the server a client keeps asking for its seat back this long, this often
+    long REATTACH_MILLIS = 60_000;
+    long REATTACH_RETRY_MILLIS = 2_000;
+}
@@ -0,0 +1,37 @@
+package common;
+
+import java.io.Serializable;
+
+// Outcome of a quick join: the session handle to use on every later call, the seat taken and
+// the token that lets the player take that seat back with resumeGame after losing the server
+public class JoinResult implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    private final int sessionId;
+    private final int playerId;
+    private final GameOptions options;
+    private final long resumeToken;
+
+    public JoinResult(int sessionId, int playerId, GameOptions options, long resumeToken) {
+        this.sessionId = sessionId;
+        this.playerId = playerId;
+        this.options = options;
+        this.resumeToken = resumeToken;
+    }
+
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public GameOptions getOptions() {
+        return options;
+    }
+
+    public long getResumeToken() {
+        return resumeToken;
+    }
+}
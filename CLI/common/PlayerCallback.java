@@ -2,11 +2,9 @@ package common;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface PlayerCallback extends Remote {
-    void updateBoard(char[][] board) throws RemoteException;
-    void notifyTurn() throws RemoteException;
-    void gameOver(String message) throws RemoteException;
-    void displayMessage(String message) throws RemoteException;
-    void notifyNewGame() throws RemoteException; 
+    // Everything one state transition produced for this player, in order, in one round trip
+    void onEvents(List<GameEvent> events) throws RemoteException;
 }
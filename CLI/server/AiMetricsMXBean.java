@@ -0,0 +1,26 @@
+package server;
+
+// JMX view of the computer player, registered as tictactoe:type=Ai
+public interface AiMetricsMXBean {
+    // Moves answered from the precomputed 3x3 table
+    long getTableMoves();
+
+    // Alpha-beta searches on boards between 3x3 and the Monte Carlo size
+    long getSearches();
+
+    double getNodesPerSecond();
+
+    // Deepest completed iteration, averaged over searches
+    double getAverageDepth();
+
+    double getTranspositionHitRate();
+
+    long getTranspositionTableBytes();
+
+    // Tree searches on Gomoku-sized boards
+    long getMonteCarloSearches();
+
+    double getPlayoutsPerSecond();
+
+    double getAverageTreeNodes();
+}
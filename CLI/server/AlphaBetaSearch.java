@@ -0,0 +1,367 @@
+package server;
+
+import common.GameOptions;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Move search for the computer player on boards larger than 3x3: iterative-deepening negamax
+// with alpha-beta over a byte-per-cell board, stopped by a per-move time limit. The evaluation
+// sums every K-cell window that holds stones of only one player and is updated incrementally
+// through the windows that cross the played cell. Positions are keyed by a Zobrist hash folded
+// over the 8 symmetries of the square (the smallest of the 8 hashes), so mirrored or rotated
+// positions share one TranspositionTable entry; stored moves are kept in that canonical frame.
+// Only cells next to a stone are searched. One instance per search; not thread-safe.
+final class AlphaBetaSearch {
+    static final int WIN = 1_000_000_000;
+    private static final int MATE_BOUND = WIN - 1_000;
+    private static final int MAX_PLY = 64;
+    private static final int MAX_CELLS = 19 * 19;
+    // Value of a window holding n stones of one player and none of the other
+    private static final int[] WEIGHTS = {0, 1, 8, 64, 512, 4_096, 32_768};
+
+    // [playerId][cell]; index 0 unused
+    private static final long[][] ZOBRIST = new long[3][MAX_CELLS];
+    private static final long SIDE_KEY;
+    private static final ConcurrentHashMap<GameOptions, Geometry> geometries = new ConcurrentHashMap<>();
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_7AC7_0E5L);
+        for (int player = 1; player <= 2; player++) {
+            for (int cell = 0; cell < MAX_CELLS; cell++) {
+                ZOBRIST[player][cell] = random.nextLong();
+            }
+        }
+        SIDE_KEY = random.nextLong();
+    }
+
+    // Precomputed per board rules and shared by every search on them
+    private static final class Geometry {
+        final int size;
+        final int winLength;
+        final int cells;
+        final int windowCount;
+        final int[][] windowsThrough;
+        final int[][] neighbours;
+        // [symmetry][cell] -> cell in the transformed board, and back
+        final int[][] symmetry = new int[8][];
+        final int[][] inverse = new int[8][];
+        // Keeps boards of different rules apart in the shared table
+        final long salt;
+
+        Geometry(GameOptions options) {
+            size = options.getBoardSize();
+            winLength = options.getWinLength();
+            cells = size * size;
+            salt = new SplittableRandom(size * 31L + winLength).nextLong();
+
+            int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+            int[] through = new int[cells];
+            int[][] windows = new int[4 * cells][];
+            int count = 0;
+            for (int[] d : directions) {
+                for (int row = 0; row < size; row++) {
+                    for (int col = 0; col < size; col++) {
+                        int endRow = row + d[0] * (winLength - 1);
+                        int endCol = col + d[1] * (winLength - 1);
+                        if (endRow < 0 || endRow >= size || endCol < 0 || endCol >= size) {
+                            continue;
+                        }
+                        int[] window = new int[winLength];
+                        for (int i = 0; i < winLength; i++) {
+                            window[i] = (row + d[0] * i) * size + col + d[1] * i;
+                            through[window[i]]++;
+                        }
+                        windows[count++] = window;
+                    }
+                }
+            }
+            windowCount = count;
+            windowsThrough = new int[cells][];
+            for (int cell = 0; cell < cells; cell++) {
+                windowsThrough[cell] = new int[through[cell]];
+                through[cell] = 0;
+            }
+            for (int w = 0; w < count; w++) {
+                for (int cell : windows[w]) {
+                    windowsThrough[cell][through[cell]++] = w;
+                }
+            }
+
+            neighbours = new int[cells][];
+            for (int cell = 0; cell < cells; cell++) {
+                int row = cell / size;
+                int col = cell % size;
+                int[] around = new int[8];
+                int n = 0;
+                for (int dr = -1; dr <= 1; dr++) {
+                    for (int dc = -1; dc <= 1; dc++) {
+                        int r = row + dr;
+                        int c = col + dc;
+                        if ((dr != 0 || dc != 0) && r >= 0 && r < size && c >= 0 && c < size) {
+                            around[n++] = r * size + c;
+                        }
+                    }
+                }
+                neighbours[cell] = Arrays.copyOf(around, n);
+            }
+
+            int last = size - 1;
+            for (int s = 0; s < 8; s++) {
+                symmetry[s] = new int[cells];
+                inverse[s] = new int[cells];
+                for (int cell = 0; cell < cells; cell++) {
+                    int r = cell / size;
+                    int c = cell % size;
+                    int[][] images = {
+                            {r, c}, {c, last - r}, {last - r, last - c}, {last - c, r},
+                            {r, last - c}, {last - r, c}, {c, r}, {last - c, last - r}
+                    };
+                    int image = images[s][0] * size + images[s][1];
+                    symmetry[s][cell] = image;
+                    inverse[s][image] = cell;
+                }
+            }
+        }
+    }
+
+    private final Geometry geometry;
+    private final byte[] board;
+    // Stones per window: [playerId - 1][window]
+    private final int[][] windowStones;
+    // Stones on the 8 cells around each cell
+    private final int[] near;
+    private final long[] hashes = new long[8];
+    private final int[][] moveLists;
+    private final int[] history;
+    // Player 1's evaluation minus player 2's
+    private int eval;
+    private int stones;
+    private int canonicalSymmetry;
+
+    private long deadline;
+    private boolean aborted;
+    private long nodes;
+    private long probes;
+    private long hits;
+    private int rootMove;
+
+    private AlphaBetaSearch(GameOptions options, byte[] position) {
+        geometry = geometries.computeIfAbsent(options, Geometry::new);
+        board = new byte[geometry.cells];
+        windowStones = new int[2][geometry.windowCount];
+        near = new int[geometry.cells];
+        moveLists = new int[MAX_PLY][geometry.cells];
+        history = new int[geometry.cells];
+        for (int cell = 0; cell < geometry.cells; cell++) {
+            if (position[cell] != 0) {
+                place(cell, position[cell]);
+            }
+        }
+    }
+
+    // Best cell for the player to move, searched until the time limit; -1 if the board is full
+    static int bestMove(GameOptions options, byte[] position, int mover, long limitMillis) {
+        long start = System.nanoTime();
+        AlphaBetaSearch search = new AlphaBetaSearch(options, position);
+        search.deadline = start + limitMillis * 1_000_000L;
+        int move = -1;
+        int depth = 0;
+        int empties = search.geometry.cells - search.stones;
+        if (empties == 0) {
+            return -1;
+        }
+        if (search.stones == 0) {
+            move = search.geometry.cells / 2;
+        } else {
+            int maxDepth = Math.min(MAX_PLY - 1, empties);
+            for (int d = 1; d <= maxDepth; d++) {
+                int score = search.negamax(d, 0, -WIN, WIN, mover);
+                if (search.aborted) {
+                    break;
+                }
+                move = search.rootMove;
+                depth = d;
+                // A forced result is not going to change, and the next depth would not finish in time
+                if (Math.abs(score) >= MATE_BOUND || System.nanoTime() - start > limitMillis * 500_000L) {
+                    break;
+                }
+            }
+            if (move < 0) {
+                move = search.firstCandidate();
+            }
+        }
+        ServerMetrics.aiSearchCompleted(search.nodes, System.nanoTime() - start, search.probes, search.hits, depth);
+        return move;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta, int mover) {
+        if ((++nodes & 1023) == 0 && System.nanoTime() > deadline) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (stones == geometry.cells) {
+            return 0;
+        }
+        if (depth == 0) {
+            return mover == 1 ? eval : -eval;
+        }
+
+        long key = canonicalKey(mover);
+        int symmetry = canonicalSymmetry;
+        int ttMove = -1;
+        probes++;
+        long entry = TranspositionTable.probe(key);
+        if (entry != 0) {
+            hits++;
+            int stored = TranspositionTable.move(entry);
+            if (stored >= 0) {
+                ttMove = geometry.inverse[symmetry][stored];
+            }
+            // The root always searches, so it has a move to report
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int flag = TranspositionTable.flag(entry);
+                if (flag == TranspositionTable.EXACT
+                        || (flag == TranspositionTable.LOWER && score >= beta)
+                        || (flag == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int[] moves = moveLists[ply];
+        int count = generate(moves, ttMove);
+        int originalAlpha = alpha;
+        int best = -WIN;
+        int bestMove = -1;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            boolean won = place(move, mover);
+            int score = won ? WIN - ply - 1 : -negamax(depth - 1, ply + 1, -beta, -alpha, 3 - mover);
+            remove(move, mover);
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (ply == 0) {
+                    rootMove = move;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                }
+                if (alpha >= beta) {
+                    history[move] += depth * depth;
+                    break;
+                }
+            }
+        }
+
+        int flag = best <= originalAlpha ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        TranspositionTable.store(key, bestMove < 0 ? -1 : geometry.symmetry[symmetry][bestMove],
+                depth, flag, toTable(best, ply));
+        return best;
+    }
+
+    // Empty cells next to a stone, the table move first and the rest by history score
+    private int generate(int[] moves, int ttMove) {
+        int count = 0;
+        if (ttMove >= 0 && board[ttMove] == 0) {
+            moves[count++] = ttMove;
+        }
+        int sorted = count;
+        for (int cell = 0; cell < geometry.cells; cell++) {
+            if (board[cell] != 0 || near[cell] == 0 || cell == ttMove) {
+                continue;
+            }
+            int score = history[cell];
+            int i = count++;
+            while (i > sorted && history[moves[i - 1]] < score) {
+                moves[i] = moves[i - 1];
+                i--;
+            }
+            moves[i] = cell;
+        }
+        return count;
+    }
+
+    private int firstCandidate() {
+        int[] moves = moveLists[0];
+        return generate(moves, -1) > 0 ? moves[0] : -1;
+    }
+
+    // Returns true if the stone completes a line
+    private boolean place(int cell, int player) {
+        boolean won = false;
+        int[] own = windowStones[player - 1];
+        for (int w : geometry.windowsThrough[cell]) {
+            eval -= windowValue(w);
+            if (++own[w] == geometry.winLength) {
+                won = true;
+            }
+            eval += windowValue(w);
+        }
+        board[cell] = (byte) player;
+        stones++;
+        for (int around : geometry.neighbours[cell]) {
+            near[around]++;
+        }
+        for (int s = 0; s < 8; s++) {
+            hashes[s] ^= ZOBRIST[player][geometry.symmetry[s][cell]];
+        }
+        return won;
+    }
+
+    private void remove(int cell, int player) {
+        int[] own = windowStones[player - 1];
+        for (int w : geometry.windowsThrough[cell]) {
+            eval -= windowValue(w);
+            own[w]--;
+            eval += windowValue(w);
+        }
+        board[cell] = 0;
+        stones--;
+        for (int around : geometry.neighbours[cell]) {
+            near[around]--;
+        }
+        for (int s = 0; s < 8; s++) {
+            hashes[s] ^= ZOBRIST[player][geometry.symmetry[s][cell]];
+        }
+    }
+
+    private int windowValue(int w) {
+        int x = windowStones[0][w];
+        int o = windowStones[1][w];
+        if (x > 0) {
+            return o > 0 ? 0 : WEIGHTS[Math.min(x, WEIGHTS.length - 1)];
+        }
+        return o > 0 ? -WEIGHTS[Math.min(o, WEIGHTS.length - 1)] : 0;
+    }
+
+    // Smallest of the 8 symmetric hashes; records which symmetry produced it
+    private long canonicalKey(int mover) {
+        int symmetry = 0;
+        for (int s = 1; s < 8; s++) {
+            if (hashes[s] < hashes[symmetry]) {
+                symmetry = s;
+            }
+        }
+        canonicalSymmetry = symmetry;
+        return hashes[symmetry] ^ geometry.salt ^ (mover == 2 ? SIDE_KEY : 0);
+    }
+
+    // Win scores count plies from the root; the table stores them relative to the position
+    private static int toTable(int score, int ply) {
+        return score >= MATE_BOUND ? score + ply : score <= -MATE_BOUND ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score >= MATE_BOUND ? score - ply : score <= -MATE_BOUND ? score + ply : score;
+    }
+}
@@ -0,0 +1,33 @@
+package server;
+
+import common.GameEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Collects the events one state transition produces for each player and hands every player's
+// list to its channel in one piece, so the whole transition costs one onEvents round trip
+final class EventBatch {
+    private final Map<PlayerChannel, List<GameEvent>> events = new IdentityHashMap<>(4);
+
+    void add(PlayerChannel channel, GameEvent event) {
+        if (channel != null) {
+            events.computeIfAbsent(channel, key -> new ArrayList<>(4)).add(event);
+        }
+    }
+
+    void addAll(Collection<PlayerChannel> channels, GameEvent event) {
+        for (PlayerChannel channel : channels) {
+            add(channel, event);
+        }
+    }
+
+    // Called by GameSession.commit in version order so transitions reach each channel in order
+    void flush() {
+        events.forEach(PlayerChannel::send);
+        events.clear();
+    }
+}
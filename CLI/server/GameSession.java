@@ -0,0 +1,674 @@
+package server;
+
+import common.*;
+
+import java.rmi.RemoteException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// State and rules of one match. Sessions are plain objects; remote calls reach them
+// through the single exported TicTacToeServiceImpl using the session id as handle.
+// Rules state lives in an immutable GameState advanced with compareAndSet: moves take no lock,
+// and a rejected move is decided against the current snapshot alone. gameLock only serializes
+// seating, rematch answers and the rematch/idle timers; events are handed to the channels
+// (an in-memory queue, never a remote call) in transition order by commit().
+public class GameSession {
+    private static final int MAX_CHAT_LENGTH = 200;
+    private static final long REMATCH_TIMEOUT_SECONDS = 30;
+    // 0 disables the timer
+    private static final long IDLE_TIMEOUT_SECONDS = Long.getLong("tictactoe.idleTimeoutSeconds", 600);
+    private static final long MOVE_TIMEOUT_SECONDS = Long.getLong("tictactoe.moveTimeoutSeconds", 0);
+    // Console output is synchronized, so logging every move would serialize all sessions
+    private static final boolean LOG_MOVES = Boolean.getBoolean("tictactoe.logMoves");
+
+    // Reassigned when a pooled session is reused for a new match
+    private volatile int sessionId;
+    private final GameOptions options;
+    // Timers on the shared wheel, guarded by gameLock. A task acts only while its field still
+    // holds an expired timeout, so a timer that fires just after being replaced or cancelled
+    // does nothing.
+    private TimerWheel.Timeout rematchTimer;
+    private TimerWheel.Timeout idleTimer;
+    // Deadline of the current turn; its task acts only while the state it was armed for is current
+    private final AtomicReference<TimerWheel.Timeout> moveTimer = new AtomicReference<>();
+    private volatile long lastActivity;
+    private final AtomicReference<Runnable> cleanupCallback = new AtomicReference<>();
+    private final AtomicReference<GameState> state;
+    // Version of the newest state whose events have been handed to the channels
+    private final AtomicLong publishedVersion = new AtomicLong();
+    private final Map<Integer, PlayerChannel> players;
+    private final Map<Integer, Boolean> playAgainResponses;
+    private final Random random;
+    private final Object gameLock = new Object();
+    // Spectators of the current match, created by the first watcher; guarded by spectatorLock,
+    // which only ever nests inside gameLock, so watching never waits on the players
+    private volatile SpectatorFeed spectators;
+    // Set once the match has ended, until reset() starts the next one; guarded by spectatorLock
+    private boolean spectatorsClosed;
+    private final Object spectatorLock = new Object();
+
+    public GameSession(int sessionId, GameOptions options) {
+        this.sessionId = sessionId;
+        this.options = options;
+        this.state = new AtomicReference<>(GameState.initial(options));
+        this.players = new ConcurrentHashMap<>();
+        this.playAgainResponses = new ConcurrentHashMap<>();
+        this.random = new Random();
+    }
+    
+    // Prepares a pooled session for a new match; the previous one has already ended
+    void reset(int newSessionId) {
+        synchronized (gameLock) {
+            synchronized (spectatorLock) {
+                sessionId = newSessionId;
+                spectators = null;
+                spectatorsClosed = false;
+            }
+            cancelTimers();
+            cleanupCallback.set(null);
+            clearPlayers();
+            playAgainResponses.clear();
+            endMatch(new EventBatch());
+        }
+    }
+
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    public GameOptions getOptions() {
+        return options;
+    }
+
+    public void setCleanupCallback(Runnable callback) {
+        this.cleanupCallback.set(callback);
+    }
+
+    public int getPlayerCount() {
+        return players.size();
+    }
+
+    // Current rules state; a consistent snapshot that no later transition changes
+    GameState getState() {
+        return state.get();
+    }
+
+    public int getWatcherCount() {
+        SpectatorFeed feed = spectators;
+        return feed == null ? 0 : feed.getWatcherCount();
+    }
+
+    // Adds a spectator of the match this object serves under the given id; it is sent the board
+    // as it stands once the game is on, then every move
+    public void watch(int expectedSessionId, PlayerCallback callback) throws RemoteException {
+        SpectatorFeed feed;
+        synchronized (spectatorLock) {
+            if (sessionId != expectedSessionId) {
+                throw new RemoteException("Game session " + expectedSessionId + " no longer exists.");
+            }
+            // A feed created now would never be told the match is over
+            if (spectatorsClosed) {
+                throw new RemoteException("Game session " + expectedSessionId + " has ended.");
+            }
+            feed = spectators;
+            if (feed == null) {
+                feed = new SpectatorFeed(expectedSessionId);
+                spectators = feed;
+            }
+        }
+        feed.add(callback);
+        // Read after the feed is visible, so commit() publishes every later state itself
+        feed.publish(state.get());
+    }
+
+    public int joinGame(PlayerCallback callback) throws RemoteException {
+        synchronized (gameLock) {
+            // Dead players are evicted asynchronously when their lease runs out or a callback
+            // fails, so no remote call happens under the lock
+            touch();
+            if (idleTimer == null && IDLE_TIMEOUT_SECONDS > 0) {
+                idleTimer = TimerWheel.schedule(this::idleExpired, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            if (players.size() >= 2) {
+                new PlayerChannel(callback, ignored -> { }).send(
+                        Collections.singletonList(GameEvent.message("Game is full. Please try again later.")));
+                return -1;
+            }
+    
+            // Assign Player ID (1 or 2)
+            int playerId = players.isEmpty() ? 1 : 2;
+            PlayerChannel channel = new PlayerChannel(callback, this::playerUnreachable);
+            players.put(playerId, channel);
+            channel.startLease();
+            ServerMetrics.playerJoined();
+            // Seats only change while no game is being played, so the state is not moving
+            journal(MoveJournal.Type.JOINED, state.get(), playerId, callback instanceof AiPlayer ? 1 : 0, 0);
+            GameEvent joined = GameEvent.message("You joined as Player " + playerId + (playerId == 1 ? " (X)" : " (O)"));
+
+            if (players.size() < 2) {
+                channel.send(Collections.singletonList(joined));
+                return playerId;
+            }
+
+            // Start game if 2 players are connected
+            playAgainResponses.clear();
+            int firstPlayer = random.nextInt(2) + 1;
+            GameState current;
+            GameState next;
+            EventBatch batch;
+            do {
+                current = state.get();
+                next = current.start(options, firstPlayer);
+                batch = new EventBatch();
+                batch.add(channel, joined);
+                addSnapshot(batch, next);
+                notifyPlayers(batch, "Both players connected. Game starts now!");
+                batch.add(players.get(firstPlayer), GameEvent.turn());
+            } while (!commit(current, next, batch));
+            journal(MoveJournal.Type.GAME_STARTED, next, firstPlayer, 0, 0);
+
+            return playerId;
+        }
+    }
+
+    // A player who lost the connection, or the server, takes the seat back on a new callback and
+    // is sent the whole picture again; false if the seat is no longer held. The token was checked
+    // by the caller.
+    boolean resume(int playerId, PlayerCallback callback) {
+        synchronized (gameLock) {
+            PlayerChannel previous = players.get(playerId);
+            if (previous == null) {
+                return false;
+            }
+            previous.close();
+            PlayerChannel channel = new PlayerChannel(callback, this::playerUnreachable);
+            players.put(playerId, channel);
+            channel.startLease();
+            touch();
+            // Published as its own transition, like a resync, so no move delta can overtake it
+            GameState current;
+            GameState next;
+            EventBatch batch;
+            do {
+                current = state.get();
+                next = current.republish();
+                batch = new EventBatch();
+                batch.add(channel, GameEvent.message("Reattached to session " + sessionId + " as Player " + playerId));
+                batch.add(channel, GameEvent.board(next.getBoard().toCharArray(), next.getSequence()));
+                if (next.isPlaying() && next.getCurrentPlayer() == playerId) {
+                    batch.add(channel, GameEvent.turn());
+                } else if (next.getPhase() == GameState.Phase.FINISHED) {
+                    batch.add(channel, GameEvent.rematchPrompt());
+                }
+            } while (!commit(current, next, batch));
+            return true;
+        }
+    }
+
+    // Rebuilds a match recovered after a restart. Human seats are held by detached channels that
+    // drop their events until the player calls resumeGame; one that nobody claims within
+    // graceNanos lapses like any other lease and ends the match. Computer seats get a new AiPlayer,
+    // which is sent the board and, on its turn, plays on.
+    void restore(GameState recovered, int seatFlags, long graceNanos) {
+        synchronized (gameLock) {
+            touch();
+            if (IDLE_TIMEOUT_SECONDS > 0) {
+                idleTimer = TimerWheel.schedule(this::idleExpired, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            EventBatch batch = new EventBatch();
+            for (int playerId = 1; playerId <= 2; playerId++) {
+                if ((seatFlags & seatBit(playerId)) == 0) {
+                    continue;
+                }
+                if ((seatFlags & computerBit(playerId)) != 0) {
+                    AiPlayer computer = new AiPlayer(sessionId, playerId, options);
+                    PlayerChannel channel = new PlayerChannel(computer, this::playerUnreachable);
+                    players.put(playerId, channel);
+                    channel.startLease();
+                    computer.startHeartbeat();
+                    batch.add(channel, GameEvent.board(recovered.getBoard().toCharArray(), recovered.getSequence()));
+                    if (recovered.isPlaying() && recovered.getCurrentPlayer() == playerId) {
+                        batch.add(channel, GameEvent.turn());
+                    }
+                } else {
+                    PlayerChannel channel = new PlayerChannel(events -> { }, this::playerUnreachable);
+                    players.put(playerId, channel);
+                    channel.startLease(graceNanos);
+                }
+            }
+            GameState current = state.get();
+            publishedVersion.set(current.getVersion());
+            commit(current, recovered, batch);
+        }
+    }
+
+    // Seats held, for snapshots: seatBit for each seated player, computerBit if it is the computer
+    int getSeatFlags() {
+        int flags = 0;
+        for (Map.Entry<Integer, PlayerChannel> entry : players.entrySet()) {
+            int playerId = entry.getKey();
+            flags |= seatBit(playerId);
+            if (entry.getValue().getCallback() instanceof AiPlayer) {
+                flags |= computerBit(playerId);
+            }
+        }
+        return flags;
+    }
+
+    static int seatBit(int playerId) {
+        return 1 << (playerId - 1);
+    }
+
+    static int computerBit(int playerId) {
+        return 4 << (playerId - 1);
+    }
+
+    // Matchmaking path: sits down only while this object still serves the queued session id
+    // and exactly one player is waiting, so the caller always gets seat 2; otherwise returns -1
+    // without notifying the caller
+    int joinWaiting(int expectedSessionId, PlayerCallback callback) throws RemoteException {
+        synchronized (gameLock) {
+            if (sessionId != expectedSessionId || players.size() != 1) {
+                return -1;
+            }
+            return joinGame(callback);
+        }
+    }
+
+    // Lock-free: a move is checked against the current snapshot and installed with
+    // compareAndSet; a rejected move never waits on another call to this session
+    public boolean makeMove(int playerId, int row, int col) throws RemoteException {
+        PlayerChannel playerChannel = players.get(playerId);
+        if (playerChannel == null) {
+            ServerMetrics.moveFromUnseatedPlayer();
+            throw new RemoteException("Player connection lost. Please reconnect.");
+        }
+        playerChannel.renewLease();
+        touch();
+
+        while (true) {
+            GameState current = state.get();
+            if (!current.isPlaying() || playerId != current.getCurrentPlayer()) {
+                return reject(playerChannel, GameEvent.Rejection.NOT_YOUR_TURN);
+            }
+            BitBoard board = current.getBoard();
+            if (!board.inBounds(row, col) || board.isOccupied(row, col)) {
+                return reject(playerChannel, GameEvent.Rejection.INVALID_CELL);
+            }
+
+            GameState next = current.play(row, col);
+            char symbol = (playerId == 1) ? GameConstants.PLAYER_X : GameConstants.PLAYER_O;
+            EventBatch batch = new EventBatch();
+            batch.addAll(players.values(), GameEvent.move(row, col, symbol, next.getSequence()));
+            if (next.getWinner() != 0) {
+                batch.addAll(players.values(), GameEvent.win(playerId));
+                askPlayAgain(batch);
+            } else if (!next.isPlaying()) {
+                batch.addAll(players.values(), GameEvent.draw());
+                askPlayAgain(batch);
+            } else {
+                batch.add(players.get(next.getCurrentPlayer()), GameEvent.turn());
+            }
+            // Losing the race means the other thread's move changed the turn or the cell
+            if (commit(current, next, batch)) {
+                ServerMetrics.moveAccepted();
+                if (!next.isPlaying()) {
+                    ServerMetrics.gameFinished();
+                }
+                journal(MoveJournal.Type.MOVE, next, playerId, row, col);
+                if (LOG_MOVES) {
+                    System.out.println("Accepted move from player " + playerId + ": " + row + "," + col);
+                }
+                return true;
+            }
+        }
+    }
+
+    private static boolean reject(PlayerChannel channel, GameEvent.Rejection reason) {
+        ServerMetrics.moveRejected(reason);
+        channel.send(Collections.singletonList(GameEvent.rejected(reason)));
+        return false;
+    }
+
+    public void quitGame(int playerId) throws RemoteException {
+        synchronized (gameLock) {
+            System.out.println("Processing quit for player " + playerId + " in session " + sessionId);
+            try {
+                // Get the other player ID before removing anyone
+                int otherPlayerId = (playerId == 1) ? 2 : 1;
+                PlayerChannel otherPlayer = players.get(otherPlayerId);
+
+                // Immediately clear both players
+                clearPlayers();
+                playAgainResponses.clear();
+
+                // Notify the other player; delivery failures are ignored once the session is gone
+                EventBatch batch = new EventBatch();
+                batch.add(otherPlayer, GameEvent.sessionEnd(GameEvent.EndReason.OPPONENT_LEFT));
+                GameState ended = endMatch(batch);
+                journal(MoveJournal.Type.QUIT, ended, playerId, 0, 0);
+                matchEnded(GameEvent.EndReason.OPPONENT_LEFT, ended);
+
+                // Trigger cleanup if callback exists
+                runCleanup();
+            } catch (Exception e) {
+                // Suppress all quit-related errors
+            }
+        }
+    }
+
+    public boolean playAgain(int playerId, boolean response) throws RemoteException {
+        synchronized (gameLock) {
+            System.out.println("[SERVER] Received response from Player " + playerId + ": " + response);
+            touch();
+            renewLease(playerId);
+            GameState answered = state.get();
+            journal(MoveJournal.Type.REMATCH_ANSWER, answered, playerId, response ? 1 : 0, 0);
+            // Only an answer to a finished game counts towards a rematch
+            if (!response || answered.getPhase() == GameState.Phase.FINISHED) {
+                playAgainResponses.put(playerId, response);
+            }
+            EventBatch batch = new EventBatch();
+    
+            // Immediately acknowledge receipt
+            GameEvent ack = GameEvent.message((response ? "YES" : "NO") + " ! Waiting for opponent response..");
+            batch.add(players.get(playerId), ack);
+    
+            // If any player responded NO, end the session immediately
+            if (response == false) {
+                System.out.println("[SERVER] Player " + playerId + " declined rematch - ending session");
+                // Notify both players the session is ending
+                batch.addAll(players.values(), GameEvent.sessionEnd(GameEvent.EndReason.REMATCH_DECLINED));
+                clearPlayers();
+                matchEnded(GameEvent.EndReason.REMATCH_DECLINED, endMatch(batch));
+                runCleanup();
+                return false;
+            }
+
+            // If we have both YES responses
+            if (playAgainResponses.size() == 2) {
+                System.out.println("[SERVER] Starting rematch");
+                ServerMetrics.rematchStarted();
+                rematchTimer = cancel(rematchTimer);
+                playAgainResponses.clear();
+
+                // Answers only count once the game has finished, so this starts from a finished game
+                int firstPlayer = random.nextInt(2) + 1;
+                GameState current;
+                GameState next;
+                EventBatch start;
+                do {
+                    current = state.get();
+                    next = current.start(options, firstPlayer);
+                    start = new EventBatch();
+                    start.add(players.get(playerId), ack);
+                    start.addAll(players.values(), GameEvent.newGame());
+                    addSnapshot(start, next);
+                    start.add(players.get(firstPlayer), GameEvent.turn());
+                } while (!commit(current, next, start));
+                journal(MoveJournal.Type.GAME_STARTED, next, firstPlayer, 0, 0);
+                return true;
+            }
+
+            // If only one player responded YES, wait for the other
+            if (playAgainResponses.size() == 1 && rematchTimer == null) {
+                rematchTimer = TimerWheel.schedule(this::rematchExpired, REMATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            batch.flush();
+
+            return true;
+        }
+    }
+
+    public void sendChat(int playerId, String text) throws RemoteException {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        String line = text.length() > MAX_CHAT_LENGTH ? text.substring(0, MAX_CHAT_LENGTH) : text;
+        synchronized (gameLock) {
+            if (!players.containsKey(playerId)) {
+                throw new RemoteException("Player connection lost. Please reconnect.");
+            }
+            renewLease(playerId);
+            touch();
+            EventBatch batch = new EventBatch();
+            batch.addAll(players.values(), GameEvent.chat(playerId, line));
+            batch.flush();
+        }
+    }
+
+    // A server notice to everyone seated, shown as a message rather than as a player's chat
+    void sendNotice(String message) {
+        synchronized (gameLock) {
+            EventBatch batch = new EventBatch();
+            notifyPlayers(batch, message);
+            batch.flush();
+        }
+    }
+
+    // Client heartbeat; false once the player no longer holds a seat here
+    public boolean heartbeat(int playerId) {
+        return renewLease(playerId);
+    }
+
+    private boolean renewLease(int playerId) {
+        PlayerChannel channel = players.get(playerId);
+        if (channel == null) {
+            return false;
+        }
+        channel.renewLease();
+        return true;
+    }
+
+    // A client saw a gap in move sequence numbers; the snapshot is published as its own
+    // transition so it can neither overtake nor be overtaken by a concurrent move
+    public void resyncBoard(int playerId) throws RemoteException {
+        PlayerChannel channel = players.get(playerId);
+        if (channel == null) {
+            throw new RemoteException("Player connection lost. Please reconnect.");
+        }
+        GameState current;
+        GameState next;
+        EventBatch batch;
+        do {
+            current = state.get();
+            next = current.republish();
+            batch = new EventBatch();
+            batch.add(channel, GameEvent.board(next.getBoard().toCharArray(), next.getSequence()));
+        } while (!commit(current, next, batch));
+    }
+
+    private void addSnapshot(EventBatch batch, GameState snapshot) {
+        batch.addAll(players.values(), GameEvent.board(snapshot.getBoard().toCharArray(), snapshot.getSequence()));
+    }
+
+    // Installs next if the state is still expected, then hands the transition's events to the
+    // channels once every earlier transition has handed over its own. Between a winning CAS and
+    // its publication there is only in-memory work, so the wait is a short spin.
+    private boolean commit(GameState expected, GameState next, EventBatch batch) {
+        if (!state.compareAndSet(expected, next)) {
+            return false;
+        }
+        for (int spins = 0; publishedVersion.get() != expected.getVersion(); spins++) {
+            if (spins < 64) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        try {
+            batch.flush();
+            SpectatorFeed feed = spectators;
+            if (feed != null) {
+                feed.publish(next);
+            }
+            if (next.getPhase() != expected.getPhase() || next.getSequence() != expected.getSequence()) {
+                armMoveTimer(next);
+            }
+        } finally {
+            // Even if publishing failed, later transitions must not wait on this one forever
+            publishedVersion.set(next.getVersion());
+        }
+        return true;
+    }
+
+    // Back to an empty board with no one to move, publishing the session end notices; returns
+    // the state that ended the match
+    private GameState endMatch(EventBatch batch) {
+        GameState current;
+        GameState next;
+        do {
+            current = state.get();
+            next = current.waiting(options);
+        } while (!commit(current, next, batch));
+        return next;
+    }
+
+    // Invoked on a dispatcher thread when a callback to this channel's player fails
+    private void playerUnreachable(PlayerChannel channel) {
+        for (Map.Entry<Integer, PlayerChannel> entry : players.entrySet()) {
+            // Ignore channels of players who already left this session
+            if (entry.getValue() == channel) {
+                System.out.println("Couldn't Reach Player [Player disconnected]");
+                try {
+                    quitGame(entry.getKey());
+                } catch (RemoteException ignored) {
+                }
+                return;
+            }
+        }
+    }
+
+    private void rematchExpired() {
+        synchronized (gameLock) {
+            if (rematchTimer == null || !rematchTimer.isExpired()) {
+                return;
+            }
+            rematchTimer = null;
+            if (playAgainResponses.size() == 1) { // Still only one response
+                EventBatch timeout = new EventBatch();
+                timeout.addAll(players.values(), GameEvent.sessionEnd(GameEvent.EndReason.REMATCH_TIMEOUT));
+                clearPlayers();
+                matchEnded(GameEvent.EndReason.REMATCH_TIMEOUT, endMatch(timeout));
+                runCleanup();
+            }
+        }
+    }
+
+    // Records player activity; the idle timer is armed on join and pushed back lazily when it fires
+    private void touch() {
+        lastActivity = System.nanoTime();
+    }
+
+    private void idleExpired() {
+        synchronized (gameLock) {
+            if (idleTimer == null || !idleTimer.isExpired()) {
+                return;
+            }
+            idleTimer = null;
+            if (players.isEmpty()) {
+                return;
+            }
+            long remaining = TimeUnit.SECONDS.toNanos(IDLE_TIMEOUT_SECONDS) - (System.nanoTime() - lastActivity);
+            if (remaining > 0) {
+                idleTimer = TimerWheel.schedule(this::idleExpired, remaining, TimeUnit.NANOSECONDS);
+                return;
+            }
+            System.out.println("Session " + sessionId + " expired after " + IDLE_TIMEOUT_SECONDS + "s without activity");
+            EventBatch batch = new EventBatch();
+            batch.addAll(players.values(), GameEvent.sessionEnd(GameEvent.EndReason.IDLE_TIMEOUT));
+            clearPlayers();
+            matchEnded(GameEvent.EndReason.IDLE_TIMEOUT, endMatch(batch));
+            runCleanup();
+        }
+    }
+
+    // Called in publication order for every state that starts a turn or ends play; replaces
+    // the deadline of the previous turn
+    private void armMoveTimer(GameState turn) {
+        TimerWheel.Timeout timer = null;
+        if (turn.isPlaying() && MOVE_TIMEOUT_SECONDS > 0) {
+            timer = TimerWheel.schedule(() -> moveExpired(turn), MOVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        cancel(moveTimer.getAndSet(timer));
+    }
+
+    // The player to move forfeits the game, unless a move or a quit got there first
+    private void moveExpired(GameState turn) {
+        if (state.get() != turn) {
+            return;
+        }
+        GameState next = turn.forfeit();
+        EventBatch batch = new EventBatch();
+        notifyPlayers(batch, "Player " + turn.getCurrentPlayer() + " ran out of time.");
+        batch.addAll(players.values(), GameEvent.win(next.getWinner()));
+        askPlayAgain(batch);
+        if (commit(turn, next, batch)) {
+            ServerMetrics.gameFinished();
+            journal(MoveJournal.Type.FORFEIT, next, turn.getCurrentPlayer(), 0, 0);
+        }
+    }
+
+    private static TimerWheel.Timeout cancel(TimerWheel.Timeout timer) {
+        if (timer != null) {
+            timer.cancel();
+        }
+        return null;
+    }
+
+    private void cancelTimers() {
+        rematchTimer = cancel(rematchTimer);
+        idleTimer = cancel(idleTimer);
+        cancel(moveTimer.getAndSet(null));
+    }
+
+    private void clearPlayers() {
+        for (PlayerChannel channel : players.values()) {
+            channel.close();
+        }
+        players.clear();
+    }
+
+    private void runCleanup() {
+        cancelTimers();
+        Runnable callback = cleanupCallback.get();
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    // Stamped with the version of the state the record belongs to: the one a transition
+    // committed, or the one a seat or rematch answer was taken against. Reading state here
+    // instead could pick up a later commit by another thread. Appending only fills a ring slot.
+    private void journal(MoveJournal.Type type, GameState at, int playerId, int a, int b) {
+        MoveJournal.append(type, sessionId, playerId, a, b, at.getVersion());
+    }
+
+    // Journals the end of the match (ended is the state endMatch committed) and sends its
+    // spectators away
+    private void matchEnded(GameEvent.EndReason reason, GameState ended) {
+        journal(MoveJournal.Type.SESSION_ENDED, ended, 0, reason.ordinal(), 0);
+        SpectatorFeed feed;
+        synchronized (spectatorLock) {
+            spectatorsClosed = true;
+            feed = spectators;
+        }
+        if (feed != null) {
+            feed.end(reason);
+        }
+    }
+
+    private void notifyPlayers(EventBatch batch, String message) {
+        batch.addAll(players.values(), GameEvent.message(message));
+    }
+
+    // Answers are cleared when a game starts and only recorded once it has finished
+    private void askPlayAgain(EventBatch batch) {
+        batch.addAll(players.values(), GameEvent.rematchPrompt());
+    }
+}
@@ -0,0 +1,108 @@
+package server;
+
+import common.GameOptions;
+
+// Immutable snapshot of a match's rules state: board, phase, whose turn it is and the move
+// sequence. GameSession swaps whole snapshots with compareAndSet, so reading the state (and
+// rejecting a move against it) needs no lock. The board of a published state is never mutated.
+final class GameState {
+    enum Phase { WAITING, PLAYING, FINISHED }
+
+    private final BitBoard board;
+    private final Phase phase;
+    private final int currentPlayer;
+    // Last accepted move; never reset so snapshots and deltas stay ordered across rematches
+    private final long sequence;
+    // Bumped by every transition; orders the publication of events
+    private final long version;
+    // Set on the FINISHED state produced by a winning move or a forfeit
+    private final int winner;
+
+    private GameState(BitBoard board, Phase phase, int currentPlayer, long sequence, long version, int winner) {
+        this.board = board;
+        this.phase = phase;
+        this.currentPlayer = currentPlayer;
+        this.sequence = sequence;
+        this.version = version;
+        this.winner = winner;
+    }
+
+    // Rebuilt by Recovery from a snapshot or the journal
+    static GameState restore(BitBoard board, Phase phase, int currentPlayer, long sequence, long version, int winner) {
+        return new GameState(board, phase, currentPlayer, sequence, version, winner);
+    }
+
+    static GameState initial(GameOptions options) {
+        return new GameState(new BitBoard(options), Phase.WAITING, 0, 0, 0, 0);
+    }
+
+    // Empty board, waiting for players
+    GameState waiting(GameOptions options) {
+        return new GameState(new BitBoard(options), Phase.WAITING, 0, sequence, version + 1, 0);
+    }
+
+    // Empty board, firstPlayer to move
+    GameState start(GameOptions options, int firstPlayer) {
+        return new GameState(new BitBoard(options), Phase.PLAYING, firstPlayer, sequence, version + 1, 0);
+    }
+
+    // The current player places a stone at a cell the caller has checked is free
+    GameState play(int row, int col) {
+        BitBoard next = board.withStone(row, col, currentPlayer);
+        if (next.isWinningMove(row, col, currentPlayer)) {
+            return new GameState(next, Phase.FINISHED, currentPlayer, sequence + 1, version + 1, currentPlayer);
+        }
+        if (next.isFull()) {
+            return new GameState(next, Phase.FINISHED, currentPlayer, sequence + 1, version + 1, 0);
+        }
+        return new GameState(next, Phase.PLAYING, opponentOf(currentPlayer), sequence + 1, version + 1, 0);
+    }
+
+    // The current player ran out of time
+    GameState forfeit() {
+        int winner = opponentOf(currentPlayer);
+        return new GameState(board, Phase.FINISHED, currentPlayer, sequence, version + 1, winner);
+    }
+
+    // Same state under a new version, so a full snapshot is published in order with moves
+    GameState republish() {
+        return new GameState(board, phase, currentPlayer, sequence, version + 1, winner);
+    }
+
+    // Same state under the version a journal record gives it
+    GameState withVersion(long newVersion) {
+        return new GameState(board, phase, currentPlayer, sequence, newVersion, winner);
+    }
+
+    BitBoard getBoard() {
+        return board;
+    }
+
+    Phase getPhase() {
+        return phase;
+    }
+
+    boolean isPlaying() {
+        return phase == Phase.PLAYING;
+    }
+
+    int getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    int getWinner() {
+        return winner;
+    }
+
+    static int opponentOf(int playerId) {
+        return playerId == 1 ? 2 : 1;
+    }
+}
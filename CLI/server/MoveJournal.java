@@ -0,0 +1,391 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Append-only record of every seat, game start, move, forfeit, quit, rematch answer and session
+// end, for audits and replays. Records are 32 bytes and go to memory-mapped segment files
+// journal-NNNNNN.log under -Dtictactoe.journalDir. Appending never does I/O and never allocates:
+// the caller claims a slot in a preallocated ring and copies four longs into it. One writer
+// thread copies whatever has been published into the mapped segment and forces it to disk every
+// -Dtictactoe.journalFlushMicros, so all the moves of that interval share one flush (group
+// commit). The caller only waits when the writer has fallen a whole ring behind.
+//
+// Record layout, little-endian longs:
+//   0  epoch millis
+//   8  session id (32) | type (8) | player (8) | a (8) | b (8)
+//   16 state version of the session when the record was taken
+//   24 record number ^ check(first three longs)
+// Record numbers run on across segments, so a record is valid only at its own position and a
+// torn or zero-filled tail fails the check. Records of one session are ordered by state version;
+// two transitions decided on different threads may reach the ring the other way round.
+public final class MoveJournal {
+    public enum Type {
+        // a = board size, b = win length
+        SESSION_CREATED,
+        // a = 1 for the computer player
+        JOINED,
+        // player = who moves first
+        GAME_STARTED,
+        // a = row, b = col
+        MOVE,
+        // player = who ran out of time
+        FORFEIT,
+        QUIT,
+        // a = 1 for yes, 0 for no
+        REMATCH_ANSWER,
+        // a = GameEvent.EndReason ordinal
+        SESSION_ENDED
+    }
+
+    static final int RECORD_BYTES = 32;
+    private static final int WORDS = RECORD_BYTES / Long.BYTES;
+    static final long RECORDS_PER_SEGMENT =
+            (Long.getLong("tictactoe.journalSegmentMegabytes", 64) << 20) / RECORD_BYTES;
+    private static final int RING_RECORDS = Integer.highestOneBit(
+            Math.max(1024, Integer.getInteger("tictactoe.journalBufferRecords", 1 << 16)));
+    // Longest a record waits in the mapped segment before it is forced
+    private static final long FLUSH_NANOS = TimeUnit.MICROSECONDS.toNanos(
+            Long.getLong("tictactoe.journalFlushMicros", 2_000));
+    private static final Type[] TYPES = Type.values();
+
+    private static volatile MoveJournal instance;
+
+    private final Path directory;
+    private final long[] ring = new long[RING_RECORDS * WORDS];
+    // Ring index + 1 of the record in each slot once its words are written
+    private final AtomicLongArray published = new AtomicLongArray(RING_RECORDS);
+    private final AtomicLong claimed = new AtomicLong();
+    // Ring index of the next record the writer takes; everything before it is on disk
+    private volatile long written;
+    private volatile boolean closing;
+    private final Thread writer;
+
+    // Record number of ring index 0
+    private final long firstRecord;
+    // Owned by the writer thread
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentNumber = -1;
+    // Bytes of the current segment written since the last force
+    private int dirtyFrom;
+    private int dirtyTo;
+    // Set when a segment cannot be mapped; the ring is still drained so callers never block
+    private boolean failed;
+
+    private final LongAdder records = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder commitNanos = new LongAdder();
+
+    private MoveJournal(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        this.firstRecord = nextRecordNumber(directory);
+        mapSegment(firstRecord / RECORDS_PER_SEGMENT);
+        this.writer = new Thread(this::run, "journal-writer");
+        writer.setDaemon(true);
+    }
+
+    // -Dtictactoe.journalDir (default "journal"), or null if journaling is disabled with an empty value
+    static Path configuredDirectory() {
+        String dir = System.getProperty("tictactoe.journalDir", "journal");
+        return dir.isEmpty() ? null : Path.of(dir);
+    }
+
+    // Starts journaling under the configured directory; once per process
+    public static synchronized void open() {
+        Path directory = configuredDirectory();
+        if (directory != null) {
+            open(directory);
+        }
+    }
+
+    public static synchronized void open(Path directory) {
+        if (instance != null) {
+            return;
+        }
+        try {
+            MoveJournal journal = new MoveJournal(directory);
+            journal.writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(MoveJournal::close, "journal-close"));
+            instance = journal;
+            System.out.println("Journaling to " + directory.toAbsolutePath() + " from record " + journal.firstRecord);
+        } catch (IOException e) {
+            System.err.println("Could not open move journal: " + e);
+        }
+    }
+
+    // Writes out everything appended so far and stops the writer
+    public static synchronized void close() {
+        MoveJournal journal = instance;
+        if (journal == null) {
+            return;
+        }
+        instance = null;
+        journal.closing = true;
+        LockSupport.unpark(journal.writer);
+        try {
+            journal.writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // One line for logs and benchmarks
+    public static String describe() {
+        long commits = getCommits();
+        return "journal records=" + getRecords() + " commits=" + commits
+                + " recordsPerCommit=" + (commits == 0 ? 0 : getRecords() / commits)
+                + " commitMicros=" + (commits == 0 ? 0 : getCommitNanos() / commits / 1_000)
+                + " backlog=" + getBacklog();
+    }
+
+    public static boolean isOpen() {
+        return instance != null;
+    }
+
+    static void append(Type type, int sessionId, int playerId, int a, int b, long version) {
+        MoveJournal journal = instance;
+        if (journal != null) {
+            journal.claim(System.currentTimeMillis(),
+                    (long) sessionId << 32 | (long) type.ordinal() << 24 | (playerId & 0xFF) << 16
+                            | (a & 0xFF) << 8 | (b & 0xFF),
+                    version);
+        }
+    }
+
+    private void claim(long millis, long fields, long version) {
+        long index = claimed.getAndIncrement();
+        // Only when the writer is a full ring behind; dropping the record would defeat the audit
+        for (int spins = 0; index - written >= RING_RECORDS; spins++) {
+            if (spins < 64) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        int slot = (int) index & (RING_RECORDS - 1);
+        int base = slot * WORDS;
+        ring[base] = millis;
+        ring[base + 1] = fields;
+        ring[base + 2] = version;
+        // Release store: the writer sees the words once it sees the marker
+        published.lazySet(slot, index + 1);
+    }
+
+    // Copies published records into the segment on every wake-up, but forces at most once per
+    // flush interval: the force is the expensive part, and one covers everything copied since
+    private void run() {
+        long next = written;
+        long lastFlush = System.nanoTime();
+        while (true) {
+            int slot;
+            while (published.get(slot = (int) next & (RING_RECORDS - 1)) == next + 1) {
+                put(firstRecord + next, slot * WORDS);
+                next++;
+            }
+            long now = System.nanoTime();
+            long waited = now - lastFlush;
+            if (next > written && (waited >= FLUSH_NANOS || closing)) {
+                flush();
+                lastFlush = System.nanoTime();
+                commitNanos.add(lastFlush - now);
+                commits.increment();
+                records.add(next - written);
+                written = next;
+            } else if (closing) {
+                if (next == claimed.get()) {
+                    unmap();
+                    return;
+                }
+                // A caller claimed a slot and has not published it yet
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(next > written ? FLUSH_NANOS - waited : FLUSH_NANOS);
+            }
+        }
+    }
+
+    private void put(long recordNumber, int base) {
+        if (failed) {
+            return;
+        }
+        long segmentOf = recordNumber / RECORDS_PER_SEGMENT;
+        if (segmentOf != segmentNumber) {
+            try {
+                mapSegment(segmentOf);
+            } catch (IOException e) {
+                System.err.println("Move journal stopped: " + e);
+                failed = true;
+                return;
+            }
+        }
+        long millis = ring[base];
+        long fields = ring[base + 1];
+        long version = ring[base + 2];
+        int offset = (int) (recordNumber % RECORDS_PER_SEGMENT) * RECORD_BYTES;
+        if (dirtyTo == dirtyFrom) {
+            dirtyFrom = offset;
+        }
+        segment.putLong(offset, millis);
+        segment.putLong(offset + 8, fields);
+        segment.putLong(offset + 16, version);
+        segment.putLong(offset + 24, recordNumber ^ check(millis, fields, version));
+        dirtyTo = offset + RECORD_BYTES;
+    }
+
+    // Only the range written since the last flush, so the cost follows the batch and not the segment
+    private void flush() {
+        if (!failed && dirtyTo > dirtyFrom) {
+            segment.force(dirtyFrom, dirtyTo - dirtyFrom);
+        }
+        dirtyFrom = dirtyTo;
+    }
+
+    private void mapSegment(long number) throws IOException {
+        unmap();
+        channel = FileChannel.open(segmentPath(directory, number),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, RECORDS_PER_SEGMENT * RECORD_BYTES);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segmentNumber = number;
+        dirtyFrom = dirtyTo = 0;
+    }
+
+    private void unmap() {
+        if (channel == null) {
+            return;
+        }
+        flush();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("journal-%06d.log", number));
+    }
+
+    // Mixes the record's contents so a zero-filled or half-written slot does not pass
+    static long check(long millis, long fields, long version) {
+        long h = millis * 0x9E3779B97F4A7C15L ^ fields * 0xC2B2AE3D27D4EB4FL ^ version * 0x165667B19E3779F9L;
+        return h ^ h >>> 29 ^ 0x5DEECE66DL;
+    }
+
+    // Number of the newest segment file, or -1 if there is none
+    static long newestSegment(Path directory) throws IOException {
+        long newest = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    newest = Math.max(newest, Long.parseLong(name.substring(8, name.length() - 4)));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return newest;
+    }
+
+    static MappedByteBuffer mapForReading(Path directory, long segmentNumber) throws IOException {
+        try (FileChannel file = FileChannel.open(segmentPath(directory, segmentNumber), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    // First record number after the valid records of the newest segment
+    private static long nextRecordNumber(Path directory) throws IOException {
+        long newest = newestSegment(directory);
+        if (newest < 0) {
+            return 0;
+        }
+        long record = newest * RECORDS_PER_SEGMENT;
+        MappedByteBuffer buffer = mapForReading(directory, newest);
+        for (int offset = 0; offset + RECORD_BYTES <= buffer.capacity(); offset += RECORD_BYTES, record++) {
+            if (!isValid(buffer, offset, record)) {
+                break;
+            }
+        }
+        return record;
+    }
+
+    static boolean isValid(ByteBuffer buffer, int offset, long recordNumber) {
+        long check = check(buffer.getLong(offset), buffer.getLong(offset + 8), buffer.getLong(offset + 16));
+        return (buffer.getLong(offset + 24) ^ check) == recordNumber;
+    }
+
+    // Decoding of the second long of a record
+    static int sessionOf(long fields) {
+        return (int) (fields >>> 32);
+    }
+
+    static Type typeOf(long fields) {
+        int ordinal = (int) (fields >>> 24) & 0xFF;
+        return ordinal < TYPES.length ? TYPES[ordinal] : null;
+    }
+
+    static int playerOf(long fields) {
+        return (int) (fields >>> 16) & 0xFF;
+    }
+
+    static int aOf(long fields) {
+        return (int) (fields >>> 8) & 0xFF;
+    }
+
+    static int bOf(long fields) {
+        return (int) fields & 0xFF;
+    }
+
+    static long getRecords() {
+        MoveJournal journal = instance;
+        return journal == null ? 0 : journal.records.sum();
+    }
+
+    static long getCommits() {
+        MoveJournal journal = instance;
+        return journal == null ? 0 : journal.commits.sum();
+    }
+
+    static long getCommitNanos() {
+        MoveJournal journal = instance;
+        return journal == null ? 0 : journal.commitNanos.sum();
+    }
+
+    // Number the next appended record gets; records before it were appended earlier
+    static long nextRecord() {
+        MoveJournal journal = instance;
+        return journal == null ? -1 : journal.firstRecord + journal.claimed.get();
+    }
+
+    static Path getDirectory() {
+        MoveJournal journal = instance;
+        return journal == null ? null : journal.directory;
+    }
+
+    // Records appended but not yet on disk
+    static long getBacklog() {
+        MoveJournal journal = instance;
+        return journal == null ? 0 : journal.claimed.get() - journal.written;
+    }
+
+    static long getSegment() {
+        MoveJournal journal = instance;
+        return journal == null ? -1 : journal.segmentNumber;
+    }
+}
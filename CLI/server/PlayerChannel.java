@@ -0,0 +1,151 @@
+package server;
+
+import common.GameEvent;
+import common.PlayerCallback;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// Ordered outbound lane to one player's callback. Event batches are queued and delivered in
+// FIFO order on the shared CallbackDispatcher pool, so nothing spawns a thread per notification
+// and a board update can never be overtaken by the turn notice queued after it. Whatever has
+// piled up by the time a drain runs is coalesced into a single onEvents call.
+// A seated player's channel also holds a lease: heartbeats and game calls renew it, and a lease
+// that runs out on the shared TimerWheel evicts the player through the same path as a failed
+// callback, without anyone probing the client.
+public class PlayerChannel implements Runnable {
+    // Upper bound on events per round trip, so one backlog cannot produce a huge RMI payload
+    private static final int MAX_EVENTS_PER_CALL = 64;
+    // Three missed client heartbeats (every 5 seconds); 0 disables leases
+    private static final long LEASE_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("tictactoe.leaseSeconds", 15));
+
+    // Time spent inside remote onEvents calls, across all players
+    private static final LatencyHistogram callbackLatency = new LatencyHistogram();
+
+    private final PlayerCallback callback;
+    private final Consumer<PlayerChannel> onFailure;
+    private final ConcurrentLinkedQueue<List<GameEvent>> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean failed;
+    private volatile boolean closed;
+    private volatile long leaseExpiresAt;
+    private volatile TimerWheel.Timeout leaseTimer;
+
+    public PlayerChannel(PlayerCallback callback, Consumer<PlayerChannel> onFailure) {
+        this.callback = callback;
+        this.onFailure = onFailure;
+    }
+
+    public PlayerCallback getCallback() {
+        return callback;
+    }
+
+    public static LatencyHistogram getCallbackLatency() {
+        return callbackLatency;
+    }
+
+    // Starts lease tracking once the player holds a seat
+    public void startLease() {
+        startLease(LEASE_NANOS);
+    }
+
+    // The first period may be longer than a normal lease, e.g. for a seat restored after a restart
+    public void startLease(long firstPeriodNanos) {
+        if (LEASE_NANOS <= 0) {
+            return;
+        }
+        leaseExpiresAt = System.nanoTime() + firstPeriodNanos;
+        leaseTimer = TimerWheel.schedule(this::checkLease, firstPeriodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // A volatile write; the timer notices the new expiry only when it fires
+    public void renewLease() {
+        leaseExpiresAt = System.nanoTime() + LEASE_NANOS;
+    }
+
+    // The player left the session; events already queued are still delivered
+    public void close() {
+        closed = true;
+        TimerWheel.Timeout timer = leaseTimer;
+        if (timer != null) {
+            timer.cancel();
+        }
+    }
+
+    public void send(List<GameEvent> events) {
+        if (failed || events.isEmpty()) {
+            return;
+        }
+        pending.offer(events);
+        scheduleDrain();
+    }
+
+    @Override
+    public void run() {
+        try {
+            List<GameEvent> batch = new ArrayList<>();
+            List<GameEvent> next;
+            // Batches from one transition are never split across calls
+            while (batch.size() < MAX_EVENTS_PER_CALL && (next = pending.poll()) != null) {
+                batch.addAll(next);
+            }
+            if (batch.isEmpty() || failed) {
+                return;
+            }
+            long start = System.nanoTime();
+            GameEvent.Kind leading = batch.get(0).getKind();
+            try {
+                callback.onEvents(batch);
+                long elapsed = System.nanoTime() - start;
+                callbackLatency.record(elapsed);
+                ServerMetrics.callbackCompleted(leading, elapsed);
+            } catch (RemoteException e) {
+                long elapsed = System.nanoTime() - start;
+                callbackLatency.record(elapsed);
+                ServerMetrics.callbackCompleted(leading, elapsed);
+                ServerMetrics.callbackFailed(e.getClass().getSimpleName());
+                // The player is gone: drop whatever is still queued and let the session react
+                failed = true;
+                pending.clear();
+                onFailure.accept(this);
+            } catch (RuntimeException e) {
+                ServerMetrics.callbackFailed(e.getClass().getSimpleName());
+                System.err.println("Callback notification failed: " + e);
+            }
+        } finally {
+            scheduled.set(false);
+            if (!failed && !pending.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    // Runs on the timer wheel thread
+    private void checkLease() {
+        if (closed || failed) {
+            return;
+        }
+        long remaining = leaseExpiresAt - System.nanoTime();
+        if (remaining > 0) {
+            leaseTimer = TimerWheel.schedule(this::checkLease, remaining, TimeUnit.NANOSECONDS);
+            return;
+        }
+        System.out.println("Player lease expired without a heartbeat");
+        ServerMetrics.callbackFailed("LeaseExpired");
+        failed = true;
+        pending.clear();
+        // Eviction takes the session lock, so keep it off the wheel thread
+        CallbackDispatcher.execute(() -> onFailure.accept(this));
+    }
+
+    private void scheduleDrain() {
+        if (scheduled.compareAndSet(false, true)) {
+            CallbackDispatcher.execute(this);
+        }
+    }
+}
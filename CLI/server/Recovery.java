@@ -0,0 +1,260 @@
+package server;
+
+import common.GameOptions;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Puts the matches that were live when the server stopped back in service, right after the
+// journal is reopened and before the service is exported. It starts from the last
+// SessionSnapshot and replays the journal records appended since, up to where the reopened
+// journal starts: restored computer players may move at once, and those records are new.
+// Replay is split by session id
+// over -Dtictactoe.recoveryThreads threads: each one maps the same journal segments read-only,
+// checks every record (so all stop at the same torn tail) and keeps only the sessions of its own
+// partition, then orders each session's records by state version, applies them and reseats the
+// players. Partitions share nothing until their sessions are registered with TicTacToeServer.
+public final class Recovery {
+    private static final int THREADS = Integer.getInteger("tictactoe.recoveryThreads",
+            Runtime.getRuntime().availableProcessors());
+    // How long a restored seat waits for its player to call resumeGame
+    private static final long GRACE_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("tictactoe.resumeSeconds", 60));
+    private static final int WORDS = MoveJournal.RECORD_BYTES / Long.BYTES;
+
+    private Recovery() {
+    }
+
+    // One session being rebuilt; owned by its partition's thread
+    private static final class Replay {
+        final int sessionId;
+        final GameOptions options;
+        GameState state;
+        int seatFlags;
+        boolean ended;
+        // Records as (version, record number, fields) triples, in journal order until sorted
+        long[] records = new long[0];
+        int recordCount;
+
+        Replay(int sessionId, GameOptions options, GameState state, int seatFlags) {
+            this.sessionId = sessionId;
+            this.options = options;
+            this.state = state;
+            this.seatFlags = seatFlags;
+        }
+
+        void add(long version, long number, long fields) {
+            if (recordCount * WORDS == records.length) {
+                records = Arrays.copyOf(records, Math.max(4 * WORDS, records.length * 2));
+            }
+            int base = recordCount++ * WORDS;
+            records[base] = version;
+            records[base + 1] = number;
+            records[base + 2] = fields;
+        }
+    }
+
+    // Journal records [first, end), in segments mapped once and read by every partition
+    private static final class Tail {
+        final long first;
+        final long end;
+        final MappedByteBuffer[] segments;
+
+        Tail(long first, long end, MappedByteBuffer[] segments) {
+            this.first = first;
+            this.end = end;
+            this.segments = segments;
+        }
+    }
+
+    // Restores from the open journal's directory; returns how many sessions are back in service
+    public static int recover() {
+        Path directory = MoveJournal.getDirectory();
+        if (directory == null) {
+            return 0;
+        }
+        try {
+            return recover(directory, THREADS);
+        } catch (Exception e) {
+            System.err.println("Recovery failed, starting empty: " + e);
+            return 0;
+        }
+    }
+
+    public static int recover(Path directory, int threads) throws Exception {
+        long start = System.nanoTime();
+        long end = directory.equals(MoveJournal.getDirectory()) ? MoveJournal.nextRecord() : Long.MAX_VALUE;
+        SessionSnapshot.Image image = SessionSnapshot.read(directory);
+        long from = image == null ? 0 : image.journalPosition;
+        Tail tail = mapTail(directory, from, end);
+
+        List<Map<Integer, Replay>> partitions = new ArrayList<>();
+        for (int p = 0; p < threads; p++) {
+            partitions.add(new HashMap<>());
+        }
+        int highestId = 0;
+        if (image != null) {
+            highestId = image.nextSessionId - 1;
+            for (SessionSnapshot.Entry entry : image.entries) {
+                partitions.get(Math.floorMod(entry.sessionId, threads)).put(entry.sessionId,
+                        new Replay(entry.sessionId, entry.options, entry.state, entry.seatFlags));
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> results = new ArrayList<>();
+        try {
+            for (int p = 0; p < threads; p++) {
+                int partition = p;
+                results.add(pool.submit(() -> replayPartition(tail, partitions.get(partition), partition, threads)));
+            }
+            long restored = 0;
+            long records = 0;
+            for (Future<long[]> result : results) {
+                long[] counts = result.get();
+                restored += counts[0];
+                records = Math.max(records, counts[1]);
+                highestId = (int) Math.max(highestId, counts[2]);
+            }
+            TicTacToeServer.reserveSessionIds(highestId + 1);
+            System.out.println("Recovered " + restored + " sessions from "
+                    + (image == null ? "no snapshot" : image.entries.size() + " snapshot entries")
+                    + " and " + records + " journal records in " + (System.nanoTime() - start) / 1_000_000
+                    + " ms on " + threads + " threads");
+            return (int) restored;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Tail mapTail(Path directory, long from, long end) throws IOException {
+        long newest = MoveJournal.newestSegment(directory);
+        long firstSegment = from / MoveJournal.RECORDS_PER_SEGMENT;
+        List<MappedByteBuffer> segments = new ArrayList<>();
+        for (long number = firstSegment; number <= newest; number++) {
+            if (!Files.exists(MoveJournal.segmentPath(directory, number))) {
+                break;
+            }
+            segments.add(MoveJournal.mapForReading(directory, number));
+        }
+        return new Tail(from, end, segments.toArray(new MappedByteBuffer[0]));
+    }
+
+    // Returns {sessions restored, records scanned, highest session id seen}
+    private static long[] replayPartition(Tail tail, Map<Integer, Replay> sessions, int partition, int partitions) {
+        long scanned = 0;
+        int highestId = 0;
+        long number = tail.first;
+        scan:
+        for (int s = 0; s < tail.segments.length; s++) {
+            MappedByteBuffer segment = tail.segments[s];
+            int offset = (int) (number % MoveJournal.RECORDS_PER_SEGMENT) * MoveJournal.RECORD_BYTES;
+            for (; offset + MoveJournal.RECORD_BYTES <= segment.capacity(); offset += MoveJournal.RECORD_BYTES, number++) {
+                if (number >= tail.end || !MoveJournal.isValid(segment, offset, number)) {
+                    break scan;
+                }
+                scanned++;
+                long fields = segment.getLong(offset + 8);
+                int sessionId = MoveJournal.sessionOf(fields);
+                highestId = Math.max(highestId, sessionId);
+                if (Math.floorMod(sessionId, partitions) != partition) {
+                    continue;
+                }
+                long version = segment.getLong(offset + 16);
+                Replay replay = sessions.get(sessionId);
+                if (MoveJournal.typeOf(fields) == MoveJournal.Type.SESSION_CREATED) {
+                    // A snapshot entry older than the creation belongs to the object's previous match
+                    if (replay == null || version > replay.state.getVersion()) {
+                        GameOptions options = new GameOptions(MoveJournal.aOf(fields), MoveJournal.bOf(fields));
+                        sessions.put(sessionId, new Replay(sessionId, options, GameState.restore(
+                                new BitBoard(options), GameState.Phase.WAITING, 0, 0, version, 0), 0));
+                    }
+                } else if (replay != null) {
+                    replay.add(version, number, fields);
+                }
+            }
+        }
+
+        long restored = 0;
+        for (Replay replay : sessions.values()) {
+            apply(replay);
+            if (replay.ended || replay.seatFlags == 0) {
+                continue;
+            }
+            GameSession session = SessionPool.acquire(replay.sessionId, replay.options);
+            // Registered first: a restored computer player moves through the service as soon
+            // as it is sent the board, and must find its session
+            TicTacToeServer.restore(session);
+            session.restore(replay.state, replay.seatFlags, GRACE_NANOS);
+            restored++;
+        }
+        return new long[] {restored, scanned, highestId};
+    }
+
+    // Records in state version order (journal order among equal versions). A transition applies
+    // only on top of an older state, so one the snapshot already reflects is skipped; seats are
+    // idempotent.
+    private static void apply(Replay replay) {
+        int count = replay.recordCount;
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        long[] records = replay.records;
+        Arrays.sort(order, (x, y) -> {
+            int byVersion = Long.compare(records[x * WORDS], records[y * WORDS]);
+            return byVersion != 0 ? byVersion : Long.compare(records[x * WORDS + 1], records[y * WORDS + 1]);
+        });
+        for (int i = 0; i < count && !replay.ended; i++) {
+            int base = order[i] * WORDS;
+            long version = records[base];
+            long fields = records[base + 2];
+            int playerId = MoveJournal.playerOf(fields);
+            GameState state = replay.state;
+            boolean newer = version > state.getVersion();
+            switch (MoveJournal.typeOf(fields)) {
+                case JOINED:
+                    replay.seatFlags |= GameSession.seatBit(playerId)
+                            | (MoveJournal.aOf(fields) == 1 ? GameSession.computerBit(playerId) : 0);
+                    break;
+                case GAME_STARTED:
+                    if (newer) {
+                        replay.state = GameState.restore(new BitBoard(replay.options), GameState.Phase.PLAYING,
+                                playerId, state.getSequence(), version, 0);
+                    }
+                    break;
+                case MOVE: {
+                    int row = MoveJournal.aOf(fields);
+                    int col = MoveJournal.bOf(fields);
+                    if (newer && state.isPlaying() && state.getCurrentPlayer() == playerId
+                            && state.getBoard().inBounds(row, col) && !state.getBoard().isOccupied(row, col)) {
+                        replay.state = state.play(row, col).withVersion(version);
+                    }
+                    break;
+                }
+                case FORFEIT:
+                    if (newer && state.isPlaying()) {
+                        replay.state = state.forfeit().withVersion(version);
+                    }
+                    break;
+                case QUIT:
+                case SESSION_ENDED:
+                    replay.ended = true;
+                    break;
+                default:
+                    // Rematch answers are asked again when the players reattach
+            }
+        }
+        replay.records = null;
+    }
+}
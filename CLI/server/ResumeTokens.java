@@ -0,0 +1,97 @@
+package server;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Set;
+
+// Resume tokens prove that a caller of resumeGame is the player who was given the seat. A token
+// is an HMAC of the session id and seat under a server key, so nothing per seat has to be stored:
+// the journal and the snapshots only record which seats are held, and a restarted server hands
+// out and checks the same tokens as long as it finds the same key. The key lives next to the
+// open journal in resume.key; without a journal it is random per process, which still covers a
+// client that lost its connection to a server that kept running. Servers open the journal
+// before taking players, so the key is read before the first token is issued. Anyone who can
+// read the key can forge tokens, so where the file system has POSIX permissions it is readable
+// by the server's own user only.
+final class ResumeTokens {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int KEY_BYTES = 32;
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+    private static final SecretKeySpec key = new SecretKeySpec(loadKey(), ALGORITHM);
+
+    private ResumeTokens() {
+    }
+
+    static long tokenFor(int sessionId, int playerId) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] digest = mac.doFinal(ByteBuffer.allocate(5).putInt(sessionId).put((byte) playerId).array());
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC unavailable", e);
+        }
+    }
+
+    // Compared in constant time so the check does not leak how much of a guess was right
+    static boolean matches(int sessionId, int playerId, long token) {
+        byte[] expected = ByteBuffer.allocate(Long.BYTES).putLong(tokenFor(sessionId, playerId)).array();
+        byte[] given = ByteBuffer.allocate(Long.BYTES).putLong(token).array();
+        return MessageDigest.isEqual(expected, given);
+    }
+
+    private static byte[] loadKey() {
+        byte[] fresh = new byte[KEY_BYTES];
+        new SecureRandom().nextBytes(fresh);
+        Path directory = MoveJournal.getDirectory();
+        if (directory == null) {
+            return fresh;
+        }
+        Path file = directory.resolve("resume.key");
+        try {
+            if (Files.size(file) == KEY_BYTES) {
+                byte[] stored = Files.readAllBytes(file);
+                restrict(file);
+                return stored;
+            }
+        } catch (IOException ignored) {
+            // No key yet
+        }
+        try {
+            // Created with its permissions rather than narrowed afterwards, so it is never readable
+            // by others, even before the key is written
+            Files.deleteIfExists(file);
+            if (isPosix(file)) {
+                Files.createFile(file, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+            }
+            Files.write(file, fresh);
+        } catch (IOException e) {
+            System.err.println("Could not store resume key, tokens will not survive a restart: " + e);
+        }
+        return fresh;
+    }
+
+    // A key stored by an earlier version may still be readable by others
+    private static void restrict(Path file) {
+        try {
+            if (isPosix(file) && !Files.getPosixFilePermissions(file).equals(OWNER_ONLY)) {
+                Files.setPosixFilePermissions(file, OWNER_ONLY);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not make the resume key readable by its owner only: " + e);
+        }
+    }
+
+    private static boolean isPosix(Path file) {
+        return file.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+}
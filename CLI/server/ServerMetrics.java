@@ -0,0 +1,458 @@
+package server;
+
+import common.GameEvent;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide counters behind the JMX beans under "tictactoe:". Recording is a LongAdder
+// increment or a LatencyHistogram bucket update indexed by enum ordinal, so the move and
+// callback paths never allocate; names, maps and rates are only built when a bean is read.
+// Rates per second are sampled once a second on the timer wheel.
+public final class ServerMetrics {
+    private static final GameEvent.Kind[] KINDS = GameEvent.Kind.values();
+    private static final GameEvent.Rejection[] REJECTIONS = GameEvent.Rejection.values();
+
+    private static final LongAdder sessionsCreated = new LongAdder();
+    private static final LongAdder joins = new LongAdder();
+    private static final LongAdder moves = new LongAdder();
+    private static final LongAdder[] rejectedMoves = adders(REJECTIONS.length);
+    // Moves from a player who no longer holds a seat in the session
+    private static final LongAdder unseatedMoves = new LongAdder();
+    private static final LongAdder gamesFinished = new LongAdder();
+    private static final LongAdder rematches = new LongAdder();
+
+    // onEvents latency keyed by the kind of the first event in the batch
+    private static final LatencyHistogram[] callbackLatency = new LatencyHistogram[KINDS.length];
+    private static final ConcurrentHashMap<String, LongAdder> callbackFailures = new ConcurrentHashMap<>();
+
+    // Computer player: table lookups on 3x3, searches on larger boards
+    private static final LongAdder aiTableMoves = new LongAdder();
+    private static final LongAdder aiSearches = new LongAdder();
+    private static final LongAdder aiSearchNodes = new LongAdder();
+    private static final LongAdder aiSearchNanos = new LongAdder();
+    private static final LongAdder aiSearchDepth = new LongAdder();
+    private static final LongAdder aiTableProbes = new LongAdder();
+    private static final LongAdder aiTableHits = new LongAdder();
+    private static final LongAdder aiMonteCarloSearches = new LongAdder();
+    private static final LongAdder aiPlayouts = new LongAdder();
+    private static final LongAdder aiMonteCarloNanos = new LongAdder();
+    private static final LongAdder aiTreeNodes = new LongAdder();
+
+    // Spectators: frames are encoded once per game update, deliveries counted per watcher
+    private static final LongAdder watchers = new LongAdder();
+    private static final LongAdder spectatorFrames = new LongAdder();
+    private static final LongAdder spectatorFrameNanos = new LongAdder();
+    private static final LongAdder spectatorDeliveries = new LongAdder();
+    private static final LongAdder spectatorCatchUps = new LongAdder();
+
+    private static volatile double joinsPerSecond;
+    private static volatile double movesPerSecond;
+    private static volatile boolean registered;
+
+    static {
+        for (int i = 0; i < callbackLatency.length; i++) {
+            callbackLatency[i] = new LatencyHistogram();
+        }
+    }
+
+    private ServerMetrics() {
+    }
+
+    static void sessionCreated() {
+        sessionsCreated.increment();
+    }
+
+    static void playerJoined() {
+        joins.increment();
+    }
+
+    static void moveAccepted() {
+        moves.increment();
+    }
+
+    static void moveRejected(GameEvent.Rejection reason) {
+        rejectedMoves[reason.ordinal()].increment();
+    }
+
+    static void moveFromUnseatedPlayer() {
+        unseatedMoves.increment();
+    }
+
+    static void gameFinished() {
+        gamesFinished.increment();
+    }
+
+    static void rematchStarted() {
+        rematches.increment();
+    }
+
+    static void callbackCompleted(GameEvent.Kind leading, long nanos) {
+        callbackLatency[leading.ordinal()].record(nanos);
+    }
+
+    // Failures are rare, so the lookup by type name is not on the hot path
+    static void callbackFailed(String type) {
+        callbackFailures.computeIfAbsent(type, key -> new LongAdder()).increment();
+    }
+
+    static void aiTableMove() {
+        aiTableMoves.increment();
+    }
+
+    // Once per search with the searcher's own totals, so nodes are not counted one by one
+    static void aiSearchCompleted(long nodes, long nanos, long probes, long hits, int depth) {
+        aiSearches.increment();
+        aiSearchNodes.add(nodes);
+        aiSearchNanos.add(nanos);
+        aiSearchDepth.add(depth);
+        aiTableProbes.add(probes);
+        aiTableHits.add(hits);
+    }
+
+    static void aiMonteCarloCompleted(long playouts, long nanos, long treeNodes) {
+        aiMonteCarloSearches.increment();
+        aiPlayouts.add(playouts);
+        aiMonteCarloNanos.add(nanos);
+        aiTreeNodes.add(treeNodes);
+    }
+
+    static void watcherAdded() {
+        watchers.increment();
+    }
+
+    static void watcherRemoved() {
+        watchers.decrement();
+    }
+
+    static void spectatorFrameEncoded(long nanos) {
+        spectatorFrames.increment();
+        spectatorFrameNanos.add(nanos);
+    }
+
+    static void spectatorDelivered() {
+        spectatorDeliveries.increment();
+    }
+
+    static void spectatorCaughtUp() {
+        spectatorCatchUps.increment();
+    }
+
+    // Registers the beans with the platform MBean server and starts the rate sampler; once per process
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Sessions(), new ObjectName("tictactoe:type=Sessions"));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Gameplay(), new ObjectName("tictactoe:type=Gameplay"));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Callbacks(), new ObjectName("tictactoe:type=Callbacks"));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Ai(), new ObjectName("tictactoe:type=Ai"));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Journal(), new ObjectName("tictactoe:type=Journal"));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Spectators(), new ObjectName("tictactoe:type=Spectators"));
+            registered = true;
+            TimerWheel.schedule(new RateSampler(), 1, TimeUnit.SECONDS);
+            System.out.println("JMX metrics registered under tictactoe:*");
+        } catch (Exception e) {
+            System.err.println("Could not register JMX metrics: " + e);
+        }
+    }
+
+    public static long getTotalJoins() {
+        return joins.sum();
+    }
+
+    public static long getTotalMoves() {
+        return moves.sum();
+    }
+
+    public static double getRematchRate() {
+        long finished = gamesFinished.sum();
+        return finished == 0 ? 0 : rematches.sum() / (double) finished;
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1_000.0;
+    }
+
+    // Reschedules itself on the wheel thread every second
+    private static final class RateSampler implements Runnable {
+        private long lastAt = System.nanoTime();
+        private long lastJoins;
+        private long lastMoves;
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            double seconds = (now - lastAt) / 1e9;
+            long totalJoins = joins.sum();
+            long totalMoves = moves.sum();
+            joinsPerSecond = (totalJoins - lastJoins) / seconds;
+            movesPerSecond = (totalMoves - lastMoves) / seconds;
+            lastAt = now;
+            lastJoins = totalJoins;
+            lastMoves = totalMoves;
+            TimerWheel.schedule(this, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    private static final class Sessions implements SessionMetricsMXBean {
+        @Override
+        public int getActiveSessions() {
+            return TicTacToeServer.getActiveSessionCount();
+        }
+
+        @Override
+        public int getPooledSessions() {
+            return SessionPool.getIdleCount();
+        }
+
+        @Override
+        public long getTotalSessions() {
+            return sessionsCreated.sum();
+        }
+
+        @Override
+        public double getPoolHitRate() {
+            return SessionPool.getHitRate();
+        }
+
+        @Override
+        public long getTotalJoins() {
+            return joins.sum();
+        }
+
+        @Override
+        public double getJoinsPerSecond() {
+            return joinsPerSecond;
+        }
+    }
+
+    private static final class Gameplay implements GameplayMetricsMXBean {
+        @Override
+        public long getTotalMoves() {
+            return moves.sum();
+        }
+
+        @Override
+        public double getMovesPerSecond() {
+            return movesPerSecond;
+        }
+
+        @Override
+        public Map<String, Long> getRejectedMoves() {
+            Map<String, Long> byReason = new LinkedHashMap<>();
+            for (GameEvent.Rejection reason : REJECTIONS) {
+                byReason.put(reason.name(), rejectedMoves[reason.ordinal()].sum());
+            }
+            byReason.put("NOT_SEATED", unseatedMoves.sum());
+            return byReason;
+        }
+
+        @Override
+        public long getGamesFinished() {
+            return gamesFinished.sum();
+        }
+
+        @Override
+        public long getRematches() {
+            return rematches.sum();
+        }
+
+        @Override
+        public double getRematchRate() {
+            return ServerMetrics.getRematchRate();
+        }
+    }
+
+    private static final class Ai implements AiMetricsMXBean {
+        @Override
+        public long getTableMoves() {
+            return aiTableMoves.sum();
+        }
+
+        @Override
+        public long getSearches() {
+            return aiSearches.sum();
+        }
+
+        @Override
+        public double getNodesPerSecond() {
+            long nanos = aiSearchNanos.sum();
+            return nanos == 0 ? 0 : aiSearchNodes.sum() / (nanos / 1e9);
+        }
+
+        @Override
+        public double getAverageDepth() {
+            long searches = aiSearches.sum();
+            return searches == 0 ? 0 : aiSearchDepth.sum() / (double) searches;
+        }
+
+        @Override
+        public double getTranspositionHitRate() {
+            long probes = aiTableProbes.sum();
+            return probes == 0 ? 0 : aiTableHits.sum() / (double) probes;
+        }
+
+        @Override
+        public long getTranspositionTableBytes() {
+            return TranspositionTable.getBytes();
+        }
+
+        @Override
+        public long getMonteCarloSearches() {
+            return aiMonteCarloSearches.sum();
+        }
+
+        @Override
+        public double getPlayoutsPerSecond() {
+            long nanos = aiMonteCarloNanos.sum();
+            return nanos == 0 ? 0 : aiPlayouts.sum() / (nanos / 1e9);
+        }
+
+        @Override
+        public double getAverageTreeNodes() {
+            long searches = aiMonteCarloSearches.sum();
+            return searches == 0 ? 0 : aiTreeNodes.sum() / (double) searches;
+        }
+    }
+
+    // Reads the open journal's own counters; all zero while journaling is off
+    private static final class Journal implements JournalMetricsMXBean {
+        @Override
+        public boolean isOpen() {
+            return MoveJournal.isOpen();
+        }
+
+        @Override
+        public long getRecords() {
+            return MoveJournal.getRecords();
+        }
+
+        @Override
+        public long getCommits() {
+            return MoveJournal.getCommits();
+        }
+
+        @Override
+        public double getAverageRecordsPerCommit() {
+            long commits = MoveJournal.getCommits();
+            return commits == 0 ? 0 : MoveJournal.getRecords() / (double) commits;
+        }
+
+        @Override
+        public double getAverageCommitMicros() {
+            long commits = MoveJournal.getCommits();
+            return commits == 0 ? 0 : micros(MoveJournal.getCommitNanos()) / commits;
+        }
+
+        @Override
+        public long getBacklog() {
+            return MoveJournal.getBacklog();
+        }
+
+        @Override
+        public long getSegment() {
+            return MoveJournal.getSegment();
+        }
+    }
+
+    private static final class Spectators implements SpectatorMetricsMXBean {
+        @Override
+        public long getWatchers() {
+            return watchers.sum();
+        }
+
+        @Override
+        public long getFrames() {
+            return spectatorFrames.sum();
+        }
+
+        @Override
+        public double getAverageFrameEncodeMicros() {
+            long frames = spectatorFrames.sum();
+            return frames == 0 ? 0 : micros(spectatorFrameNanos.sum()) / frames;
+        }
+
+        @Override
+        public long getDeliveries() {
+            return spectatorDeliveries.sum();
+        }
+
+        @Override
+        public long getCatchUps() {
+            return spectatorCatchUps.sum();
+        }
+    }
+
+    private static final class Callbacks implements CallbackMetricsMXBean {
+        @Override
+        public Map<String, Long> getCallCount() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (GameEvent.Kind kind : KINDS) {
+                counts.put(kind.name(), callbackLatency[kind.ordinal()].getCount());
+            }
+            return counts;
+        }
+
+        @Override
+        public Map<String, Double> getLatencyP50Micros() {
+            return percentiles(50);
+        }
+
+        @Override
+        public Map<String, Double> getLatencyP99Micros() {
+            return percentiles(99);
+        }
+
+        @Override
+        public Map<String, Double> getLatencyP999Micros() {
+            return percentiles(99.9);
+        }
+
+        @Override
+        public Map<String, Double> getLatencyMaxMicros() {
+            Map<String, Double> max = new LinkedHashMap<>();
+            for (GameEvent.Kind kind : KINDS) {
+                max.put(kind.name(), micros(callbackLatency[kind.ordinal()].getMax()));
+            }
+            return max;
+        }
+
+        @Override
+        public Map<String, Long> getFailures() {
+            Map<String, Long> failures = new TreeMap<>();
+            callbackFailures.forEach((type, count) -> failures.put(type, count.sum()));
+            return failures;
+        }
+
+        @Override
+        public void resetLatency() {
+            for (LatencyHistogram histogram : callbackLatency) {
+                histogram.reset();
+            }
+        }
+
+        private Map<String, Double> percentiles(double pct) {
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (GameEvent.Kind kind : KINDS) {
+                values.put(kind.name(), micros(callbackLatency[kind.ordinal()].percentile(pct)));
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package server;
+
+import common.GameOptions;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Idle GameSession objects kept for reuse, one free list per board rules. A finished match
+// resets its session and returns it here instead of leaving it to the collector; the next
+// match of the same rules picks it up with a fresh session id.
+public final class SessionPool {
+    private static final ConcurrentHashMap<GameOptions, ConcurrentLinkedQueue<GameSession>> idle =
+            new ConcurrentHashMap<>();
+    private static final AtomicInteger idleCount = new AtomicInteger();
+    private static volatile int capacity = Integer.getInteger("tictactoe.sessionPool", 256);
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder discards = new LongAdder();
+
+    private SessionPool() {
+    }
+
+    public static void setCapacity(int limit) {
+        capacity = Math.max(0, limit);
+    }
+
+    public static int getCapacity() {
+        return capacity;
+    }
+
+    // Fills the pool for the given rules up to its capacity; called once at server startup
+    public static void prewarm(GameOptions options) {
+        ConcurrentLinkedQueue<GameSession> queue = freeList(options);
+        while (reserveSlot()) {
+            queue.offer(new GameSession(0, options));
+        }
+    }
+
+    static GameSession acquire(int sessionId, GameOptions options) {
+        GameSession session = freeList(options).poll();
+        if (session == null) {
+            misses.increment();
+            return new GameSession(sessionId, options);
+        }
+        idleCount.decrementAndGet();
+        hits.increment();
+        session.reset(sessionId);
+        return session;
+    }
+
+    // The session must already be empty and unreachable through its old id
+    static void release(GameSession session) {
+        if (!reserveSlot()) {
+            discards.increment();
+            return;
+        }
+        freeList(session.getOptions()).offer(session);
+    }
+
+    private static boolean reserveSlot() {
+        int current;
+        do {
+            current = idleCount.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!idleCount.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private static ConcurrentLinkedQueue<GameSession> freeList(GameOptions options) {
+        return idle.computeIfAbsent(options, key -> new ConcurrentLinkedQueue<>());
+    }
+
+    public static int getIdleCount() {
+        return idleCount.get();
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    public static long getDiscards() {
+        return discards.sum();
+    }
+
+    public static double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : h / (double) total;
+    }
+
+    public static String describe() {
+        return "sessionPool capacity=" + capacity + " idle=" + idleCount.get()
+                + " hits=" + getHits() + " misses=" + getMisses() + " discards=" + getDiscards()
+                + " hitRate=" + String.format("%.1f%%", getHitRate() * 100);
+    }
+}
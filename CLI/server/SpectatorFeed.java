@@ -0,0 +1,316 @@
+package server;
+
+import common.BroadcastEvents;
+import common.GameConstants;
+import common.GameEvent;
+import common.PlayerCallback;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Spectators of one match. GameSession.commit hands every published state to publish(), which
+// only swaps a reference and, if no fan-out is pending, queues one: the move path does not
+// depend on how many watch, and nothing here takes the session's gameLock. The fan-out thread
+// turns the newest state into a Frame, encoded once as BroadcastEvents shared by all watchers:
+// the delta from the previous frame (a move and its result) and a full board for anyone further
+// behind. Each watcher has at most one call in flight and always sends the newest frame when it
+// gets to run, so a slow watcher skips to the latest board instead of queueing. For a Sink the
+// call lasts until the frame is written out, so a stalled connection holds at most one frame.
+// Calls to watchers run on pools of their own (-Dtictactoe.spectatorThreads each), so spectators
+// never hold up the players' callbacks, and a watcher whose last call took longer than
+// SLOW_CALL_NANOS moves to the second pool, where it cannot hold up the prompt ones.
+final class SpectatorFeed {
+    private static final int THREADS = Integer.getInteger("tictactoe.spectatorThreads",
+            Math.max(8, Runtime.getRuntime().availableProcessors() * 4));
+    private static final long SLOW_CALL_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final ThreadPoolExecutor fanOut = pool("spectator-fanout-", 1);
+    private static final ThreadPoolExecutor prompt = pool("spectator-", THREADS);
+    private static final ThreadPoolExecutor slow = pool("spectator-slow-", THREADS);
+
+    private final int sessionId;
+    private final Set<Watcher> watchers = ConcurrentHashMap.newKeySet();
+    // Newest published state; only moves forward
+    private final AtomicReference<GameState> latest = new AtomicReference<>();
+    private final AtomicBoolean fanOutQueued = new AtomicBoolean();
+    // Newest frame; written under this feed's monitor by the fan-out and by end()
+    private volatile Frame current;
+    private boolean ended;
+
+    // A watcher that takes a frame without waiting for its peer, such as an NIO connection. It
+    // must call written once: true when the frame has been handed to the network, false if the
+    // peer is gone.
+    interface Sink {
+        void send(BroadcastEvents events, Consumer<Boolean> written) throws RemoteException;
+    }
+
+    // What watchers are sent for one published state, built once
+    private static final class Frame {
+        final long version;
+        final long previousVersion;
+        final GameState state;
+        // For watchers that got the previous frame; null if there is nothing new to show them
+        final BroadcastEvents delta;
+        // For everyone else
+        final BroadcastEvents full;
+        final boolean last;
+
+        Frame(long version, long previousVersion, GameState state, BroadcastEvents delta, BroadcastEvents full,
+              boolean last) {
+            this.version = version;
+            this.previousVersion = previousVersion;
+            this.state = state;
+            this.delta = delta;
+            this.full = full;
+            this.last = last;
+        }
+    }
+
+    SpectatorFeed(int sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    // The watcher is sent the board as it is now, then every update
+    void add(PlayerCallback callback) throws RemoteException {
+        Watcher watcher = new Watcher(callback);
+        synchronized (this) {
+            if (ended) {
+                throw new RemoteException("Game session " + sessionId + " has ended.");
+            }
+            watchers.add(watcher);
+        }
+        ServerMetrics.watcherAdded();
+        watcher.wake();
+    }
+
+    int getWatcherCount() {
+        return watchers.size();
+    }
+
+    // Called by GameSession.commit in publication order; constant time whatever the audience
+    void publish(GameState next) {
+        if (next.getPhase() == GameState.Phase.WAITING) {
+            return; // The match is over; end() says why
+        }
+        latest.accumulateAndGet(next, (held, given) ->
+                held == null || given.getVersion() > held.getVersion() ? given : held);
+        if (fanOutQueued.compareAndSet(false, true)) {
+            fanOut.execute(this::fanOut);
+        }
+    }
+
+    // The match is over: watchers are told why, then dropped
+    void end(GameEvent.EndReason reason) {
+        synchronized (this) {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            Frame previous = current;
+            BroadcastEvents notice = encode(Collections.singletonList(GameEvent.sessionEnd(reason)));
+            current = new Frame(Long.MAX_VALUE, previous == null ? -1 : previous.version, null, notice, notice, true);
+        }
+        wakeAll();
+    }
+
+    private static ThreadPoolExecutor pool(String name, int threads) {
+        AtomicInteger counter = new AtomicInteger(1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), task -> {
+                    Thread thread = new Thread(task, name + counter.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private void fanOut() {
+        fanOutQueued.set(false);
+        GameState state = latest.get();
+        synchronized (this) {
+            Frame previous = current;
+            if (ended || state == null || (previous != null && previous.version >= state.getVersion())) {
+                return;
+            }
+            long start = System.nanoTime();
+            BroadcastEvents full = full(state);
+            current = new Frame(state.getVersion(), previous == null ? -1 : previous.version, state,
+                    previous == null ? full : delta(previous.state, state, full), full, false);
+            ServerMetrics.spectatorFrameEncoded(System.nanoTime() - start);
+        }
+        wakeAll();
+    }
+
+    private void wakeAll() {
+        for (Watcher watcher : watchers) {
+            watcher.wake();
+        }
+    }
+
+    // What changed between two frames, or null if watchers need not hear about it. Only one
+    // transition apart can it be told as a delta; frames the fan-out coalesced get the full board.
+    private static BroadcastEvents delta(GameState before, GameState after, BroadcastEvents full) {
+        if (after.getVersion() != before.getVersion() + 1) {
+            return full;
+        }
+        List<GameEvent> events = new ArrayList<>(3);
+        if (before.isPlaying() && after.getSequence() == before.getSequence() + 1) {
+            int cell = placedCell(before.getBoard(), after.getBoard());
+            int size = after.getBoard().getSize();
+            int row = cell / size;
+            int col = cell % size;
+            int playerId = after.getBoard().stoneAt(row, col);
+            char symbol = playerId == 1 ? GameConstants.PLAYER_X : GameConstants.PLAYER_O;
+            events.add(GameEvent.move(row, col, symbol, after.getSequence()));
+            addResult(events, after);
+        } else if (after.isPlaying() && !before.isPlaying()) {
+            events.add(GameEvent.newGame());
+            events.add(GameEvent.board(after.getBoard().toCharArray(), after.getSequence()));
+        } else if (after.getPhase() == before.getPhase()) {
+            return null; // Republished for a player's resync or reattach
+        } else {
+            addResult(events, after); // Forfeit
+        }
+        return encode(events);
+    }
+
+    private static BroadcastEvents full(GameState state) {
+        List<GameEvent> events = new ArrayList<>(2);
+        events.add(GameEvent.board(state.getBoard().toCharArray(), state.getSequence()));
+        addResult(events, state);
+        return encode(events);
+    }
+
+    private static void addResult(List<GameEvent> events, GameState state) {
+        if (state.getPhase() != GameState.Phase.FINISHED) {
+            return;
+        }
+        events.add(state.getWinner() != 0 ? GameEvent.win(state.getWinner()) : GameEvent.draw());
+    }
+
+    // The one cell that is empty before and taken after
+    private static int placedCell(BitBoard before, BitBoard after) {
+        int size = after.getSize();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (before.stoneAt(row, col) == 0 && after.stoneAt(row, col) != 0) {
+                    return row * size + col;
+                }
+            }
+        }
+        throw new IllegalStateException("No new stone between consecutive moves");
+    }
+
+    private static BroadcastEvents encode(List<GameEvent> events) {
+        try {
+            return new BroadcastEvents(events);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode spectator events", e);
+        }
+    }
+
+    // One spectator's lane: scheduled at most once at a time, sends whatever is newest when it runs
+    private final class Watcher implements Runnable {
+        private final PlayerCallback callback;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Version of the last frame sent; only touched while scheduled
+        private long delivered = -1;
+        private volatile boolean lagging;
+        private volatile boolean gone;
+
+        Watcher(PlayerCallback callback) {
+            this.callback = callback;
+        }
+
+        void wake() {
+            if (!gone && scheduled.compareAndSet(false, true)) {
+                (lagging ? slow : prompt).execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            Frame frame = current;
+            try {
+                if (frame == null || frame.version == delivered) {
+                    finish();
+                    return;
+                }
+                BroadcastEvents events = frame.previousVersion == delivered ? frame.delta : frame.full;
+                if (frame.previousVersion != delivered && delivered >= 0) {
+                    ServerMetrics.spectatorCaughtUp();
+                }
+                if (events == null) {
+                    sent(frame);
+                    finish();
+                    return;
+                }
+                long start = System.nanoTime();
+                if (callback instanceof Sink) {
+                    // Still in flight until the frame has gone out, so frames coalesce here and
+                    // not in the connection's queue
+                    ((Sink) callback).send(events, written -> {
+                        if (written) {
+                            delivered(frame, start);
+                        } else {
+                            failed("ConnectionClosed");
+                        }
+                        finish();
+                    });
+                    return;
+                }
+                callback.onEvents(events);
+                delivered(frame, start);
+            } catch (RemoteException | RuntimeException e) {
+                failed(e.getClass().getSimpleName());
+            }
+            finish();
+        }
+
+        private void delivered(Frame frame, long start) {
+            lagging = System.nanoTime() - start > SLOW_CALL_NANOS;
+            ServerMetrics.spectatorDelivered();
+            sent(frame);
+        }
+
+        private void sent(Frame frame) {
+            delivered = frame.version;
+            if (frame.last) {
+                leave();
+            }
+        }
+
+        private void failed(String type) {
+            ServerMetrics.callbackFailed("Spectator" + type);
+            leave();
+        }
+
+        // Ends this turn of the lane, starting another if a newer frame arrived meanwhile
+        private void finish() {
+            scheduled.set(false);
+            Frame newest = current;
+            if (newest != null && newest.version != delivered) {
+                wake();
+            }
+        }
+
+        private void leave() {
+            gone = true;
+            if (watchers.remove(this)) {
+                ServerMetrics.watcherRemoved();
+            }
+        }
+    }
+}
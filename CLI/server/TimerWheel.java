@@ -0,0 +1,177 @@
+package server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+// Process-wide hashed timing wheel for per-session timers (rematch timeout, idle expiry, move
+// deadlines). One daemon thread advances the wheel every tick; scheduling and cancelling are
+// lock-free queue offers, so cost stays flat however many sessions hold timers. Deadlines are
+// rounded up to the tick, which is fine for timeouts measured in seconds. Expired tasks run on
+// the wheel thread and must be short: they take a session lock and queue events, nothing more.
+public final class TimerWheel {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("tictactoe.timerTickMillis", 100));
+    private static final int WHEEL_SIZE = 512;
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private static final Bucket[] wheel = new Bucket[WHEEL_SIZE];
+    private static final ConcurrentLinkedQueue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private static final ConcurrentLinkedQueue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pending = new AtomicInteger();
+    private static final long startTime = System.nanoTime();
+
+    static {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new Bucket();
+        }
+        Thread worker = new Thread(TimerWheel::run, "timer-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private TimerWheel() {
+    }
+
+    public static Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(delay));
+        pending.incrementAndGet();
+        scheduled.offer(timeout);
+        return timeout;
+    }
+
+    // Timers scheduled and neither fired nor cancelled yet
+    public static int getPendingCount() {
+        return pending.get();
+    }
+
+    public static final class Timeout {
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = INIT;
+        // Owned by the wheel thread
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        // Returns false if the task already ran or was cancelled before
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, INIT, CANCELLED)) {
+                return false;
+            }
+            pending.decrementAndGet();
+            cancelled.offer(this);
+            return true;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, INIT, EXPIRED)) {
+                return;
+            }
+            pending.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                System.err.println("Timer task failed: " + t);
+            }
+        }
+    }
+
+    // Doubly linked so cancelled timeouts leave their bucket in O(1); wheel thread only
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        void expire(long now) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0 && timeout.deadline <= now) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    private static void run() {
+        long tick = 0;
+        while (true) {
+            long now = waitForNextTick(tick);
+            Timeout timeout;
+            while ((timeout = cancelled.poll()) != null) {
+                if (timeout.bucket != null) {
+                    timeout.bucket.remove(timeout);
+                }
+            }
+            while ((timeout = scheduled.poll()) != null) {
+                if (timeout.state != Timeout.INIT) {
+                    continue;
+                }
+                long ticks = Math.max(tick, (timeout.deadline + TICK_NANOS - 1) / TICK_NANOS);
+                timeout.remainingRounds = (ticks - tick) / WHEEL_SIZE;
+                wheel[(int) (ticks & MASK)].add(timeout);
+            }
+            wheel[(int) (tick & MASK)].expire(now);
+            tick++;
+        }
+    }
+
+    private static long waitForNextTick(long tick) {
+        long deadline = tick * TICK_NANOS;
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            if (now >= deadline) {
+                return now;
+            }
+            LockSupport.parkNanos(deadline - now);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package server;
+
+// Process-wide transposition table for AlphaBetaSearch, two parallel long arrays sized once from
+// -Dtictactoe.aiTableMegabytes. Entries are always replaced. Searches on several threads share
+// the table without locks: each slot stores key ^ data next to data, so a slot torn by two
+// concurrent writers fails the key check and reads as a miss.
+final class TranspositionTable {
+    static final int EXACT = 0;
+    static final int LOWER = 1;
+    static final int UPPER = 2;
+
+    private static final int BYTES_PER_ENTRY = 16;
+    private static final long BUDGET_BYTES = Long.getLong("tictactoe.aiTableMegabytes", 16) << 20;
+    private static final int ENTRIES = Integer.highestOneBit(
+            (int) Math.max(1024, Math.min(1 << 30, BUDGET_BYTES / BYTES_PER_ENTRY)));
+    private static final int MASK = ENTRIES - 1;
+
+    private static final long[] checks = new long[ENTRIES];
+    private static final long[] entries = new long[ENTRIES];
+
+    private TranspositionTable() {
+    }
+
+    static long getBytes() {
+        return (long) ENTRIES * BYTES_PER_ENTRY;
+    }
+
+    // The packed entry for the key, or 0 if the slot holds something else
+    static long probe(long key) {
+        int slot = (int) key & MASK;
+        long data = entries[slot];
+        return (checks[slot] ^ data) == key ? data : 0;
+    }
+
+    static void store(long key, int move, int depth, int flag, int score) {
+        long data = pack(move, depth, flag, score);
+        int slot = (int) key & MASK;
+        entries[slot] = data;
+        checks[slot] = key ^ data;
+    }
+
+    // Layout: score in the high 32 bits, then flag (2 bits), depth (8 bits) and move + 1 (16 bits);
+    // a stored entry is never 0 because the move field is at least 1
+    private static long pack(int move, int depth, int flag, int score) {
+        return (long) score << 32 | (long) flag << 24 | (long) depth << 16 | (move + 1);
+    }
+
+    static int move(long data) {
+        return (int) (data & 0xFFFF) - 1;
+    }
+
+    static int depth(long data) {
+        return (int) (data >>> 16) & 0xFF;
+    }
+
+    static int flag(long data) {
+        return (int) (data >>> 24) & 0x3;
+    }
+
+    static int score(long data) {
+        return (int) (data >>> 32);
+    }
+}
@@ -0,0 +1,14 @@
+#!/bin/bash
+
+# Builds everything with compile.sh, then runs the hot path regression suite.
+# Results land in bench-results/hotpaths-<timestamp>.json (JMH's JSON layout).
+# Pass a previous results file to fail when anything got slower than the tolerance:
+#   ./bench.sh --baseline bench-results/hotpaths-20250101-120000.json --tolerance 10
+# Other options: --quick (short iterations), --filter <name part>
+
+cd "$(dirname "$0")" || exit 1
+bash compile.sh > /dev/null || exit 1
+
+mkdir -p bench-results
+RESULTS="bench-results/hotpaths-$(date +%Y%m%d-%H%M%S).json"
+java -cp out bench.HotPathBenchmarks --json "$RESULTS" "$@"
@@ -25,4 +25,11 @@ if ! javac -cp out -d out src/client/*.java; then
     exit 1
 fi
 
+# Compile benchmarks (server-side harnesses, not needed by players)
+echo "Compiling benchmarks..."
+if ! javac -cp out -d out src/bench/*.java; then
+    echo "Error compiling benchmarks"
+    exit 1
+fi
+
 echo "Compilation completed successfully!"
@@ -0,0 +1,181 @@
+package bench;
+
+import common.GameConstants;
+import common.GameOptions;
+import server.BitBoard;
+
+import java.util.Random;
+
+// Per-move win + draw evaluation cost. On 3x3 the old char[][] rescans are compared with the
+// BitBoard last-move check; on larger boards a full-board K-in-a-row scan is compared with the
+// incremental check through the last move.
+// Usage: BoardEvaluationBenchmark [positions] [rounds]
+public class BoardEvaluationBenchmark {
+
+    private static class Position {
+        char[][] cells;
+        BitBoard board;
+        int lastRow;
+        int lastCol;
+        int lastPlayer;
+    }
+
+    public static void main(String[] args) {
+        int positions = Stats.argOrDefault(args, 0, 4_096);
+        int rounds = Stats.argOrDefault(args, 1, 500);
+
+        run(GameOptions.STANDARD, positions, rounds);
+        run(new GameOptions(15, 5), positions, rounds / 10);
+    }
+
+    private static void run(GameOptions options, int positions, int rounds) {
+        Position[] sample = randomPositions(options, positions, new Random(42));
+        boolean legacy = options.equals(GameOptions.STANDARD);
+
+        // Warm up both paths before timing them
+        long sink = 0;
+        for (int warmup = 0; warmup < 3; warmup++) {
+            sink += runFullScan(sample, options, rounds / 4, legacy) + runIncremental(sample, rounds / 4);
+        }
+
+        long start = System.nanoTime();
+        sink += runFullScan(sample, options, rounds, legacy);
+        long scanNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        sink += runIncremental(sample, rounds);
+        long bitNanos = System.nanoTime() - start;
+
+        long ops = (long) positions * rounds;
+        System.out.println("board=" + options.getBoardSize() + "x" + options.getBoardSize()
+                + " k=" + options.getWinLength()
+                + " mode=" + (legacy ? "legacy-checkWin" : "full-scan")
+                + " nsPerEval=" + String.format("%.2f", scanNanos / (double) ops));
+        System.out.println("board=" + options.getBoardSize() + "x" + options.getBoardSize()
+                + " k=" + options.getWinLength()
+                + " mode=bitboard-last-move"
+                + " nsPerEval=" + String.format("%.2f", bitNanos / (double) ops)
+                + " sink=" + sink);
+    }
+
+    private static Position[] randomPositions(GameOptions options, int count, Random random) {
+        int size = options.getBoardSize();
+        Position[] result = new Position[count];
+        for (int p = 0; p < count; p++) {
+            Position position = new Position();
+            position.cells = new char[size][size];
+            for (char[] row : position.cells) {
+                java.util.Arrays.fill(row, GameConstants.EMPTY);
+            }
+            position.board = new BitBoard(options);
+            int moves = 1 + random.nextInt(size * size);
+            for (int m = 0; m < moves; m++) {
+                int row;
+                int col;
+                do {
+                    row = random.nextInt(size);
+                    col = random.nextInt(size);
+                } while (position.board.isOccupied(row, col));
+                int player = m % 2 + 1;
+                position.board.place(row, col, player);
+                position.cells[row][col] = player == 1 ? GameConstants.PLAYER_X : GameConstants.PLAYER_O;
+                position.lastRow = row;
+                position.lastCol = col;
+                position.lastPlayer = player;
+            }
+            result[p] = position;
+        }
+        return result;
+    }
+
+    private static long runIncremental(Position[] sample, int rounds) {
+        long hits = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (Position p : sample) {
+                if (p.board.isWinningMove(p.lastRow, p.lastCol, p.lastPlayer) || p.board.isFull()) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    private static long runFullScan(Position[] sample, GameOptions options, int rounds, boolean legacy) {
+        long hits = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (Position p : sample) {
+                boolean won = legacy ? checkWin(p.cells) : scanWin(p.cells, options.getWinLength());
+                if (won || isBoardFull(p.cells)) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    // Verbatim copy of the previous GameSession.checkWin / isBoardFull (3x3 only)
+    private static boolean checkWin(char[][] board) {
+        for (int i = 0; i < board.length; i++) {
+            if (board[i][0] != GameConstants.EMPTY &&
+                    board[i][0] == board[i][1] &&
+                    board[i][1] == board[i][2]) {
+                return true;
+            }
+        }
+        for (int j = 0; j < board.length; j++) {
+            if (board[0][j] != GameConstants.EMPTY &&
+                    board[0][j] == board[1][j] &&
+                    board[1][j] == board[2][j]) {
+                return true;
+            }
+        }
+        if (board[0][0] != GameConstants.EMPTY &&
+                board[0][0] == board[1][1] &&
+                board[1][1] == board[2][2]) {
+            return true;
+        }
+        return board[0][2] != GameConstants.EMPTY &&
+                board[0][2] == board[1][1] &&
+                board[1][1] == board[2][0];
+    }
+
+    private static boolean isBoardFull(char[][] board) {
+        for (char[] row : board) {
+            for (char cell : row) {
+                if (cell == GameConstants.EMPTY) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // What a straightforward N x N generalisation of checkWin would do: test every start cell
+    private static boolean scanWin(char[][] board, int k) {
+        int n = board.length;
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                char owner = board[r][c];
+                if (owner == GameConstants.EMPTY) {
+                    continue;
+                }
+                for (int[] d : directions) {
+                    int endR = r + d[0] * (k - 1);
+                    int endC = c + d[1] * (k - 1);
+                    if (endR < 0 || endR >= n || endC < 0 || endC >= n) {
+                        continue;
+                    }
+                    int i = 1;
+                    while (i < k && board[r + d[0] * i][c + d[1] * i] == owner) {
+                        i++;
+                    }
+                    if (i == k) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,32 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+// Callback round trips per finished game: every event used to be its own remote call, now
+// each state transition reaches a player as one onEvents batch.
+// Usage: CallbackBatchingBenchmark [games] [parallelSessions]
+public class CallbackBatchingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int games = Stats.argOrDefault(args, 0, 2_000);
+        int sessions = Stats.argOrDefault(args, 1, 16);
+
+        for (int s = 0; s < sessions * 2; s++) {
+            RandomBot.join();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+        while (RandomBot.gamesFinished.get() < games && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        long finished = Math.max(1, RandomBot.gamesFinished.get());
+        long events = RandomBot.eventsReceived.get();
+        long calls = RandomBot.callbackCalls.get();
+        System.out.println("games=" + finished
+                + " moves=" + RandomBot.acceptedMoves.get()
+                + " eventsPerGame=" + String.format("%.1f", events / (double) finished)
+                + " roundTripsPerGame=" + String.format("%.1f", calls / (double) finished)
+                + " reduction=" + String.format("%.0f%%", 100.0 * (events - calls) / Math.max(1, events)));
+        System.exit(0);
+    }
+}
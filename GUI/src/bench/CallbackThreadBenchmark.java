@@ -0,0 +1,39 @@
+package bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+// Plays in-process games (accepting every rematch) and reports how many threads the server
+// starts per 1,000 accepted moves.
+// Usage: CallbackThreadBenchmark [moves] [games]
+public class CallbackThreadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int moves = Stats.argOrDefault(args, 0, 20_000);
+        int games = Stats.argOrDefault(args, 1, 16);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        RandomBot.acceptedMoves.get(); // start the bot driver before counting
+
+        long startedBefore = threads.getTotalStartedThreadCount();
+        long start = System.nanoTime();
+        for (int g = 0; g < games * 2; g++) {
+            RandomBot.join();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+        while (RandomBot.acceptedMoves.get() < moves && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        long elapsed = System.nanoTime() - start;
+        long started = threads.getTotalStartedThreadCount() - startedBefore;
+        long played = RandomBot.acceptedMoves.get();
+
+        System.out.println("moves=" + played
+                + " threadsStarted=" + started
+                + " threadsPer1000Moves=" + String.format("%.1f", started * 1000.0 / Math.max(1, played))
+                + " peakThreads=" + threads.getPeakThreadCount()
+                + " movesPerSec=" + (long) (played / (elapsed / 1e9)));
+        System.exit(0);
+    }
+}
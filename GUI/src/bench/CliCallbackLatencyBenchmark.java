@@ -0,0 +1,114 @@
+package bench;
+
+import common.GameConstants;
+import server.LatencyHistogram;
+import server.PlayerChannel;
+import server.TicTacToeServer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Server-side duration of onEvents calls into real CLI clients. Two console clients run as
+// child processes against an in-process server on the standard ports; a scripted "human"
+// answers every prompt after thinkMillis. A client that reads stdin inside the callback holds
+// the call for the whole think time.
+// Usage: CliCallbackLatencyBenchmark <cliClassesDir> [seconds] [thinkMillis]
+public class CliCallbackLatencyBenchmark {
+
+    // Feeds one client's stdin: cycles through the cells (rejected ones are simply re-prompted)
+    // and accepts every rematch
+    static class ScriptedPlayer implements Runnable {
+        private final Process process;
+        private final PrintWriter input;
+        private final ScheduledExecutorService typist;
+        private final long thinkMillis;
+        private final CountDownLatch seated = new CountDownLatch(1);
+        private int nextCell;
+
+        ScriptedPlayer(Process process, ScheduledExecutorService typist, long thinkMillis) {
+            this.process = process;
+            this.input = new PrintWriter(process.getOutputStream(), true);
+            this.typist = typist;
+            this.thinkMillis = thinkMillis;
+        }
+
+        @Override
+        public void run() {
+            try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    if (line.startsWith("You joined as Player")) {
+                        seated.countDown();
+                    } else if (line.startsWith("It's your turn!")) {
+                        int cell = nextCell++ % (GameConstants.BOARD_SIZE * GameConstants.BOARD_SIZE);
+                        type((cell / GameConstants.BOARD_SIZE) + " " + (cell % GameConstants.BOARD_SIZE));
+                    } else if (line.startsWith("Enter your choice (yes/no/quit)")) {
+                        type("yes");
+                    }
+                }
+            } catch (Exception ignored) {
+            }
+        }
+
+        private void type(String line) {
+            typist.schedule(() -> input.println(line), thinkMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: CliCallbackLatencyBenchmark <cliClassesDir> [seconds] [thinkMillis]");
+            System.exit(1);
+        }
+        String cliClasses = args[0];
+        int seconds = Stats.argOrDefault(args, 1, 20);
+        int thinkMillis = Stats.argOrDefault(args, 2, 200);
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setProperty("java.rmi.server.hostname", "127.0.0.1");
+        Registry registry = LocateRegistry.createRegistry(GameConstants.REGISTRY_PORT);
+        TicTacToeServer.exportService(registry, GameConstants.SERVICE_PORT);
+
+        ScheduledExecutorService typist = Executors.newSingleThreadScheduledExecutor();
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> clients = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Process process = new ProcessBuilder(java, "-cp", cliClasses, "client.ClientMain", "127.0.0.1", "127.0.0.1")
+                    .redirectErrorStream(true)
+                    .start();
+            clients.add(process);
+            ScriptedPlayer player = new ScriptedPlayer(process, typist, thinkMillis);
+            Thread reader = new Thread(player);
+            reader.setDaemon(true);
+            reader.start();
+            // Join one at a time so both land in the same session
+            player.seated.await(30, TimeUnit.SECONDS);
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        LatencyHistogram latency = PlayerChannel.getCallbackLatency();
+        out.println("cli callbacks=" + latency.getCount()
+                + " thinkMillis=" + thinkMillis
+                + " p50us=" + Stats.micros(latency.percentile(50))
+                + " p90us=" + Stats.micros(latency.percentile(90))
+                + " p99us=" + Stats.micros(latency.percentile(99))
+                + " maxUs=" + Stats.micros(latency.getMax()));
+        for (Process process : clients) {
+            process.destroyForcibly();
+        }
+        System.exit(0);
+    }
+}
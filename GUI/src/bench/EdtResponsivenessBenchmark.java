@@ -0,0 +1,127 @@
+package bench;
+
+import client.AsyncGameService;
+import common.GameConstants;
+import common.GameOptions;
+import common.JoinResult;
+import common.PlayerCallback;
+import common.TicTacToeService;
+import server.TicTacToeServiceImpl;
+
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+// How long the Swing event dispatch thread stalls while a player clicks moves over a slow
+// link: calling the RMI stub inside the click handler, as the GUI used to, against going
+// through AsyncGameService. A probe posts a task to the EDT every 5ms and records how late it
+// runs. Runs headless; the server adds latencyMillis to every call.
+// Usage: EdtResponsivenessBenchmark [clicks] [latencyMillis]
+public class EdtResponsivenessBenchmark {
+
+    // Server endpoint that answers every call after a fixed delay, like a slow network
+    public static class SlowService extends TicTacToeServiceImpl {
+        private final long latencyMillis;
+
+        public SlowService(long latencyMillis) throws RemoteException {
+            super(0);
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public boolean makeMove(int sessionId, int playerId, int row, int col) throws RemoteException {
+            delay();
+            return super.makeMove(sessionId, playerId, row, col);
+        }
+
+        private void delay() {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final NullCallback PLAYER = new NullCallback();
+    private static final NullCallback OPPONENT = new NullCallback();
+
+    public static void main(String[] args) throws Exception {
+        int clicks = Stats.argOrDefault(args, 0, 20);
+        int latencyMillis = Stats.argOrDefault(args, 1, 100);
+
+        System.setProperty("java.awt.headless", "true");
+        System.setProperty("java.rmi.server.hostname", "127.0.0.1");
+        Registry registry = LocateRegistry.createRegistry(GameConstants.REGISTRY_PORT);
+        SlowService slow = new SlowService(latencyMillis);
+        registry.rebind(GameConstants.SERVICE_NAME, slow);
+
+        AsyncGameService async = new AsyncGameService();
+        TicTacToeService service = async.connect("127.0.0.1").get();
+        PlayerCallback player = (PlayerCallback) UnicastRemoteObject.exportObject(PLAYER, 0);
+        PlayerCallback opponent = (PlayerCallback) UnicastRemoteObject.exportObject(OPPONENT, 0);
+        JoinResult seat = service.quickJoin(player, GameOptions.STANDARD);
+        service.quickJoin(opponent, GameOptions.STANDARD);
+
+        for (String mode : new String[] {"blocking-on-edt", "async-facade"}) {
+            ConcurrentLinkedQueue<Long> stalls = new ConcurrentLinkedQueue<>();
+            Thread probe = startProbe(stalls);
+            CountDownLatch done = new CountDownLatch(clicks);
+            long start = System.nanoTime();
+            for (int i = 0; i < clicks; i++) {
+                // Moves are rejected or accepted; only the time spent on the EDT matters here
+                int cell = i % 9;
+                SwingUtilities.invokeLater(() -> {
+                    if (mode.equals("blocking-on-edt")) {
+                        try {
+                            service.makeMove(seat.getSessionId(), seat.getPlayerId(), cell / 3, cell % 3);
+                        } catch (RemoteException ignored) {
+                        }
+                        done.countDown();
+                    } else {
+                        CompletableFuture<Boolean> move =
+                                async.makeMove(seat.getSessionId(), seat.getPlayerId(), cell / 3, cell % 3);
+                        move.whenCompleteAsync((valid, error) -> done.countDown(), AsyncGameService.EDT);
+                    }
+                });
+                Thread.sleep(10);
+            }
+            done.await(clicks * (latencyMillis + 1_000L), TimeUnit.MILLISECONDS);
+            long elapsed = System.nanoTime() - start;
+            probe.interrupt();
+            probe.join();
+
+            long[] samples = stalls.stream().mapToLong(Long::longValue).toArray();
+            System.out.println(mode
+                    + " clicks=" + clicks
+                    + " latencyMillis=" + latencyMillis
+                    + " elapsedMs=" + TimeUnit.NANOSECONDS.toMillis(elapsed)
+                    + " edtStallP50us=" + Stats.micros(Stats.percentile(samples, 50))
+                    + " edtStallP99us=" + Stats.micros(Stats.percentile(samples, 99))
+                    + " edtStallMaxUs=" + Stats.micros(Stats.percentile(samples, 100)));
+        }
+        System.exit(0);
+    }
+
+    private static Thread startProbe(ConcurrentLinkedQueue<Long> stalls) {
+        Thread probe = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                long posted = System.nanoTime();
+                SwingUtilities.invokeLater(() -> stalls.add(System.nanoTime() - posted));
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        probe.start();
+        return probe;
+    }
+}
@@ -0,0 +1,114 @@
+package bench;
+
+import common.GameEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Bytes on the wire per event: the old default-serialized event carrying "GAME_OVER|..."
+// strings against the typed Externalizable encoding. Each batch is written to a fresh
+// object stream, as RMI does for every call, so class descriptors are counted too.
+// Usage: EventWireSizeBenchmark [boardSize]
+public class EventWireSizeBenchmark {
+
+    // Field layout and string protocol of the event before it became Externalizable
+    static final class LegacyEvent implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        enum Kind { BOARD, MOVE, TURN, NEW_GAME, MESSAGE }
+
+        final Kind kind;
+        final int row;
+        final int col;
+        final char symbol;
+        final long sequenceNumber;
+        final char[][] board;
+        final String message;
+
+        LegacyEvent(Kind kind, int row, int col, char symbol, long sequenceNumber, char[][] board, String message) {
+            this.kind = kind;
+            this.row = row;
+            this.col = col;
+            this.symbol = symbol;
+            this.sequenceNumber = sequenceNumber;
+            this.board = board;
+            this.message = message;
+        }
+
+        static LegacyEvent text(String message) {
+            return new LegacyEvent(Kind.MESSAGE, -1, -1, ' ', 0, null, message);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int size = Stats.argOrDefault(args, 0, 3);
+        char[][] board = new char[size][size];
+        for (char[] row : board) {
+            Arrays.fill(row, ' ');
+        }
+
+        String win = "Player 1 (X) wins!";
+        compare("move", List.of(
+                new LegacyEvent(LegacyEvent.Kind.MOVE, 1, 1, 'X', 5, null, null),
+                new LegacyEvent(LegacyEvent.Kind.TURN, -1, -1, ' ', 0, null, null)),
+                List.of(GameEvent.move(1, 1, 'X', 5), GameEvent.turn()));
+        compare("rejected", List.of(LegacyEvent.text("It's not your turn!")),
+                List.of(GameEvent.rejected(GameEvent.Rejection.NOT_YOUR_TURN)));
+        compare("win", List.of(
+                new LegacyEvent(LegacyEvent.Kind.MOVE, 2, 2, 'X', 7, null, null),
+                LegacyEvent.text(win),
+                LegacyEvent.text("GAME_OVER|" + win + "\n \nDo you want to play again? (yes/no)")),
+                List.of(GameEvent.move(2, 2, 'X', 7), GameEvent.win(1), GameEvent.rematchPrompt()));
+        compare("draw", List.of(
+                new LegacyEvent(LegacyEvent.Kind.MOVE, 0, 2, 'O', 9, null, null),
+                LegacyEvent.text("GAME_OVER|It's a Draw!\n \nDo you want to play again? (yes/no)")),
+                List.of(GameEvent.move(0, 2, 'O', 9), GameEvent.draw(), GameEvent.rematchPrompt()));
+        compare("sessionEnd", List.of(LegacyEvent.text("GAME_OVER|SESSION_END|Opponent left the game")),
+                List.of(GameEvent.sessionEnd(GameEvent.EndReason.OPPONENT_LEFT)));
+        compare("rematch", List.of(
+                new LegacyEvent(LegacyEvent.Kind.NEW_GAME, -1, -1, ' ', 0, null, null),
+                new LegacyEvent(LegacyEvent.Kind.BOARD, -1, -1, ' ', 9, board, null),
+                new LegacyEvent(LegacyEvent.Kind.TURN, -1, -1, ' ', 0, null, null)),
+                List.of(GameEvent.newGame(), GameEvent.board(board, 9), GameEvent.turn()));
+        compare("chat", List.of(LegacyEvent.text("Player 2: good game")),
+                List.of(GameEvent.chat(2, "good game")));
+
+        // Raw encoding, as a non-RMI transport would frame it
+        for (GameEvent event : List.of(GameEvent.move(1, 1, 'X', 5), GameEvent.turn(), GameEvent.win(1),
+                GameEvent.sessionEnd(GameEvent.EndReason.REMATCH_TIMEOUT), GameEvent.board(board, 9))) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            event.encode(new DataOutputStream(bytes));
+            GameEvent decoded = GameEvent.decode(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            if (decoded.getKind() != event.getKind() || !decoded.describe().equals(event.describe())) {
+                throw new IllegalStateException("Round trip changed " + event.getKind());
+            }
+            System.out.println("encoded " + event.getKind() + " bytes=" + bytes.size());
+        }
+    }
+
+    private static void compare(String transition, List<LegacyEvent> legacy, List<GameEvent> typed) throws IOException {
+        int before = serializedSize(new ArrayList<>(legacy));
+        int after = serializedSize(new ArrayList<>(typed));
+        System.out.println(transition
+                + " legacyBytes=" + before
+                + " typedBytes=" + after
+                + " typedBytesPerEvent=" + String.format("%.1f", after / (double) typed.size())
+                + " saved=" + String.format("%.0f%%", 100.0 * (before - after) / before));
+    }
+
+    private static int serializedSize(Object batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(batch);
+        }
+        return bytes.size();
+    }
+}
@@ -0,0 +1,252 @@
+package bench;
+
+import common.GameEvent;
+import common.GameOptions;
+import common.JoinResult;
+import common.PlayerCallback;
+import server.BitBoard;
+import server.PlayerChannel;
+import server.TicTacToeServer;
+import server.TicTacToeServiceImpl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+// Regression suite for the server hot paths, run in-process with callbacks that drop events:
+// makeMove through the service endpoint, the last-move win check and full-board test,
+// matchmaking under contention, session create/teardown through the pool, and fan-out of one
+// transition to many player channels. Results go to a JMH-style JSON file; with --baseline
+// the run is compared against an earlier file and exits with status 2 when any benchmark
+// lost more than --tolerance percent.
+// Usage: HotPathBenchmarks [--quick] [--filter text] [--json file] [--baseline file] [--tolerance pct]
+public class HotPathBenchmarks {
+    // A 3x3 game that ends in a draw, in turn order
+    private static final int[][] DRAW = {{0, 0}, {0, 1}, {0, 2}, {1, 1}, {1, 0}, {1, 2}, {2, 1}, {2, 0}, {2, 2}};
+    private static final int FAN_OUT_CHANNELS = 64;
+
+    private static final TicTacToeServiceImpl SERVICE = new TicTacToeServiceImpl();
+
+    public static void main(String[] args) throws Exception {
+        boolean quick = false;
+        String filter = "";
+        Path json = Paths.get("bench-results", "hotpaths.json");
+        Path baseline = null;
+        double tolerance = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--quick":
+                    quick = true;
+                    break;
+                case "--filter":
+                    filter = args[++i];
+                    break;
+                case "--json":
+                    json = Paths.get(args[++i]);
+                    break;
+                case "--baseline":
+                    baseline = Paths.get(args[++i]);
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        TicTacToeServer.setMaxSessions(Integer.MAX_VALUE);
+        Microbench bench = quick ? new Microbench(1, 3, 300) : new Microbench(3, 5, 1000);
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        if ("service.makeMove".contains(filter)) {
+            bench.run("service.makeMove", 1, HotPathBenchmarks::moveLoop);
+        }
+        if ("bitboard.isWinningMove.3x3".contains(filter)) {
+            bench.run("bitboard.isWinningMove.3x3", 1, () -> winChecks(GameOptions.STANDARD));
+        }
+        if ("bitboard.isWinningMove.15x15".contains(filter)) {
+            bench.run("bitboard.isWinningMove.15x15", 1, () -> winChecks(new GameOptions(15, 5)));
+        }
+        if ("bitboard.isFull".contains(filter)) {
+            bench.run("bitboard.isFull", 1, HotPathBenchmarks::fullChecks);
+        }
+        if ("server.quickJoin.contended".contains(filter)) {
+            bench.run("server.quickJoin.contended", Math.max(4, cores), () -> HotPathBenchmarks::matchmaking);
+        }
+        if ("server.sessionLifecycle".contains(filter)) {
+            bench.run("server.sessionLifecycle", 1, () -> HotPathBenchmarks::sessionLifecycle);
+        }
+        if ("channel.fanOut".contains(filter)) {
+            bench.run("channel.fanOut", 1, HotPathBenchmarks::fanOut);
+        }
+
+        System.setOut(out);
+        bench.writeJson(json);
+        out.println("Results written to " + json);
+        if (baseline != null && !bench.compare(Microbench.readScores(baseline), tolerance)) {
+            System.exit(2);
+        }
+        System.exit(0);
+    }
+
+    // Plays drawn 3x3 games on one session through the endpoint; one op is one accepted move.
+    // The first mover is random, so the first move of a game may need one rejected probe.
+    private static Microbench.Op moveLoop() throws Exception {
+        JoinResult joined = SERVICE.quickJoin(new NullCallback());
+        SERVICE.quickJoin(new NullCallback());
+        int sessionId = joined.getSessionId();
+        return new Microbench.Op() {
+            private int move;
+            private int player = 1;
+
+            @Override
+            public long run(int ops) throws Exception {
+                long accepted = 0;
+                for (int i = 0; i < ops; i++) {
+                    int[] cell = DRAW[move];
+                    if (!SERVICE.makeMove(sessionId, player, cell[0], cell[1])) {
+                        player = 3 - player;
+                        SERVICE.makeMove(sessionId, player, cell[0], cell[1]);
+                    }
+                    accepted++;
+                    player = 3 - player;
+                    if (++move == DRAW.length) {
+                        SERVICE.playAgain(sessionId, 1, true);
+                        SERVICE.playAgain(sessionId, 2, true);
+                        move = 0;
+                    }
+                }
+                return accepted;
+            }
+        };
+    }
+
+    private static Microbench.Op winChecks(GameOptions options) {
+        BitBoard[] boards = new BitBoard[1024];
+        int[][] lastMoves = new int[boards.length][];
+        Random random = new Random(42);
+        for (int b = 0; b < boards.length; b++) {
+            lastMoves[b] = fill(boards[b] = new BitBoard(options), options, random);
+        }
+        return new Microbench.Op() {
+            private int next;
+
+            @Override
+            public long run(int ops) {
+                long wins = 0;
+                for (int i = 0; i < ops; i++) {
+                    int b = next++ & (boards.length - 1);
+                    int[] last = lastMoves[b];
+                    if (boards[b].isWinningMove(last[0], last[1], last[2])) {
+                        wins++;
+                    }
+                }
+                return wins;
+            }
+        };
+    }
+
+    private static Microbench.Op fullChecks() {
+        BitBoard[] boards = new BitBoard[1024];
+        Random random = new Random(7);
+        for (int b = 0; b < boards.length; b++) {
+            fill(boards[b] = new BitBoard(GameOptions.STANDARD), GameOptions.STANDARD, random);
+        }
+        return new Microbench.Op() {
+            private int next;
+
+            @Override
+            public long run(int ops) {
+                long full = 0;
+                for (int i = 0; i < ops; i++) {
+                    if (boards[next++ & (boards.length - 1)].isFull()) {
+                        full++;
+                    }
+                }
+                return full;
+            }
+        };
+    }
+
+    // Random legal position; returns the last move as {row, col, player}
+    private static int[] fill(BitBoard board, GameOptions options, Random random) {
+        int size = options.getBoardSize();
+        int moves = 1 + random.nextInt(size * size);
+        int[] last = null;
+        for (int m = 0; m < moves; m++) {
+            int row;
+            int col;
+            do {
+                row = random.nextInt(size);
+                col = random.nextInt(size);
+            } while (board.isOccupied(row, col));
+            board.place(row, col, m % 2 + 1);
+            last = new int[] {row, col, m % 2 + 1};
+        }
+        return last;
+    }
+
+    // One op is one join; whoever completes a pair leaves at once, which tears the session down
+    private static long matchmaking(int ops) throws Exception {
+        PlayerCallback callback = new NullCallback();
+        long seated = 0;
+        for (int i = 0; i < ops; i++) {
+            JoinResult joined = TicTacToeServer.quickJoin(callback, GameOptions.STANDARD);
+            if (joined.getPlayerId() == 2) {
+                TicTacToeServer.getSession(joined.getSessionId()).quitGame(2);
+            }
+            seated += joined.getPlayerId();
+        }
+        return seated;
+    }
+
+    // One op is a full create, pair and teardown of a pooled session
+    private static long sessionLifecycle(int ops) throws Exception {
+        PlayerCallback callback = new NullCallback();
+        long ids = 0;
+        for (int i = 0; i < ops; i++) {
+            JoinResult first = TicTacToeServer.quickJoin(callback, GameOptions.STANDARD);
+            TicTacToeServer.quickJoin(callback, GameOptions.STANDARD);
+            SERVICE.quitGame(first.getSessionId(), 1);
+            ids += first.getSessionId();
+        }
+        return ids;
+    }
+
+    // One op hands one transition to every channel; each batch waits until all were delivered
+    private static Microbench.Op fanOut() {
+        LongAdder delivered = new LongAdder();
+        PlayerCallback counting = events -> delivered.add(events.size());
+        PlayerChannel[] channels = new PlayerChannel[FAN_OUT_CHANNELS];
+        for (int c = 0; c < channels.length; c++) {
+            channels[c] = new PlayerChannel(counting, ignored -> { });
+        }
+        List<GameEvent> transition = Collections.singletonList(GameEvent.move(1, 1, 'X', 1));
+        return new Microbench.Op() {
+            private long sent;
+
+            @Override
+            public long run(int ops) {
+                for (int i = 0; i < ops; i++) {
+                    for (PlayerChannel channel : channels) {
+                        channel.send(transition);
+                    }
+                }
+                sent += (long) ops * channels.length;
+                while (delivered.sum() < sent) {
+                    Thread.onSpinWait();
+                }
+                return sent;
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package bench;
+
+import common.GameOptions;
+import server.GameSession;
+import server.LatencyHistogram;
+import server.MoveJournal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+// In-process games at full speed, first with the move journal closed and then journaling into a
+// temporary directory, comparing accepted moves/sec and makeMove latency. Each thread plays its
+// own session: it tries free cells in random order, switches seat when a move is refused as out
+// of turn, and when both seats are refused the game is over and both players ask for a rematch.
+// Usage: JournalBenchmark [threads] [seconds] [boardSize]
+public class JournalBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = Stats.argOrDefault(args, 0, 4);
+        int seconds = Stats.argOrDefault(args, 1, 10);
+        int boardSize = Stats.argOrDefault(args, 2, 3);
+        GameOptions options = new GameOptions(boardSize, Math.min(boardSize, 5));
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        run(out, "off", threads, seconds, options);
+        Path directory = Files.createTempDirectory("journal-bench");
+        MoveJournal.open(directory);
+        run(out, "on", threads, seconds, options);
+        out.println(MoveJournal.describe());
+        MoveJournal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(JournalBenchmark::delete);
+        }
+        System.exit(0);
+    }
+
+    private static void run(PrintStream out, String mode, int threads, int seconds, GameOptions options)
+            throws Exception {
+        LatencyHistogram accepted = new LatencyHistogram();
+        CountDownLatch done = new CountDownLatch(threads);
+        long stopAt = System.nanoTime() + seconds * 1_000_000_000L;
+        for (int t = 0; t < threads; t++) {
+            GameSession session = new GameSession(t + 1, options);
+            session.joinGame(new NullCallback());
+            session.joinGame(new NullCallback());
+            new Thread(() -> {
+                try {
+                    play(session, options.getBoardSize(), stopAt, accepted);
+                    session.quitGame(1);
+                } catch (Exception e) {
+                    System.err.println("Player thread failed: " + e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        out.println("journal=" + mode
+                + " threads=" + threads
+                + " board=" + options
+                + " movesPerSec=" + accepted.getCount() / seconds
+                + " moveP50us=" + Stats.micros(accepted.percentile(50))
+                + " moveP99us=" + Stats.micros(accepted.percentile(99))
+                + " moveP999us=" + Stats.micros(accepted.percentile(99.9))
+                + " moveMaxUs=" + Stats.micros(accepted.getMax()));
+    }
+
+    private static void play(GameSession session, int size, long stopAt, LatencyHistogram accepted)
+            throws Exception {
+        int[] cells = new int[size * size];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int player = 1;
+        while (System.nanoTime() < stopAt) {
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = i;
+            }
+            for (int i = cells.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = cells[i];
+                cells[i] = cells[j];
+                cells[j] = swap;
+            }
+            for (int cell : cells) {
+                if (!move(session, player, cell, size, accepted)) {
+                    player = 3 - player;
+                    if (!move(session, player, cell, size, accepted)) {
+                        break;
+                    }
+                }
+                player = 3 - player;
+            }
+            session.playAgain(1, true);
+            session.playAgain(2, true);
+        }
+    }
+
+    private static boolean move(GameSession session, int player, int cell, int size, LatencyHistogram accepted)
+            throws Exception {
+        long start = System.nanoTime();
+        boolean ok = session.makeMove(player, cell / size, cell % size);
+        if (ok) {
+            accepted.record(System.nanoTime() - start);
+        }
+        return ok;
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.delete(path);
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package bench;
+
+import common.GameEvent;
+import common.JoinResult;
+import common.GameOptions;
+import server.GameSession;
+import server.TicTacToeServer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Liveness without probing clients under the game lock.
+// join: the waiting player's callback stalls for stallMillis (a dead client hanging until the
+// RMI timeout); reports how long the second player's quickJoin takes.
+// eviction: the waiting player stops heartbeating while its opponent keeps doing so; reports
+// how long after the last heartbeat the opponent learns the session ended. Start the JVM with
+// -Dtictactoe.leaseSeconds to shorten the lease.
+// Usage: LeaseLivenessBenchmark [joins] [stallMillis] [evictions]
+public class LeaseLivenessBenchmark {
+
+    static class StalledCallback extends NullCallback {
+        private final long stallMillis;
+
+        StalledCallback(long stallMillis) {
+            this.stallMillis = stallMillis;
+        }
+
+        @Override
+        public void onEvents(List<GameEvent> events) {
+            try {
+                Thread.sleep(stallMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static class EndWatcher extends NullCallback {
+        final CountDownLatch ended = new CountDownLatch(1);
+
+        @Override
+        public void onEvents(List<GameEvent> events) {
+            for (GameEvent event : events) {
+                if (event.getKind() == GameEvent.Kind.SESSION_END) {
+                    ended.countDown();
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int joins = Stats.argOrDefault(args, 0, 20);
+        int stallMillis = Stats.argOrDefault(args, 1, 500);
+        int evictions = Stats.argOrDefault(args, 2, 5);
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        StalledCallback stalled = new StalledCallback(stallMillis);
+        NullCallback joiner = new NullCallback();
+        long[] joinLatency = new long[joins];
+        for (int i = 0; i < joins; i++) {
+            TicTacToeServer.quickJoin(stalled, GameOptions.STANDARD);
+            long start = System.nanoTime();
+            TicTacToeServer.quickJoin(joiner, GameOptions.STANDARD);
+            joinLatency[i] = System.nanoTime() - start;
+        }
+        out.println("join stallMillis=" + stallMillis
+                + " joins=" + joins
+                + " p50us=" + Stats.micros(Stats.percentile(joinLatency, 50))
+                + " p99us=" + Stats.micros(Stats.percentile(joinLatency, 99)));
+
+        long[] evictionDelay = new long[evictions];
+        for (int i = 0; i < evictions; i++) {
+            JoinResult silent = TicTacToeServer.quickJoin(new NullCallback(), GameOptions.STANDARD);
+            EndWatcher watcher = new EndWatcher();
+            JoinResult alive = TicTacToeServer.quickJoin(watcher, GameOptions.STANDARD);
+            GameSession session = TicTacToeServer.getSession(silent.getSessionId());
+            session.heartbeat(silent.getPlayerId());
+            long lastHeartbeat = System.nanoTime();
+            while (!watcher.ended.await(1, TimeUnit.SECONDS)) {
+                session.heartbeat(alive.getPlayerId());
+            }
+            evictionDelay[i] = System.nanoTime() - lastHeartbeat;
+        }
+        out.println("eviction leaseSeconds=" + Long.getLong("tictactoe.leaseSeconds", 15)
+                + " evictions=" + evictions
+                + " p50ms=" + Stats.percentile(evictionDelay, 50) / 1_000_000
+                + " maxMs=" + Stats.percentile(evictionDelay, 100) / 1_000_000);
+        System.exit(0);
+    }
+}
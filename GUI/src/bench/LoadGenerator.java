@@ -0,0 +1,317 @@
+package bench;
+
+import common.GameConstants;
+import common.GameEvent;
+import common.GameOptions;
+import common.JoinResult;
+import common.PlayerCallback;
+import common.TicTacToeService;
+import server.LatencyHistogram;
+
+import java.io.File;
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless load: N bot players against a real ServerMain over RMI on loopback, started as a
+// child process unless --server names a running one. Bots are exported PlayerCallbacks that
+// only record events; their moves, rematch answers and rejoins run on a small shared pool, so
+// thousands of bots need no thread each. After a game a bot quits with --quitRate probability
+// and joins again, otherwise it accepts the rematch. Move-to-callback latency runs from the
+// makeMove call to the bot's own MOVE event arriving.
+// Usage: LoadGenerator [--bots n] [--seconds s] [--thinkMillis ms] [--quitRate 0..1]
+//                      [--moves random|scripted] [--maxSessions n] [--server host]
+public class LoadGenerator {
+    private static final int ACTION_THREADS = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+
+    // Exported callbacks are only weakly held by RMI
+    private static final List<Bot> BOTS = new ArrayList<>();
+
+    private static final LongAdder joins = new LongAdder();
+    private static final LongAdder moves = new LongAdder();
+    private static final LongAdder games = new LongAdder();
+    private static final LatencyHistogram moveToCallback = new LatencyHistogram();
+    private static final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private static final AtomicBoolean running = new AtomicBoolean(true);
+
+    private static ScheduledExecutorService actions;
+    private static TicTacToeService service;
+    private static long thinkMillis;
+    private static double quitRate;
+    private static boolean scripted;
+
+    static class Bot implements PlayerCallback {
+        private PlayerCallback stub;
+        private volatile int sessionId;
+        private volatile int playerId;
+        private boolean[] occupied = new boolean[GameConstants.BOARD_SIZE * GameConstants.BOARD_SIZE];
+        // Cell of the move in flight and when it was sent
+        private int pendingCell = -1;
+        private long pendingSince;
+
+        @Override
+        public void onEvents(List<GameEvent> events) {
+            for (GameEvent event : events) {
+                switch (event.getKind()) {
+                    case BOARD:
+                        reset(event.getBoard());
+                        break;
+                    case MOVE:
+                        moveSeen(event.getRow() * GameConstants.BOARD_SIZE + event.getCol());
+                        break;
+                    case TURN:
+                        later(this::move);
+                        break;
+                    case REMATCH_PROMPT:
+                        games.increment();
+                        later(this::answerRematch);
+                        break;
+                    case SESSION_END:
+                        // The opponent left or the rematch fell through
+                        later(this::join);
+                        break;
+                    default:
+                }
+            }
+        }
+
+        private synchronized void reset(char[][] board) {
+            occupied = new boolean[board.length * board.length];
+            for (int i = 0; i < board.length; i++) {
+                for (int j = 0; j < board.length; j++) {
+                    occupied[i * board.length + j] = board[i][j] != GameConstants.EMPTY;
+                }
+            }
+        }
+
+        private synchronized void moveSeen(int cell) {
+            occupied[cell] = true;
+            if (cell == pendingCell) {
+                moveToCallback.record(System.nanoTime() - pendingSince);
+                pendingCell = -1;
+            }
+        }
+
+        private synchronized int claimCell() {
+            int start = scripted ? 0 : ThreadLocalRandom.current().nextInt(occupied.length);
+            for (int i = 0; i < occupied.length; i++) {
+                int cell = (start + i) % occupied.length;
+                if (!occupied[cell]) {
+                    pendingCell = cell;
+                    pendingSince = System.nanoTime();
+                    return cell;
+                }
+            }
+            return -1;
+        }
+
+        void join() {
+            try {
+                JoinResult joined = service.quickJoin(stub, GameOptions.STANDARD);
+                sessionId = joined.getSessionId();
+                playerId = joined.getPlayerId();
+                joins.increment();
+            } catch (RemoteException e) {
+                error(e);
+                // Back off so a full server is not hammered by the same bot
+                actions.schedule(() -> later(this::join), 500, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void move() {
+            int cell = claimCell();
+            if (cell < 0) {
+                return;
+            }
+            try {
+                if (service.makeMove(sessionId, playerId, cell / GameConstants.BOARD_SIZE, cell % GameConstants.BOARD_SIZE)) {
+                    moves.increment();
+                } else {
+                    errors.computeIfAbsent("MoveRejected", key -> new LongAdder()).increment();
+                }
+            } catch (RemoteException e) {
+                error(e);
+            }
+        }
+
+        private void answerRematch() {
+            try {
+                if (ThreadLocalRandom.current().nextDouble() < quitRate) {
+                    service.quitGame(sessionId, playerId);
+                    join();
+                } else {
+                    service.playAgain(sessionId, playerId, true);
+                }
+            } catch (RemoteException e) {
+                error(e);
+            }
+        }
+    }
+
+    private static void later(Runnable action) {
+        if (!running.get()) {
+            return;
+        }
+        if (thinkMillis > 0) {
+            actions.schedule(action, thinkMillis, TimeUnit.MILLISECONDS);
+        } else {
+            actions.execute(action);
+        }
+    }
+
+    // Keyed by type and first line of the message with ids masked; server-side failures by cause
+    private static void error(Exception e) {
+        Throwable failure = e instanceof ServerException && e.getCause() != null ? e.getCause() : e;
+        String message = failure.getMessage() == null ? "" : failure.getMessage().split("[;\n]")[0].replaceAll("\\d+", "#");
+        String key = failure.getClass().getSimpleName() + ": " + message;
+        errors.computeIfAbsent(key, ignored -> new LongAdder()).increment();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int bots = 1_000;
+        int seconds = 30;
+        int maxSessions = 0;
+        String server = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--bots":
+                    bots = Integer.parseInt(args[++i]);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--thinkMillis":
+                    thinkMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--quitRate":
+                    quitRate = Double.parseDouble(args[++i]);
+                    break;
+                case "--moves":
+                    scripted = args[++i].equals("scripted");
+                    break;
+                case "--maxSessions":
+                    maxSessions = Integer.parseInt(args[++i]);
+                    break;
+                case "--server":
+                    server = args[++i];
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+        System.setProperty("java.rmi.server.hostname", "127.0.0.1");
+
+        Process child = null;
+        if (server == null) {
+            child = startServer(maxSessions);
+            server = "127.0.0.1";
+        }
+        try {
+            service = lookup(server);
+            actions = Executors.newScheduledThreadPool(ACTION_THREADS, task -> {
+                Thread thread = new Thread(task, "bot-action");
+                thread.setDaemon(true);
+                return thread;
+            });
+            run(bots, seconds);
+        } finally {
+            if (child != null) {
+                child.destroy();
+            }
+        }
+        System.exit(0);
+    }
+
+    private static Process startServer(int maxSessions) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        if (maxSessions > 0) {
+            command.add("-Dtictactoe.maxSessions=" + maxSessions);
+        }
+        command.add("server.ServerMain");
+        command.add("127.0.0.1");
+        // Keep the server's session and matchmaking log out of the report
+        return new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private static TicTacToeService lookup(String host) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (true) {
+            try {
+                return (TicTacToeService) LocateRegistry.getRegistry(host, GameConstants.REGISTRY_PORT)
+                        .lookup(GameConstants.SERVICE_NAME);
+            } catch (Exception e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(200);
+            }
+        }
+    }
+
+    private static void run(int bots, int seconds) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < bots; i++) {
+            Bot bot = new Bot();
+            bot.stub = (PlayerCallback) UnicastRemoteObject.exportObject(bot, 0);
+            BOTS.add(bot);
+            later(bot::join);
+        }
+
+        long lastJoins = 0;
+        long lastMoves = 0;
+        for (int s = 1; s <= seconds; s++) {
+            Thread.sleep(1000);
+            long totalJoins = joins.sum();
+            long totalMoves = moves.sum();
+            System.err.println("t=" + s + "s joins=" + (totalJoins - lastJoins) + "/s moves=" + (totalMoves - lastMoves)
+                    + "/s errors=" + errorCount());
+            lastJoins = totalJoins;
+            lastMoves = totalMoves;
+        }
+        running.set(false);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("bots=" + bots
+                + " seconds=" + seconds
+                + " thinkMillis=" + thinkMillis
+                + " quitRate=" + quitRate
+                + " moves=" + (scripted ? "scripted" : "random")
+                + " joinsPerSec=" + (long) (joins.sum() / elapsed)
+                + " movesPerSec=" + (long) (moves.sum() / elapsed)
+                + " games=" + games.sum()
+                + " moveToCallbackP50us=" + Stats.micros(moveToCallback.percentile(50))
+                + " moveToCallbackP99us=" + Stats.micros(moveToCallback.percentile(99))
+                + " moveToCallbackP999us=" + Stats.micros(moveToCallback.percentile(99.9))
+                + " errors=" + errorCount());
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(errors).entrySet()) {
+            System.out.println("error " + entry.getValue().sum() + " x " + entry.getKey());
+        }
+    }
+
+    private static long errorCount() {
+        long total = 0;
+        for (LongAdder count : errors.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+}
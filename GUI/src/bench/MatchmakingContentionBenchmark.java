@@ -0,0 +1,98 @@
+package bench;
+
+import common.GameOptions;
+import common.PlayerCallback;
+import server.GameSession;
+import server.TicTacToeServer;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Thousands of simultaneous in-process joiners against the matchmaking path, compared with
+// a replica of the old synchronized scan over every active session.
+// Usage: MatchmakingContentionBenchmark [joiners] [joinsPerJoiner]
+public class MatchmakingContentionBenchmark {
+
+    interface Matchmaker {
+        void join(PlayerCallback callback) throws RemoteException;
+    }
+
+    // The pre-queue algorithm: one global monitor and a full scan for a half-full session
+    static class SynchronizedScan implements Matchmaker {
+        private final ConcurrentHashMap<Integer, GameSession> sessions = new ConcurrentHashMap<>();
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public void join(PlayerCallback callback) throws RemoteException {
+            connect().joinGame(callback);
+        }
+
+        private synchronized GameSession connect() {
+            for (GameSession session : sessions.values()) {
+                if (session.getPlayerCount() == 1) {
+                    return session;
+                }
+            }
+            int id = counter.incrementAndGet();
+            GameSession session = new GameSession(id, GameOptions.STANDARD);
+            sessions.put(id, session);
+            return session;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int joiners = Stats.argOrDefault(args, 0, 2_000);
+        int joinsPerJoiner = Stats.argOrDefault(args, 1, 10);
+        TicTacToeServer.setMaxSessions(Integer.MAX_VALUE);
+
+        run("synchronized-scan", new SynchronizedScan(), joiners, joinsPerJoiner);
+        run("concurrent-queue", callback -> TicTacToeServer.quickJoin(callback, GameOptions.STANDARD),
+                joiners, joinsPerJoiner);
+        System.exit(0);
+    }
+
+    private static void run(String mode, Matchmaker matchmaker, int joiners, int joinsPerJoiner)
+            throws InterruptedException {
+        PlayerCallback callback = new NullCallback();
+        long[] samples = new long[joiners * joinsPerJoiner];
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(joiners);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(joiners);
+
+        for (int t = 0; t < joiners; t++) {
+            final int offset = t * joinsPerJoiner;
+            new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    for (int i = 0; i < joinsPerJoiner; i++) {
+                        long start = System.nanoTime();
+                        matchmaker.join(callback);
+                        samples[offset + i] = System.nanoTime() - start;
+                    }
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("mode=" + mode
+                + " joiners=" + joiners
+                + " joins=" + samples.length
+                + " joinsPerSec=" + (long) (samples.length / (elapsed / 1e9))
+                + " joinP50us=" + Stats.micros(Stats.percentile(samples, 50))
+                + " joinP99us=" + Stats.micros(Stats.percentile(samples, 99))
+                + " errors=" + errors.get());
+    }
+}
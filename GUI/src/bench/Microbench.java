@@ -0,0 +1,212 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Small stand-in for JMH, which offline builds of this project cannot fetch: timed warmup and
+// measurement iterations, a result sink against dead-code elimination, throughput per
+// iteration with a 99.9% error bound, and results written in JMH's JSON layout so the same
+// tooling reads both. It does not fork a JVM per benchmark; run suites in a fresh JVM.
+public final class Microbench {
+
+    // Runs the operation `ops` times and returns something derived from the results
+    @FunctionalInterface
+    public interface Op {
+        long run(int ops) throws Exception;
+    }
+
+    // Per-thread state; each measuring thread gets its own operation
+    @FunctionalInterface
+    public interface OpFactory {
+        Op create() throws Exception;
+    }
+
+    public static final class Result {
+        final String benchmark;
+        final int threads;
+        final double[] iterations;
+
+        Result(String benchmark, int threads, double[] iterations) {
+            this.benchmark = benchmark;
+            this.threads = threads;
+            this.iterations = iterations;
+        }
+
+        public double score() {
+            double sum = 0;
+            for (double value : iterations) {
+                sum += value;
+            }
+            return sum / iterations.length;
+        }
+
+        // Student t at 99.9% for small samples, as JMH reports it
+        public double error() {
+            int n = iterations.length;
+            if (n < 2) {
+                return Double.NaN;
+            }
+            double mean = score();
+            double squares = 0;
+            for (double value : iterations) {
+                squares += (value - mean) * (value - mean);
+            }
+            double stddev = Math.sqrt(squares / (n - 1));
+            double[] t999 = {0, 636.6, 31.60, 12.92, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587};
+            double t = n - 1 < t999.length ? t999[n - 1] : 3.29;
+            return t * stddev / Math.sqrt(n);
+        }
+    }
+
+    // Keeps results alive so the JIT cannot drop the work that produced them
+    private static final AtomicLong sink = new AtomicLong();
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final List<Result> results = new ArrayList<>();
+
+    public Microbench(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    public Result run(String benchmark, int threads, OpFactory factory) throws Exception {
+        Op[] ops = new Op[threads];
+        for (int t = 0; t < threads; t++) {
+            ops[t] = factory.create();
+        }
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(ops);
+        }
+        double[] scores = new double[measurementIterations];
+        for (int i = 0; i < measurementIterations; i++) {
+            scores[i] = iteration(ops);
+        }
+        Result result = new Result(benchmark, threads, scores);
+        results.add(result);
+        System.err.printf("%-40s %3d thr  %,16.1f +- %,.1f ops/s%n", benchmark, threads, result.score(), result.error());
+        return result;
+    }
+
+    // Every thread runs batches until the iteration time is up; returns total ops per second
+    private double iteration(Op[] ops) throws Exception {
+        AtomicLong completed = new AtomicLong();
+        List<Exception> failures = new ArrayList<>();
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(ops.length);
+        for (Op op : ops) {
+            new Thread(() -> {
+                try {
+                    go.await();
+                    long deadline = System.nanoTime() + iterationNanos;
+                    int batch = 1;
+                    long count = 0;
+                    long checksum = 0;
+                    while (System.nanoTime() < deadline) {
+                        checksum += op.run(batch);
+                        count += batch;
+                        // Grow batches until the clock is read about every millisecond
+                        if (batch < 1 << 20 && System.nanoTime() + iterationNanos / 1000 < deadline) {
+                            batch <<= 1;
+                        }
+                    }
+                    sink.addAndGet(checksum);
+                    completed.addAndGet(count);
+                } catch (Exception e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+        return completed.get() / (elapsed / 1e9);
+    }
+
+    public void writeJson(Path file) throws IOException {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            json.append("    {\n")
+                    .append("        \"benchmark\" : \"").append(result.benchmark).append("\",\n")
+                    .append("        \"mode\" : \"thrpt\",\n")
+                    .append("        \"threads\" : ").append(result.threads).append(",\n")
+                    .append("        \"warmupIterations\" : ").append(warmupIterations).append(",\n")
+                    .append("        \"measurementIterations\" : ").append(measurementIterations).append(",\n")
+                    .append("        \"primaryMetric\" : {\n")
+                    .append("            \"score\" : ").append(result.score()).append(",\n")
+                    .append("            \"scoreError\" : ").append(result.error()).append(",\n")
+                    .append("            \"scoreUnit\" : \"ops/s\",\n")
+                    .append("            \"rawData\" : [ ").append(join(result.iterations)).append(" ]\n")
+                    .append("        }\n")
+                    .append(i + 1 < results.size() ? "    },\n" : "    }\n");
+        }
+        json.append("]\n");
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Scores by benchmark name from a file written by writeJson (or by JMH with -rf json)
+    public static Map<String, Double> readScores(Path file) throws IOException {
+        String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        Matcher matcher = Pattern.compile(
+                "\"benchmark\"\\s*:\\s*\"([^\"]+)\".*?\"score\"\\s*:\\s*([-0-9.Ee]+|NaN)", Pattern.DOTALL).matcher(json);
+        Map<String, Double> scores = new LinkedHashMap<>();
+        while (matcher.find()) {
+            scores.put(matcher.group(1), Double.parseDouble(matcher.group(2)));
+        }
+        return scores;
+    }
+
+    // Prints each benchmark against the baseline; true if none dropped by more than tolerancePct
+    public boolean compare(Map<String, Double> baseline, double tolerancePct) {
+        boolean ok = true;
+        for (Result result : results) {
+            Double before = baseline.get(result.benchmark);
+            if (before == null || before <= 0) {
+                System.out.printf("%-40s new%n", result.benchmark);
+                continue;
+            }
+            double change = (result.score() - before) / before * 100;
+            boolean regressed = change < -tolerancePct;
+            ok &= !regressed;
+            System.out.printf("%-40s %+7.1f%%%s%n", result.benchmark, change, regressed ? "  REGRESSION" : "");
+        }
+        return ok;
+    }
+
+    private static String join(double[] values) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            out.append(i == 0 ? "[" : "").append(values[i]).append(i + 1 < values.length ? ", " : "]");
+        }
+        return out.toString();
+    }
+}
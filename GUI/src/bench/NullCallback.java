@@ -0,0 +1,14 @@
+package bench;
+
+import common.GameEvent;
+import common.PlayerCallback;
+
+import java.rmi.RemoteException;
+import java.util.List;
+
+// Callback that swallows every notification, used where only server-side cost matters
+public class NullCallback implements PlayerCallback {
+    @Override
+    public void onEvents(List<GameEvent> events) throws RemoteException {
+    }
+}
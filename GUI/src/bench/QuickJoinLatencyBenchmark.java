@@ -0,0 +1,89 @@
+package bench;
+
+import common.GameConstants;
+import common.GameEvent;
+import common.PlayerCallback;
+import common.TicTacToeService;
+import server.TicTacToeServer;
+
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Connect-to-first-turn latency of the second player in a pairing, over loopback RMI:
+// lookup + connectToAvailableSession + joinGame versus lookup + quickJoin.
+// Usage: QuickJoinLatencyBenchmark [games] [registryPort] [servicePort]
+public class QuickJoinLatencyBenchmark {
+
+    static class TurnCallback extends NullCallback {
+        volatile CountDownLatch firstTurn = new CountDownLatch(1);
+
+        @Override
+        public void onEvents(List<GameEvent> events) throws RemoteException {
+            for (GameEvent event : events) {
+                if (event.getKind() == GameEvent.Kind.TURN) {
+                    firstTurn.countDown();
+                }
+            }
+        }
+    }
+
+    // Exported objects are only weakly held by the RMI runtime, so keep the callbacks reachable
+    private static final TurnCallback FIRST = new TurnCallback();
+    private static final TurnCallback SECOND = new TurnCallback();
+
+    public static void main(String[] args) throws Exception {
+        int games = Stats.argOrDefault(args, 0, 2_000);
+        int registryPort = Stats.argOrDefault(args, 1, 1199);
+        int servicePort = Stats.argOrDefault(args, 2, 21000);
+
+        System.setProperty("java.rmi.server.hostname", "127.0.0.1");
+        Registry registry = LocateRegistry.createRegistry(registryPort);
+        TicTacToeServer.exportService(registry, servicePort);
+        PlayerCallback first = (PlayerCallback) UnicastRemoteObject.exportObject(FIRST, 0);
+        PlayerCallback second = (PlayerCallback) UnicastRemoteObject.exportObject(SECOND, 0);
+
+        // First pass warms up both paths and is not reported
+        for (int pass = 0; pass < 4; pass++) {
+            String mode = pass % 2 == 0 ? "connect+join" : "quickJoin";
+            long[] samples = new long[games];
+            for (int i = 0; i < games; i++) {
+                CountDownLatch turn = new CountDownLatch(1);
+                FIRST.firstTurn = turn;
+                SECOND.firstTurn = turn;
+
+                TicTacToeService service = (TicTacToeService) registry.lookup(GameConstants.SERVICE_NAME);
+                join(service, mode, first);
+
+                long start = System.nanoTime();
+                service = (TicTacToeService) registry.lookup(GameConstants.SERVICE_NAME);
+                join(service, mode, second);
+                if (!turn.await(10, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("No turn notification for game " + i);
+                }
+                samples[i] = System.nanoTime() - start;
+            }
+            if (pass < 2) {
+                continue;
+            }
+            System.out.println("mode=" + mode
+                    + " games=" + games
+                    + " connectToFirstTurnP50us=" + Stats.micros(Stats.percentile(samples, 50))
+                    + " connectToFirstTurnP99us=" + Stats.micros(Stats.percentile(samples, 99)));
+        }
+        System.exit(0);
+    }
+
+    private static void join(TicTacToeService service, String mode, PlayerCallback callback) throws RemoteException {
+        if (mode.equals("quickJoin")) {
+            service.quickJoin(callback);
+        } else {
+            int sessionId = service.connectToAvailableSession();
+            service.joinGame(sessionId, callback);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package bench;
+
+import common.GameEvent;
+import common.JoinResult;
+import server.GameSession;
+import server.TicTacToeServer;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process player that answers every turn with random cells and accepts every rematch.
+// Decisions run on one shared driver thread so that only server-side threads do callbacks.
+public class RandomBot extends NullCallback {
+    private static final BlockingQueue<Runnable> driver = new LinkedBlockingQueue<>();
+    private static final Random random = new Random(7);
+
+    public static final AtomicLong acceptedMoves = new AtomicLong();
+    public static final AtomicLong callbackCalls = new AtomicLong();
+    public static final AtomicLong eventsReceived = new AtomicLong();
+    public static final AtomicLong gamesFinished = new AtomicLong();
+
+    private volatile GameSession session;
+    private volatile int playerId;
+
+    static {
+        Thread driverThread = new Thread(() -> {
+            while (true) {
+                try {
+                    driver.take().run();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException ignored) {
+                }
+            }
+        }, "bot-driver");
+        driverThread.setDaemon(true);
+        driverThread.start();
+    }
+
+    public static RandomBot join() throws Exception {
+        RandomBot bot = new RandomBot();
+        JoinResult joined = TicTacToeServer.quickJoin(bot, common.GameOptions.STANDARD);
+        bot.session = TicTacToeServer.getSession(joined.getSessionId());
+        bot.playerId = joined.getPlayerId();
+        return bot;
+    }
+
+    @Override
+    public void onEvents(List<GameEvent> events) {
+        callbackCalls.incrementAndGet();
+        eventsReceived.addAndGet(events.size());
+        for (GameEvent event : events) {
+            if (event.getKind() == GameEvent.Kind.TURN) {
+                driver.offer(this::move);
+            } else if (event.getKind() == GameEvent.Kind.REMATCH_PROMPT) {
+                if (playerId == 1) {
+                    gamesFinished.incrementAndGet();
+                }
+                driver.offer(this::acceptRematch);
+            }
+        }
+    }
+
+    private void acceptRematch() {
+        try {
+            session.playAgain(playerId, true);
+        } catch (Exception ignored) {
+        }
+    }
+
+    private void move() {
+        if (session == null) {
+            // Turn arrived before quickJoin returned to us; try again shortly
+            driver.offer(this::move);
+            return;
+        }
+        int size = session.getOptions().getBoardSize();
+        try {
+            // Bots track nothing; random cells until one is accepted
+            for (int attempt = 0; attempt < 64; attempt++) {
+                if (session.makeMove(playerId, random.nextInt(size), random.nextInt(size))) {
+                    acceptedMoves.incrementAndGet();
+                    return;
+                }
+            }
+        } catch (Exception ignored) {
+        }
+    }
+}
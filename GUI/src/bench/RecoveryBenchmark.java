@@ -0,0 +1,150 @@
+package bench;
+
+import common.GameOptions;
+import common.JoinResult;
+import server.GameSession;
+import server.MoveJournal;
+import server.Recovery;
+import server.SessionSnapshot;
+import server.TicTacToeServer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Restart time with many live games. A first JVM journals the given number of 3x3 matches into
+// a temporary directory, plays two moves in each, takes a session snapshot, plays two more and
+// then halts without closing anything, as a crash would. Fresh JVMs then recover from that
+// directory with 1..maxThreads replay threads: from the snapshot plus the journal records after
+// it, and from the whole journal with the snapshot set aside.
+// Usage: RecoveryBenchmark [sessions] [maxThreads]
+public class RecoveryBenchmark {
+    private static final GameOptions OPTIONS = new GameOptions(3, 3);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--generate")) {
+            generate(Paths.get(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--recover")) {
+            recover(args[1], Paths.get(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+        int sessions = Stats.argOrDefault(args, 0, 50_000);
+        int maxThreads = Stats.argOrDefault(args, 1, Runtime.getRuntime().availableProcessors());
+
+        Path directory = Files.createTempDirectory("recovery-bench");
+        try {
+            child("--generate", directory.toString(), String.valueOf(sessions),
+                    "-Dtictactoe.maxSessions=" + (sessions + 1));
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                child("--recover", "snapshot", directory.toString(), String.valueOf(threads));
+            }
+            Path snapshot = directory.resolve("sessions.snapshot");
+            Files.move(snapshot, directory.resolve("sessions.snapshot.aside"), StandardCopyOption.REPLACE_EXISTING);
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                child("--recover", "journal", directory.toString(), String.valueOf(threads));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(RecoveryBenchmark::delete);
+            }
+        }
+    }
+
+    // Runs one phase in its own JVM so every recovery starts cold, as after a real restart
+    private static void child(String mode, String... rest) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        List<String> arguments = new ArrayList<>();
+        arguments.add(mode);
+        for (String value : rest) {
+            if (value.startsWith("-D")) {
+                command.add(value);
+            } else {
+                arguments.add(value);
+            }
+        }
+        command.add(RecoveryBenchmark.class.getName());
+        command.addAll(arguments);
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                System.out.println(line);
+            }
+        }
+        process.waitFor();
+    }
+
+    private static void generate(Path directory, int sessions) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        MoveJournal.open(directory);
+        List<GameSession> games = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            JoinResult first = TicTacToeServer.quickJoin(new NullCallback(), OPTIONS);
+            TicTacToeServer.quickJoin(new NullCallback(), OPTIONS);
+            games.add(TicTacToeServer.getSession(first.getSessionId()));
+        }
+        for (GameSession game : games) {
+            play(game, 0);
+            play(game, 4);
+        }
+        int entries = SessionSnapshot.write();
+        for (GameSession game : games) {
+            play(game, 8);
+            play(game, 2);
+        }
+        // Let the writer drain its buffer so every run recovers the same records
+        Thread.sleep(1_000);
+        out.println("sessions=" + sessions + " snapshotEntries=" + entries);
+        out.println(MoveJournal.describe());
+        out.flush();
+        Runtime.getRuntime().halt(0);
+    }
+
+    // Whoever is to move takes the cell
+    private static void play(GameSession game, int cell) throws Exception {
+        if (!game.makeMove(1, cell / 3, cell % 3)) {
+            game.makeMove(2, cell / 3, cell % 3);
+        }
+    }
+
+    private static void recover(String mode, Path directory, int threads) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long start = System.nanoTime();
+        int restored = Recovery.recover(directory, threads);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        out.println("from=" + mode
+                + " threads=" + threads
+                + " restored=" + restored
+                + " recoveryMs=" + millis
+                + " heapMB=" + Stats.usedHeapBytes() / (1024 * 1024));
+        out.flush();
+        System.exit(0);
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.delete(path);
+        } catch (IOException ignored) {
+        }
+    }
+}
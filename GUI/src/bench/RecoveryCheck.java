@@ -0,0 +1,203 @@
+package bench;
+
+import common.GameEvent;
+import common.GameOptions;
+import common.JoinResult;
+import common.PlayerCallback;
+import server.MoveJournal;
+import server.Recovery;
+import server.TicTacToeServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Restart with the computer to move. A first JVM seats a player against the computer on a
+// journaled server, plays one move and halts before the computer answers: with one callback
+// thread, the player's own callback holds back the computer's turn. A second JVM recovers the
+// journal, reattaches the player and expects the computer to answer. Prints RECOVERY-OK
+// (exit status 0) or RECOVERY-FAIL (exit status 1).
+// Usage: RecoveryCheck [boardSize] [winLength]
+public class RecoveryCheck {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--crash")) {
+            crash(Paths.get(args[1]), options(args, 2));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--recover")) {
+            recover(Paths.get(args[1]));
+            return;
+        }
+        GameOptions options = options(args, 0);
+        Path directory = Files.createTempDirectory("recovery-check");
+        int status;
+        try {
+            String size = String.valueOf(options.getBoardSize());
+            String length = String.valueOf(options.getWinLength());
+            child("--crash", directory.toString(), size, length,
+                    "-Dtictactoe.aiSeatSeconds=1", "-Dtictactoe.callbackThreads=1");
+            status = child("--recover", directory.toString());
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(RecoveryCheck::delete);
+            }
+        }
+        System.out.println(status == 0 ? "RECOVERY-OK" : "RECOVERY-FAIL");
+        System.exit(status == 0 ? 0 : 1);
+    }
+
+    private static GameOptions options(String[] args, int first) {
+        int boardSize = Stats.argOrDefault(args, first, 3);
+        return new GameOptions(boardSize, Stats.argOrDefault(args, first + 1, Math.min(boardSize, 5)));
+    }
+
+    private static int child(String mode, String... rest) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        List<String> arguments = new ArrayList<>();
+        arguments.add(mode);
+        for (String value : rest) {
+            if (value.startsWith("-D")) {
+                command.add(value);
+            } else {
+                arguments.add(value);
+            }
+        }
+        command.add(RecoveryCheck.class.getName());
+        command.addAll(arguments);
+        return new ProcessBuilder(command).inheritIO().start().waitFor();
+    }
+
+    private static void crash(Path directory, GameOptions options) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        MoveJournal.open(directory);
+        Player player = new Player(options.getBoardSize());
+        JoinResult joined = TicTacToeServer.quickJoin(player, options);
+        // The computer takes seat 2 after a second and may open
+        if (!player.awaitTurn()) {
+            out.println("No turn before the crash");
+            Runtime.getRuntime().halt(1);
+        }
+        int stones = player.stones() + 1;
+        int[] cell = player.freeCell();
+        player.holdNextMove = true;
+        TicTacToeServer.getSession(joined.getSessionId()).makeMove(1, cell[0], cell[1]);
+        // Long enough for the journal's group commit; the computer is still waiting for its turn
+        Thread.sleep(200);
+        Files.writeString(directory.resolve("check"), joined.getSessionId() + " " + joined.getResumeToken()
+                + " " + stones);
+        Runtime.getRuntime().halt(0);
+    }
+
+    private static void recover(Path directory) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        String[] saved = Files.readString(directory.resolve("check")).split(" ");
+        int sessionId = Integer.parseInt(saved[0]);
+        int stonesAtCrash = Integer.parseInt(saved[2]);
+        MoveJournal.open(directory);
+        Recovery.recover();
+        Player player = new Player(0);
+        if (TicTacToeServer.resumeGame(sessionId, 1, Long.parseLong(saved[1]), player) == null) {
+            out.println("Session " + sessionId + " was not recovered");
+            System.exit(1);
+        }
+        boolean answered = player.awaitTurn() && player.stones() == stonesAtCrash + 1;
+        out.println("stonesAtCrash=" + stonesAtCrash + " stonesAfterRecovery=" + player.stones()
+                + " computerAnswered=" + answered);
+        System.exit(answered ? 0 : 1);
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.delete(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Tracks the board and waits for its turn or the end of the game
+    private static final class Player implements PlayerCallback {
+        private final BlockingQueue<Boolean> turns = new LinkedBlockingQueue<>();
+        private char[][] board;
+        volatile boolean holdNextMove;
+
+        Player(int boardSize) {
+            board = new char[boardSize][boardSize];
+        }
+
+        @Override
+        public synchronized void onEvents(List<GameEvent> events) {
+            for (GameEvent event : events) {
+                switch (event.getKind()) {
+                    case BOARD:
+                        board = event.getBoard();
+                        break;
+                    case MOVE:
+                        board[event.getRow()][event.getCol()] = event.getSymbol();
+                        if (holdNextMove) {
+                            // Keeps the only callback thread busy until the JVM halts
+                            holdCallbackThread();
+                        }
+                        break;
+                    case TURN:
+                    case WIN:
+                    case DRAW:
+                        turns.add(Boolean.TRUE);
+                        break;
+                    default:
+                }
+            }
+        }
+
+        private void holdCallbackThread() {
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        boolean awaitTurn() throws InterruptedException {
+            return turns.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS) != null;
+        }
+
+        synchronized int[] freeCell() {
+            for (int row = 0; row < board.length; row++) {
+                for (int col = 0; col < board.length; col++) {
+                    if (board[row][col] != 'X' && board[row][col] != 'O') {
+                        return new int[] {row, col};
+                    }
+                }
+            }
+            throw new IllegalStateException("Board is full");
+        }
+
+        synchronized int stones() {
+            int stones = 0;
+            for (char[] row : board) {
+                for (char cell : row) {
+                    if (cell == 'X' || cell == 'O') {
+                        stones++;
+                    }
+                }
+            }
+            return stones;
+        }
+    }
+}
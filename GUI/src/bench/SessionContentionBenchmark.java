@@ -0,0 +1,102 @@
+package bench;
+
+import common.GameOptions;
+import server.GameSession;
+import server.LatencyHistogram;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Many threads hammering makeMove on one session with random cells for both seats, so most
+// calls are rejected (wrong turn, occupied cell, off the board) and a few win the race. The
+// "locked" mode wraps every call in one monitor, as the old gameLock did; "lock-free" calls
+// the session directly. A referee thread keeps answering yes to the rematch question; answers
+// only count once a game has finished, so that restarts play without waiting for the prompt,
+// which queues behind the flood of rejection notices.
+// Every rejection is still queued to the caller as a notice, so the run is a fixed number of
+// calls rather than a duration.
+// Usage: SessionContentionBenchmark [threads] [callsPerThread] [boardSize] [winLength]
+public class SessionContentionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = Stats.argOrDefault(args, 0, 16);
+        int callsPerThread = Stats.argOrDefault(args, 1, 50_000);
+        int boardSize = Stats.argOrDefault(args, 2, 3);
+        int winLength = Stats.argOrDefault(args, 3, Math.min(boardSize, 5));
+        GameOptions options = new GameOptions(boardSize, winLength);
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        run(out, "locked", true, threads, callsPerThread, options);
+        run(out, "lock-free", false, threads, callsPerThread, options);
+        System.exit(0);
+    }
+
+    private static void run(PrintStream out, String mode, boolean locked, int threads, int callsPerThread,
+                            GameOptions options) throws Exception {
+        GameSession session = new GameSession(1, options);
+        session.joinGame(new NullCallback());
+        session.joinGame(new NullCallback());
+
+        Object monitor = new Object();
+        LatencyHistogram accepted = new LatencyHistogram();
+        LatencyHistogram rejected = new LatencyHistogram();
+        LongAdder errors = new LongAdder();
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        int size = options.getBoardSize();
+
+        for (int t = 0; t < threads; t++) {
+            final int playerId = t % 2 + 1;
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    go.await();
+                    for (int i = 0; i < callsPerThread; i++) {
+                        // One in sixteen calls aims just off the board
+                        int row = random.nextInt(16) == 0 ? size : random.nextInt(size);
+                        int col = random.nextInt(size);
+                        long start = System.nanoTime();
+                        boolean ok;
+                        if (locked) {
+                            synchronized (monitor) {
+                                ok = session.makeMove(playerId, row, col);
+                            }
+                        } else {
+                            ok = session.makeMove(playerId, row, col);
+                        }
+                        (ok ? accepted : rejected).record(System.nanoTime() - start);
+                    }
+                } catch (Exception e) {
+                    errors.increment();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        long start = System.nanoTime();
+        go.countDown();
+        while (done.getCount() > 0) {
+            session.playAgain(1, true);
+            session.playAgain(2, true);
+            Thread.sleep(0, 100_000);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        out.println("mode=" + mode
+                + " threads=" + threads
+                + " board=" + options
+                + " callsPerSec=" + (long) ((accepted.getCount() + rejected.getCount()) / elapsed)
+                + " acceptedPerSec=" + (long) (accepted.getCount() / elapsed)
+                + " rejectP50us=" + Stats.micros(rejected.percentile(50))
+                + " rejectP99us=" + Stats.micros(rejected.percentile(99))
+                + " rejectP999us=" + Stats.micros(rejected.percentile(99.9))
+                + " acceptP99us=" + Stats.micros(accepted.percentile(99))
+                + " errors=" + errors.sum());
+        session.quitGame(1);
+    }
+}
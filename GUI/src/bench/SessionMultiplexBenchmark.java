@@ -0,0 +1,120 @@
+package bench;
+
+import common.GameOptions;
+import common.PlayerCallback;
+import common.TicTacToeService;
+import server.GameSession;
+import server.TicTacToeServer;
+
+import java.lang.management.ManagementFactory;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+
+// Compares the old one-exported-object-per-port session model with the multiplexed endpoint.
+// Usage: SessionMultiplexBenchmark [legacySessions] [multiplexedSessions] [registryPort] [portBase]
+public class SessionMultiplexBenchmark {
+    // Exported objects are only weakly held by the RMI runtime, so keep the callback reachable
+    private static final NullCallback CALLBACK = new NullCallback();
+
+    // Shape of the pre-multiplexing per-session endpoint: one export and registry name per game
+    public interface LegacySession extends Remote {
+        int joinGame(PlayerCallback callback) throws RemoteException;
+    }
+
+    static class LegacySessionImpl extends UnicastRemoteObject implements LegacySession {
+        private static final long serialVersionUID = 1L;
+        private final GameSession session;
+
+        LegacySessionImpl(int sessionId, int port) throws RemoteException {
+            super(port);
+            this.session = new GameSession(sessionId, GameOptions.STANDARD);
+        }
+
+        @Override
+        public int joinGame(PlayerCallback callback) throws RemoteException {
+            return session.joinGame(callback);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int legacySessions = Stats.argOrDefault(args, 0, 200);
+        int multiplexedSessions = Stats.argOrDefault(args, 1, 10_000);
+        int registryPort = Stats.argOrDefault(args, 2, 1199);
+        int portBase = Stats.argOrDefault(args, 3, 21000);
+
+        System.setProperty("java.rmi.server.hostname", "127.0.0.1");
+        Registry registry = LocateRegistry.createRegistry(registryPort);
+        PlayerCallback callback = (PlayerCallback) UnicastRemoteObject.exportObject(CALLBACK, 0);
+
+        runLegacy(registry, callback, legacySessions, portBase);
+        runMultiplexed(registry, callback, multiplexedSessions, portBase - 1);
+        System.exit(0);
+    }
+
+    private static void runLegacy(Registry registry, PlayerCallback callback, int sessions, int portBase)
+            throws Exception {
+        int threadsBefore = liveThreads();
+        long heapBefore = Stats.usedHeapBytes();
+        long[] joins = new long[sessions * 2];
+        int created = 0;
+
+        for (int i = 0; i < sessions; i++) {
+            String name = "LegacySession" + i;
+            try {
+                registry.rebind(name, new LegacySessionImpl(i, portBase + i));
+            } catch (RemoteException e) {
+                System.out.println("legacy: export failed after " + created + " sessions: " + e.getMessage());
+                break;
+            }
+            created++;
+            for (int p = 0; p < 2; p++) {
+                long start = System.nanoTime();
+                LegacySession stub = (LegacySession) registry.lookup(name);
+                stub.joinGame(callback);
+                joins[i * 2 + p] = System.nanoTime() - start;
+            }
+        }
+        report("legacy-port-per-session", created, trim(joins, created * 2), threadsBefore, heapBefore);
+    }
+
+    private static void runMultiplexed(Registry registry, PlayerCallback callback, int sessions, int port)
+            throws Exception {
+        TicTacToeServer.setMaxSessions(sessions);
+        int threadsBefore = liveThreads();
+        long heapBefore = Stats.usedHeapBytes();
+        TicTacToeServer.exportService(registry, port);
+        TicTacToeService service = (TicTacToeService) registry.lookup(common.GameConstants.SERVICE_NAME);
+
+        long[] joins = new long[sessions * 2];
+        for (int i = 0; i < joins.length; i++) {
+            long start = System.nanoTime();
+            int sessionId = service.connectToAvailableSession();
+            service.joinGame(sessionId, callback);
+            joins[i] = System.nanoTime() - start;
+        }
+        report("multiplexed-single-endpoint", TicTacToeServer.getActiveSessionCount(), joins, threadsBefore, heapBefore);
+    }
+
+    private static void report(String mode, int sessions, long[] joins, int threadsBefore, long heapBefore) {
+        long heapPerSession = sessions == 0 ? 0 : (Stats.usedHeapBytes() - heapBefore) / sessions;
+        System.out.println("mode=" + mode
+                + " sessions=" + sessions
+                + " extraThreads=" + (liveThreads() - threadsBefore)
+                + " heapBytesPerSession=" + heapPerSession
+                + " joinP50us=" + Stats.micros(Stats.percentile(joins, 50))
+                + " joinP99us=" + Stats.micros(Stats.percentile(joins, 99)));
+    }
+
+    private static long[] trim(long[] samples, int length) {
+        long[] result = new long[length];
+        System.arraycopy(samples, 0, result, 0, length);
+        return result;
+    }
+
+    private static int liveThreads() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+}
@@ -0,0 +1,67 @@
+package bench;
+
+import common.GameOptions;
+import common.JoinResult;
+import server.SessionPool;
+import server.TicTacToeServer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+// Match churn: pair two players, end the match, repeat. Compares allocating a fresh
+// GameSession per match with reusing pooled ones; reports matches/sec, bytes allocated by
+// the driving thread per match and the pool hit rate.
+// Usage: SessionPoolBenchmark [matches] [poolSize] [boardSize] [winLength]
+public class SessionPoolBenchmark {
+
+    private static final NullCallback PLAYER = new NullCallback();
+
+    public static void main(String[] args) throws Exception {
+        int matches = Stats.argOrDefault(args, 0, 200_000);
+        int poolSize = Stats.argOrDefault(args, 1, 256);
+        int boardSize = Stats.argOrDefault(args, 2, 15);
+        GameOptions options = new GameOptions(boardSize, Stats.argOrDefault(args, 3, Math.min(boardSize, 5)));
+
+        // Session lifecycle logging would dominate the measurement
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        for (int pass = 0; pass < 4; pass++) {
+            boolean pooled = pass % 2 == 1;
+            SessionPool.setCapacity(pooled ? poolSize : 0);
+            long hitsBefore = SessionPool.getHits();
+            long missesBefore = SessionPool.getMisses();
+
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < matches; i++) {
+                JoinResult first = TicTacToeServer.quickJoin(PLAYER, options);
+                TicTacToeServer.quickJoin(PLAYER, options);
+                TicTacToeServer.getSession(first.getSessionId()).quitGame(first.getPlayerId());
+            }
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedBytes() - allocatedBefore;
+
+            // First two passes warm up both paths
+            if (pass >= 2) {
+                long hits = SessionPool.getHits() - hitsBefore;
+                long misses = SessionPool.getMisses() - missesBefore;
+                out.println((pooled ? "pooled" : "unpooled")
+                        + " board=" + options
+                        + " matches=" + matches
+                        + " matchesPerSec=" + String.format("%.0f", matches / (elapsed / 1e9))
+                        + " bytesPerMatch=" + allocated / matches
+                        + " hits=" + hits
+                        + " misses=" + misses);
+            }
+        }
+        out.println(SessionPool.describe());
+        System.exit(0);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,103 @@
+package bench;
+
+import common.GameEvent;
+import common.GameOptions;
+import common.JoinResult;
+import server.TicTacToeServer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end sanity check of the server in one JVM: two players quick-join, each takes the
+// first free cell whenever it is told to move, and the check passes once both are asked for a
+// rematch. Prints SMOKE-OK (exit status 0) or SMOKE-FAIL (exit status 1).
+// Usage: SmokeCheck [boardSize] [winLength]
+public class SmokeCheck {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int boardSize = Stats.argOrDefault(args, 0, 3);
+        GameOptions options = new GameOptions(boardSize, Stats.argOrDefault(args, 1, Math.min(boardSize, 5)));
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        CountDownLatch gameOver = new CountDownLatch(2);
+        Player first = new Player(boardSize, gameOver);
+        Player second = new Player(boardSize, gameOver);
+        first.seat(TicTacToeServer.quickJoin(first, options));
+        second.seat(TicTacToeServer.quickJoin(second, options));
+
+        boolean ok = gameOver.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        out.println(ok ? "SMOKE-OK" : "SMOKE-FAIL");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static final class Player extends NullCallback {
+        private final CountDownLatch gameOver;
+        // The first TURN can arrive before quickJoin has returned the seat
+        private final CountDownLatch seated = new CountDownLatch(1);
+        private char[][] board;
+        private volatile int sessionId;
+        private volatile int playerId;
+
+        Player(int boardSize, CountDownLatch gameOver) {
+            this.gameOver = gameOver;
+            this.board = new char[boardSize][boardSize];
+            for (char[] row : board) {
+                Arrays.fill(row, ' ');
+            }
+        }
+
+        void seat(JoinResult joined) {
+            sessionId = joined.getSessionId();
+            playerId = joined.getPlayerId();
+            seated.countDown();
+        }
+
+        @Override
+        public synchronized void onEvents(List<GameEvent> events) {
+            for (GameEvent event : events) {
+                switch (event.getKind()) {
+                    case BOARD:
+                        board = event.getBoard();
+                        break;
+                    case MOVE:
+                        board[event.getRow()][event.getCol()] = event.getSymbol();
+                        break;
+                    case TURN:
+                        // Moving from inside the callback would deliver into it again
+                        new Thread(this::move).start();
+                        break;
+                    case REMATCH_PROMPT:
+                        gameOver.countDown();
+                        break;
+                    default:
+                }
+            }
+        }
+
+        private void move() {
+            try {
+                seated.await();
+                play();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        private synchronized void play() throws Exception {
+            for (int row = 0; row < board.length; row++) {
+                for (int col = 0; col < board.length; col++) {
+                    if (board[row][col] == ' ') {
+                        TicTacToeServer.getSession(sessionId).makeMove(playerId, row, col);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package bench;
+
+import common.BroadcastEvents;
+import common.GameEvent;
+import common.GameOptions;
+import common.PlayerCallback;
+import server.GameSession;
+import server.LatencyHistogram;
+import server.ServerMetrics;
+import server.TicTacToeServer;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// One featured game played flat out by a single thread (both seats, random free cells, rematch
+// when it ends), first with nobody watching and then with N in-process spectators, a share of
+// which sleep in every onEvents call. Reports moves/sec and makeMove latency, then how the
+// spectators fared: updates encoded (one per fan-out, shared by all), onEvents calls, slow
+// watchers sent the latest board instead of every move, and watchers told the session ended.
+// Finally compares serializing one update for RMI as a plain event list and as BroadcastEvents.
+// Usage: SpectatorBenchmark [watchers] [slowPercent] [slowMillis] [seconds] [boardSize]
+public class SpectatorBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int watchers = Stats.argOrDefault(args, 0, 10_000);
+        int slowPercent = Stats.argOrDefault(args, 1, 10);
+        int slowMillis = Stats.argOrDefault(args, 2, 50);
+        int seconds = Stats.argOrDefault(args, 3, 10);
+        int boardSize = Stats.argOrDefault(args, 4, 3);
+        GameOptions options = new GameOptions(boardSize, Math.min(boardSize, 5));
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        ServerMetrics.register();
+
+        run(out, 0, 0, 0, seconds, options);
+        run(out, watchers, slowPercent, slowMillis, seconds, options);
+        compareSerialization(out, boardSize);
+        System.exit(0);
+    }
+
+    private static void run(PrintStream out, int watchers, int slowPercent, int slowMillis, int seconds,
+                            GameOptions options) throws Exception {
+        GameSession session = TicTacToeServer.getSession(
+                TicTacToeServer.quickJoin(new NullCallback(), options).getSessionId());
+        TicTacToeServer.quickJoin(new NullCallback(), options);
+        Watcher.calls.reset();
+        Watcher.ended.set(0);
+        MBeanServer beans = ManagementFactory.getPlatformMBeanServer();
+        ObjectName spectators = new ObjectName("tictactoe:type=Spectators");
+        long framesBefore = (Long) beans.getAttribute(spectators, "Frames");
+        long catchUpsBefore = (Long) beans.getAttribute(spectators, "CatchUps");
+        for (int i = 0; i < watchers; i++) {
+            boolean slow = i * 100L / Math.max(1, watchers) < slowPercent;
+            session.watch(session.getSessionId(), new Watcher(slow ? slowMillis : 0));
+        }
+
+        LatencyHistogram accepted = new LatencyHistogram();
+        long stopAt = System.nanoTime() + seconds * 1_000_000_000L;
+        play(session, options.getBoardSize(), stopAt, accepted);
+        session.quitGame(1);
+        // Let every watcher, slow ones included, hear that the session ended
+        long waitUntil = System.nanoTime() + 10_000_000_000L;
+        while (Watcher.ended.get() < watchers && System.nanoTime() < waitUntil) {
+            Thread.sleep(20);
+        }
+
+        out.println("watchers=" + watchers
+                + " slow=" + slowPercent + "%x" + slowMillis + "ms"
+                + " board=" + options
+                + " movesPerSec=" + accepted.getCount() / seconds
+                + " moveP50us=" + Stats.micros(accepted.percentile(50))
+                + " moveP99us=" + Stats.micros(accepted.percentile(99))
+                + " moveP999us=" + Stats.micros(accepted.percentile(99.9))
+                + " moveMaxUs=" + Stats.micros(accepted.getMax()));
+        if (watchers > 0) {
+            out.println("  framesEncoded=" + ((Long) beans.getAttribute(spectators, "Frames") - framesBefore)
+                    + " frameEncodeUs=" + String.format("%.1f",
+                            (Double) beans.getAttribute(spectators, "AverageFrameEncodeMicros"))
+                    + " onEventsCalls=" + Watcher.calls.sum()
+                    + " catchUps=" + ((Long) beans.getAttribute(spectators, "CatchUps") - catchUpsBefore)
+                    + " toldEnded=" + Watcher.ended.get() + "/" + watchers);
+        }
+    }
+
+    // Also drives StalledWatcherBenchmark
+    static void play(GameSession session, int size, long stopAt, LatencyHistogram accepted)
+            throws Exception {
+        int[] cells = new int[size * size];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int player = 1;
+        while (System.nanoTime() < stopAt) {
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = i;
+            }
+            for (int i = cells.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = cells[i];
+                cells[i] = cells[j];
+                cells[j] = swap;
+            }
+            for (int cell : cells) {
+                if (!move(session, player, cell, size, accepted)) {
+                    player = 3 - player;
+                    if (!move(session, player, cell, size, accepted)) {
+                        break;
+                    }
+                }
+                player = 3 - player;
+            }
+            session.playAgain(1, true);
+            session.playAgain(2, true);
+        }
+    }
+
+    private static boolean move(GameSession session, int player, int cell, int size, LatencyHistogram accepted)
+            throws Exception {
+        long start = System.nanoTime();
+        boolean ok = session.makeMove(player, cell / size, cell % size);
+        if (ok) {
+            accepted.record(System.nanoTime() - start);
+        }
+        return ok;
+    }
+
+    // What RMI does to the argument of every spectator call, per call
+    private static void compareSerialization(PrintStream out, int boardSize) throws Exception {
+        List<GameEvent> events = new ArrayList<>();
+        events.add(GameEvent.move(boardSize / 2, boardSize / 2, 'X', 42));
+        events.add(GameEvent.win(1));
+        BroadcastEvents shared = new BroadcastEvents(events);
+        int rounds = 200_000;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long plain = serialize(new ArrayList<>(events), rounds);
+            long once = serialize(shared, rounds);
+            if (warmup == 1) {
+                out.println("rmiArgument plainListNs=" + plain / rounds + " broadcastEventsNs=" + once / rounds);
+            }
+        }
+    }
+
+    private static long serialize(Object argument, int rounds) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            ObjectOutputStream stream = new ObjectOutputStream(new ByteArrayOutputStream(256));
+            stream.writeObject(argument);
+            stream.flush();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static final class Watcher implements PlayerCallback {
+        static final LongAdder calls = new LongAdder();
+        static final AtomicInteger ended = new AtomicInteger();
+        private final int sleepMillis;
+
+        Watcher(int sleepMillis) {
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public void onEvents(List<GameEvent> events) {
+            calls.increment();
+            for (GameEvent event : events) {
+                if (event.getKind() == GameEvent.Kind.SESSION_END) {
+                    ended.incrementAndGet();
+                }
+            }
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package bench;
+
+import common.GameOptions;
+import common.WireFormat;
+import server.GameSession;
+import server.LatencyHistogram;
+import server.NioTransport;
+import server.ServerMetrics;
+import server.TicTacToeServer;
+import server.TicTacToeServiceImpl;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// NIO spectators that send WATCH and then never read, against one featured game played flat out
+// as in SpectatorBenchmark. Once their socket buffers are full, every frame for them has to wait
+// in the transport; the feed keeps that to one frame per watcher and sends the newest board
+// when it can. Samples the bytes queued in the transport while the game runs and reports the
+// peak, next to moves/sec and how many updates were encoded, written and coalesced.
+// Usage: StalledWatcherBenchmark [watchers] [seconds] [boardSize]
+public class StalledWatcherBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int watchers = Stats.argOrDefault(args, 0, 10);
+        int seconds = Stats.argOrDefault(args, 1, 20);
+        int boardSize = Stats.argOrDefault(args, 2, 15);
+        GameOptions options = new GameOptions(boardSize, Math.min(boardSize, 5));
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        ServerMetrics.register();
+        NioTransport transport = NioTransport.start(new TicTacToeServiceImpl(), 0);
+
+        GameSession session = TicTacToeServer.getSession(
+                TicTacToeServer.quickJoin(new NullCallback(), options).getSessionId());
+        TicTacToeServer.quickJoin(new NullCallback(), options);
+        List<Socket> stalled = new ArrayList<>();
+        byte[] watch = WireFormat.frame(WireFormat.WATCH, 1, body -> body.writeInt(session.getSessionId()));
+        for (int i = 0; i < watchers; i++) {
+            Socket socket = new Socket();
+            // A small receive buffer so the kernel stops absorbing frames sooner
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new InetSocketAddress("127.0.0.1", transport.getPort()));
+            socket.getOutputStream().write(watch);
+            stalled.add(socket);
+        }
+
+        MBeanServer beans = ManagementFactory.getPlatformMBeanServer();
+        ObjectName spectators = new ObjectName("tictactoe:type=Spectators");
+        AtomicLong peakQueued = new AtomicLong();
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peakQueued.accumulateAndGet(transport.getQueuedBytes(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.setDaemon(true);
+        sampler.start();
+
+        LatencyHistogram accepted = new LatencyHistogram();
+        SpectatorBenchmark.play(session, boardSize, System.nanoTime() + seconds * 1_000_000_000L, accepted);
+        sampler.interrupt();
+        sampler.join();
+        long queuedAtEnd = transport.getQueuedBytes();
+
+        out.println("stalledWatchers=" + watchers
+                + " board=" + options
+                + " movesPerSec=" + accepted.getCount() / seconds
+                + " moveP99us=" + Stats.micros(accepted.percentile(99))
+                + " watchersLeft=" + session.getWatcherCount());
+        out.println("  framesEncoded=" + beans.getAttribute(spectators, "Frames")
+                + " deliveries=" + beans.getAttribute(spectators, "Deliveries")
+                + " catchUps=" + beans.getAttribute(spectators, "CatchUps")
+                + " peakQueuedBytes=" + peakQueued.get()
+                + " peakQueuedBytesPerWatcher=" + peakQueued.get() / Math.max(1, watchers)
+                + " queuedBytesAtEnd=" + queuedAtEnd);
+        for (Socket socket : stalled) {
+            socket.close();
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,36 @@
+package bench;
+
+import java.util.Arrays;
+
+// Small helpers shared by the benchmark mains; timings are recorded in nanoseconds
+public final class Stats {
+
+    private Stats() {
+    }
+
+    public static long percentile(long[] samples, double pct) {
+        if (samples.length == 0) {
+            return 0;
+        }
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(pct / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    public static String micros(long nanos) {
+        return String.format("%.1f", nanos / 1_000.0);
+    }
+
+    public static long usedHeapBytes() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    public static int argOrDefault(String[] args, int index, int fallback) {
+        return args.length > index ? Integer.parseInt(args[index]) : fallback;
+    }
+}
@@ -0,0 +1,130 @@
+package bench;
+
+import server.TimerWheel;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Cost of arming and cancelling one 30-second rematch timeout per session:
+// - per-session: a ScheduledExecutorService per session, the old GameSession layout
+// - shared-stpe: one ScheduledThreadPoolExecutor for the whole process
+// - timer-wheel: the shared hashed wheel used by GameSession
+// Reports extra threads, retained heap per armed timer and schedule/cancel latency.
+// Usage: TimerWheelBenchmark [perSessionSessions] [sharedSessions]
+public class TimerWheelBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int perSession = Stats.argOrDefault(args, 0, 2_000);
+        int shared = Stats.argOrDefault(args, 1, 100_000);
+        Runnable noop = () -> { };
+
+        // Warm up the shared paths; not reported
+        ScheduledThreadPoolExecutor stpe = new ScheduledThreadPoolExecutor(1);
+        stpe.setRemoveOnCancelPolicy(true);
+        for (int round = 0; round < 3; round++) {
+            runSharedStpe(stpe, noop, shared, false);
+            runWheel(noop, shared, false);
+        }
+
+        runSharedStpe(stpe, noop, shared, true);
+        runWheel(noop, shared, true);
+        runPerSession(noop, perSession);
+        System.exit(0);
+    }
+
+    private static void runPerSession(Runnable task, int sessions) {
+        int threadsBefore = liveThreads();
+        long heapBefore = Stats.usedHeapBytes();
+        ScheduledExecutorService[] executors = new ScheduledExecutorService[sessions];
+        ScheduledFuture<?>[] futures = new ScheduledFuture<?>[sessions];
+        long[] schedule = new long[sessions];
+        for (int i = 0; i < sessions; i++) {
+            long start = System.nanoTime();
+            executors[i] = Executors.newScheduledThreadPool(1);
+            futures[i] = executors[i].schedule(task, 30, TimeUnit.SECONDS);
+            schedule[i] = System.nanoTime() - start;
+        }
+        long heap = Stats.usedHeapBytes() - heapBefore;
+        int threads = liveThreads() - threadsBefore;
+        long[] cancel = new long[sessions];
+        for (int i = 0; i < sessions; i++) {
+            long start = System.nanoTime();
+            futures[i].cancel(false);
+            cancel[i] = System.nanoTime() - start;
+        }
+        report("per-session", sessions, threads, heap, schedule, cancel);
+        for (ScheduledExecutorService executor : executors) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void runSharedStpe(ScheduledThreadPoolExecutor stpe, Runnable task, int sessions, boolean print) {
+        int threadsBefore = liveThreads();
+        long heapBefore = print ? Stats.usedHeapBytes() : 0;
+        ScheduledFuture<?>[] futures = new ScheduledFuture<?>[sessions];
+        long[] schedule = new long[sessions];
+        for (int i = 0; i < sessions; i++) {
+            long start = System.nanoTime();
+            futures[i] = stpe.schedule(task, 30, TimeUnit.SECONDS);
+            schedule[i] = System.nanoTime() - start;
+        }
+        long heap = print ? Stats.usedHeapBytes() - heapBefore : 0;
+        int threads = liveThreads() - threadsBefore;
+        long[] cancel = new long[sessions];
+        for (int i = 0; i < sessions; i++) {
+            long start = System.nanoTime();
+            futures[i].cancel(false);
+            cancel[i] = System.nanoTime() - start;
+        }
+        if (print) {
+            report("shared-stpe", sessions, threads, heap, schedule, cancel);
+        }
+    }
+
+    private static void runWheel(Runnable task, int sessions, boolean print) throws InterruptedException {
+        int threadsBefore = liveThreads();
+        long heapBefore = print ? Stats.usedHeapBytes() : 0;
+        TimerWheel.Timeout[] timeouts = new TimerWheel.Timeout[sessions];
+        long[] schedule = new long[sessions];
+        for (int i = 0; i < sessions; i++) {
+            long start = System.nanoTime();
+            timeouts[i] = TimerWheel.schedule(task, 30, TimeUnit.SECONDS);
+            schedule[i] = System.nanoTime() - start;
+        }
+        long heap = print ? Stats.usedHeapBytes() - heapBefore : 0;
+        int threads = liveThreads() - threadsBefore;
+        long[] cancel = new long[sessions];
+        for (int i = 0; i < sessions; i++) {
+            long start = System.nanoTime();
+            timeouts[i].cancel();
+            cancel[i] = System.nanoTime() - start;
+        }
+        // Let the wheel thread unlink the cancelled timeouts before the next round
+        while (TimerWheel.getPendingCount() > 0) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(250);
+        if (print) {
+            report("timer-wheel", sessions, threads, heap, schedule, cancel);
+        }
+    }
+
+    private static void report(String mode, int sessions, int threads, long heap, long[] schedule, long[] cancel) {
+        System.out.println(mode
+                + " sessions=" + sessions
+                + " extraThreads=" + threads
+                + " heapPerTimerBytes=" + heap / sessions
+                + " scheduleP50us=" + Stats.micros(Stats.percentile(schedule, 50))
+                + " scheduleP99us=" + Stats.micros(Stats.percentile(schedule, 99))
+                + " cancelP50us=" + Stats.micros(Stats.percentile(cancel, 50))
+                + " cancelP99us=" + Stats.micros(Stats.percentile(cancel, 99)));
+    }
+
+    private static int liveThreads() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+}
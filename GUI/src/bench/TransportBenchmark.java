@@ -0,0 +1,184 @@
+package bench;
+
+import common.GameConstants;
+import common.GameEvent;
+import common.GameOptions;
+import common.JoinResult;
+import common.NioGameService;
+import common.PlayerCallback;
+import common.TicTacToeService;
+import server.LatencyHistogram;
+import server.NioTransport;
+import server.TicTacToeServer;
+import server.TicTacToeServiceImpl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Pairs of bot players on loopback, once over RMI (a lookup stub plus an exported callback per
+// bot) and once over the NIO transport (one connection per bot). Each bot plays a random free
+// cell whenever it gets the turn and accepts every rematch. Reports moves/sec and the
+// round-trip latency of makeMove as the client sees it.
+// Usage: TransportBenchmark [pairs] [seconds]
+public class TransportBenchmark {
+    private static final int REGISTRY_PORT = 21099;
+    private static final int SERVICE_PORT = 21100;
+    private static final int NIO_PORT = 21101;
+
+    // Exported callbacks are only weakly held by RMI
+    private static final List<Bot> BOTS = new ArrayList<>();
+
+    static class Bot implements PlayerCallback, Runnable {
+        private final TicTacToeService service;
+        private final BlockingQueue<GameEvent.Kind> prompts = new LinkedBlockingQueue<>();
+        private final LatencyHistogram moveLatency;
+        private final LongAdder errors;
+        private final AtomicBoolean running;
+        private boolean[] occupied = new boolean[GameConstants.BOARD_SIZE * GameConstants.BOARD_SIZE];
+        private int sessionId;
+        private int playerId;
+
+        Bot(TicTacToeService service, LatencyHistogram moveLatency, LongAdder errors, AtomicBoolean running) {
+            this.service = service;
+            this.moveLatency = moveLatency;
+            this.errors = errors;
+            this.running = running;
+        }
+
+        void join(PlayerCallback self) throws Exception {
+            JoinResult joined = service.quickJoin(self, GameOptions.STANDARD);
+            sessionId = joined.getSessionId();
+            playerId = joined.getPlayerId();
+        }
+
+        // Called on the transport's delivery thread; only records state and hands prompts over
+        @Override
+        public synchronized void onEvents(List<GameEvent> events) {
+            for (GameEvent event : events) {
+                switch (event.getKind()) {
+                    case BOARD:
+                        char[][] board = event.getBoard();
+                        occupied = new boolean[board.length * board.length];
+                        for (int i = 0; i < board.length; i++) {
+                            for (int j = 0; j < board.length; j++) {
+                                occupied[i * board.length + j] = board[i][j] != GameConstants.EMPTY;
+                            }
+                        }
+                        break;
+                    case MOVE:
+                        occupied[event.getRow() * GameConstants.BOARD_SIZE + event.getCol()] = true;
+                        break;
+                    case TURN:
+                    case REMATCH_PROMPT:
+                        prompts.offer(event.getKind());
+                        break;
+                    default:
+                }
+            }
+        }
+
+        private synchronized int pickFreeCell() {
+            int start = ThreadLocalRandom.current().nextInt(occupied.length);
+            for (int i = 0; i < occupied.length; i++) {
+                int cell = (start + i) % occupied.length;
+                if (!occupied[cell]) {
+                    return cell;
+                }
+            }
+            return start;
+        }
+
+        @Override
+        public void run() {
+            while (running.get()) {
+                try {
+                    GameEvent.Kind prompt = prompts.poll(100, TimeUnit.MILLISECONDS);
+                    if (prompt == GameEvent.Kind.TURN) {
+                        int cell = pickFreeCell();
+                        long start = System.nanoTime();
+                        service.makeMove(sessionId, playerId, cell / GameConstants.BOARD_SIZE, cell % GameConstants.BOARD_SIZE);
+                        moveLatency.record(System.nanoTime() - start);
+                    } else if (prompt == GameEvent.Kind.REMATCH_PROMPT) {
+                        service.playAgain(sessionId, playerId, true);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    errors.increment();
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int pairs = Stats.argOrDefault(args, 0, 16);
+        int seconds = Stats.argOrDefault(args, 1, 10);
+        System.setProperty("java.rmi.server.hostname", "127.0.0.1");
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Registry registry = LocateRegistry.createRegistry(REGISTRY_PORT);
+        TicTacToeServiceImpl service = TicTacToeServer.exportService(registry, SERVICE_PORT);
+        NioTransport.start(service, NIO_PORT);
+
+        TicTacToeService rmiStub = (TicTacToeService) LocateRegistry.getRegistry("127.0.0.1", REGISTRY_PORT)
+                .lookup(GameConstants.SERVICE_NAME);
+        run(out, "rmi", pairs, seconds, () -> rmiStub, true);
+        run(out, "nio", pairs, seconds, () -> NioGameService.connect("127.0.0.1", NIO_PORT), false);
+        System.exit(0);
+    }
+
+    interface Connector {
+        TicTacToeService connect() throws Exception;
+    }
+
+    private static void run(PrintStream out, String mode, int pairs, int seconds, Connector connector,
+                            boolean export) throws Exception {
+        LatencyHistogram moveLatency = new LatencyHistogram();
+        LongAdder errors = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<Thread> threads = new ConcurrentLinkedQueue<>();
+
+        for (int i = 0; i < pairs * 2; i++) {
+            Bot bot = new Bot(connector.connect(), moveLatency, errors, running);
+            BOTS.add(bot);
+            PlayerCallback self = export ? (PlayerCallback) UnicastRemoteObject.exportObject(bot, 0) : bot;
+            bot.join(self);
+            Thread thread = new Thread(bot, mode + "-bot-" + i);
+            threads.add(thread);
+        }
+        // Let the first game of every pair start before timing
+        threads.forEach(Thread::start);
+        Thread.sleep(1000);
+        moveLatency.reset();
+
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long moves = moveLatency.getCount();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        out.println("transport=" + mode
+                + " pairs=" + pairs
+                + " movesPerSec=" + (long) (moves / elapsed)
+                + " moveP50us=" + Stats.micros(moveLatency.percentile(50))
+                + " moveP99us=" + Stats.micros(moveLatency.percentile(99))
+                + " moveP999us=" + Stats.micros(moveLatency.percentile(99.9))
+                + " errors=" + errors.sum());
+    }
+}
@@ -0,0 +1,133 @@
+package client;
+
+import common.GameConstants;
+import common.GameOptions;
+import common.JoinResult;
+import common.NioGameService;
+import common.PlayerCallback;
+import common.TicTacToeService;
+
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+
+// Non-blocking view of TicTacToeService for the Swing client. Every remote call runs on a small
+// bounded pool of I/O threads and completes a CompletableFuture; UI code attaches its handling
+// with the *Async variants and EDT, so no RMI call ever runs on the event dispatch thread and a
+// slow link only delays the result.
+public class AsyncGameService {
+    // Runs continuations on the Swing event dispatch thread
+    public static final Executor EDT = SwingUtilities::invokeLater;
+
+    private static final int IO_THREADS = 2;
+    // A player cannot usefully have more than a few calls in flight; beyond this, fail fast
+    private static final int MAX_QUEUED_CALLS = 32;
+
+    private final AtomicInteger threadCounter = new AtomicInteger(1);
+    private final ThreadPoolExecutor io = new ThreadPoolExecutor(
+            IO_THREADS, IO_THREADS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_QUEUED_CALLS), task -> {
+                Thread thread = new Thread(task, "rmi-io-" + threadCounter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+    private volatile TicTacToeService service;
+
+    @FunctionalInterface
+    private interface RemoteCall<T> {
+        T invoke() throws Exception;
+    }
+
+    public AsyncGameService() {
+        io.allowCoreThreadTimeOut(true);
+    }
+
+    // Null until connect() has completed
+    public TicTacToeService getService() {
+        return service;
+    }
+
+    public CompletableFuture<TicTacToeService> connect(String serverIP) {
+        return call(() -> {
+            if (NioGameService.isSelected()) {
+                service = NioGameService.connect(serverIP, GameConstants.NIO_PORT);
+                return service;
+            }
+            Registry registry = LocateRegistry.getRegistry(serverIP, GameConstants.REGISTRY_PORT);
+            service = (TicTacToeService) registry.lookup(GameConstants.SERVICE_NAME);
+            return service;
+        });
+    }
+
+    public CompletableFuture<JoinResult> quickJoin(PlayerCallback callback, GameOptions options) {
+        return call(() -> service.quickJoin(callback, options));
+    }
+
+    public CompletableFuture<JoinResult> resumeGame(int sessionId, int playerId, long resumeToken,
+                                                    PlayerCallback callback) {
+        return call(() -> service.resumeGame(sessionId, playerId, resumeToken, callback));
+    }
+
+    public CompletableFuture<Boolean> makeMove(int sessionId, int playerId, int row, int col) {
+        return call(() -> service.makeMove(sessionId, playerId, row, col));
+    }
+
+    public CompletableFuture<Boolean> playAgain(int sessionId, int playerId, boolean response) {
+        return call(() -> service.playAgain(sessionId, playerId, response));
+    }
+
+    public CompletableFuture<Void> quitGame(int sessionId, int playerId) {
+        return call(() -> {
+            service.quitGame(sessionId, playerId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> resyncBoard(int sessionId, int playerId) {
+        return call(() -> {
+            service.resyncBoard(sessionId, playerId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> sendChat(int sessionId, int playerId, String text) {
+        return call(() -> {
+            service.sendChat(sessionId, playerId, text);
+            return null;
+        });
+    }
+
+    // The exception a failed future was completed with, without the CompletionException wrapper
+    public static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private <T> CompletableFuture<T> call(RemoteCall<T> remoteCall) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            io.execute(() -> {
+                try {
+                    result.complete(remoteCall.invoke());
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new RemoteException("Too many requests waiting for the server", e));
+        }
+        return result;
+    }
+}
@@ -1,10 +1,13 @@
 package client;
 
+import common.GameEvent;
+import common.NioGameService;
 import common.PlayerCallback;
 import common.TicTacToeService;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.SwingUtilities;
 
@@ -12,13 +15,23 @@ public class PlayerCallbackImpl implements PlayerCallback {
     private final TicTacToeClient client;
     private final AtomicBoolean serverAlive = new AtomicBoolean(true);
     private final String clientIP;
+    // Result of the last finished game, shown again with the rematch prompt
+    private volatile String lastResult = "";
 
     public PlayerCallbackImpl(TicTacToeClient client, String clientIP) throws RemoteException {
 	
         this.client = client;
         this.clientIP = clientIP;
-        System.setProperty("java.rmi.server.hostname", clientIP);
+        // Over the NIO transport events arrive on the service connection instead
+        if (!NioGameService.isSelected()) {
+            System.setProperty("java.rmi.server.hostname", clientIP);
+            exportOnFreePort();
+        }
 
+        startHeartbeatChecker();
+    }
+
+    private void exportOnFreePort() throws RemoteException {
         int port = 5002;
         PlayerCallback stub = null;
 
@@ -38,8 +51,6 @@ public class PlayerCallbackImpl implements PlayerCallback {
                 }
             }
         }
-
-        startHeartbeatChecker();
     }
 
     private void startHeartbeatChecker() {
@@ -49,11 +60,24 @@ public class PlayerCallbackImpl implements PlayerCallback {
                     Thread.sleep(5000);
                     if (!serverAlive.get()) break;
 
+                    // Renew our seat's lease once seated; before that just check the server
                     TicTacToeService service = client.getGameService();
-                    if (service != null) {
+                    if (service == null) {
+                        continue;
+                    }
+                    if (client.getPlayerId() > 0) {
+                        if (!service.heartbeat(client.getSessionId(), client.getPlayerId())) {
+                            break; // Seat released; the session end event says why
+                        }
+                    } else {
                         service.ping();
                     }
                 } catch (RemoteException e) {
+                    client.gui.setStatusMessage("Server connection lost, reconnecting...", client.gui.getAccentColor());
+                    if (client.reattach()) {
+                        client.displayMessage("Reconnected to the server.");
+                        continue;
+                    }
                     serverAlive.set(false);
                     SwingUtilities.invokeLater(() -> {
                         client.gui.showErrorMessage("Error: Server connection lost! Closing in 5 seconds...");
@@ -72,38 +96,64 @@ public class PlayerCallbackImpl implements PlayerCallback {
     }
 
 @Override
-public void displayMessage(String message) throws RemoteException {
-    if (message.contains("SESSION_END|")) {
-        String content = message.substring(message.indexOf("SESSION_END|") + "SESSION_END|".length());
-        client.gui.showTimedErrorMessage("Opponent left: " + content, 5000);
-    } else if (message.contains("declined rematch")) {
-        client.gui.showTimedErrorMessage("Opponent declined to play again", 5000);
-    } else {
-        client.displayMessage(message);
+public void onEvents(List<GameEvent> events) throws RemoteException {
+    for (GameEvent event : events) {
+        switch (event.getKind()) {
+            case BOARD:
+                client.applySnapshot(event.getBoard(), event.getSequenceNumber());
+                break;
+            case MOVE:
+                client.applyMove(event.getRow(), event.getCol(), event.getSymbol(), event.getSequenceNumber());
+                break;
+            case TURN:
+                notifyTurn();
+                break;
+            case MOVE_REJECTED:
+                if (event.getRejection() == GameEvent.Rejection.NOT_YOUR_TURN) {
+                    SwingUtilities.invokeLater(() -> client.gui.showErrorMessage("Wait for your turn!"));
+                } else {
+                    client.displayMessage(event.describe());
+                }
+                break;
+            case WIN:
+            case DRAW:
+                lastResult = event.describe();
+                client.displayMessage(lastResult);
+                break;
+            case REMATCH_PROMPT:
+                client.gui.gameOver(lastResult + "<br><br>Do you want to play again?");
+                break;
+            case NEW_GAME:
+                notifyNewGame();
+                break;
+            case SESSION_END:
+                sessionEnded(event.getEndReason());
+                break;
+            case CHAT:
+            case MESSAGE:
+                client.displayMessage(event.describe());
+                break;
+        }
     }
 }
 
-    @Override
-    public void updateBoard(char[][] board) throws RemoteException {
-        client.gui.updateBoard(board);
+private void sessionEnded(GameEvent.EndReason reason) {
+    if (reason == GameEvent.EndReason.REMATCH_DECLINED) {
+        client.gui.showTimedErrorMessage("Opponent declined to play again", 5000);
+    } else if (reason == GameEvent.EndReason.IDLE_TIMEOUT) {
+        client.gui.showTimedErrorMessage(reason.getDescription(), 5000);
+    } else {
+        client.gui.showTimedErrorMessage("Opponent left: " + reason.getDescription(), 5000);
     }
+}
 
-
-    
-    @Override
-    public void notifyNewGame() throws RemoteException {
+    private void notifyNewGame() {
         client.gui.resetGameBoard();
         client.gui.setStatusMessage("New game starting...", client.gui.getPrimaryColor());
     }
 
-@Override 
-public void notifyTurn() throws RemoteException {
+private void notifyTurn() {
     client.gui.setStatusMessage("YOUR TURN - Make your move!", client.gui.getAccentColor());
     client.gui.enableBoard(true);
 }
-
-@Override
-public void gameOver(String message) throws RemoteException {
-    client.gui.gameOver(message); 
-}
 }
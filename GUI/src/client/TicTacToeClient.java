@@ -2,185 +2,168 @@ package client;
 
 import common.*;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
-import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 public class TicTacToeClient {
     public TicTacToeGUI gui;
-    private TicTacToeService gameService;
+    // All server calls go through here so none of them runs on the Swing thread
+    private final AsyncGameService async = new AsyncGameService();
     private PlayerCallback callback;
-    private int playerId;
-    private Scanner scanner;
+    private GameOptions options;
+    private volatile int sessionId;
+    private volatile int playerId;
+    // Proves the seat is ours when asking a restarted server for it back
+    private volatile long resumeToken;
+    // Local copy of the board, kept current from move deltas
+    private char[][] board;
+    private long lastSequence;
     private String serverIP;
     private String clientIP;
 
-    public TicTacToeClient(TicTacToeService service, String serverIP, String clientIP) {
-        this.gameService = service;
+    public TicTacToeClient(String serverIP, String clientIP, GameOptions options) {
+        this.options = options;
         this.serverIP = serverIP;
         this.clientIP = clientIP;
-        this.scanner = new Scanner(System.in);
-        this.gameService = service;
         System.setProperty("sun.rmi.transport.tcp.responseTimeout", "30000");
         System.setProperty("sun.rmi.transport.proxy.connectTimeout", "30000");
         System.setProperty("sun.rmi.transport.tcp.handshakeTimeout", "30000");
     }
-    
-public void setGameService(TicTacToeService gameService) {
-    this.gameService = gameService;
-}
+
     public int getPlayerId() {
         return this.playerId;
     }
-    
 
+    public int getSessionId() {
+        return this.sessionId;
+    }
+
+    public GameOptions getOptions() {
+        return this.options;
+    }
+
+    public AsyncGameService getAsyncService() {
+        return async;
+    }
+
+    // Blocking stub for threads of our own (the heartbeat); null until connected
     public TicTacToeService getGameService() {
-        return this.gameService;
+        return async.getService();
     }
 
-public void start() throws RemoteException {
-    try {
-        Registry registry = LocateRegistry.getRegistry(serverIP, 1099);
-        TicTacToeService lookupService = (TicTacToeService) registry.lookup("TicTacToeService1");
-        String sessionName = lookupService.connectToAvailableSession();
-        gameService = (TicTacToeService) registry.lookup(sessionName);
+    // Looks up the service and takes a seat; completes on an I/O thread, never blocks the caller
+    public CompletableFuture<JoinResult> start() {
+        return async.connect(serverIP)
+                .thenCompose(service -> {
+                    try {
+                        callback = new PlayerCallbackImpl(this, clientIP);
+                    } catch (RemoteException e) {
+                        throw new CompletionException(e);
+                    }
+                    return async.quickJoin(callback, options);
+                })
+                .thenApply(joined -> {
+                    sessionId = joined.getSessionId();
+                    playerId = joined.getPlayerId();
+                    options = joined.getOptions();
+                    resumeToken = joined.getResumeToken();
+                    return joined;
+                });
+    }
+
+    // Called by the heartbeat thread when the server stops answering: keeps asking for our seat
+    // until a restarted server gives it back (with the board and whose turn it is) or says it is gone
+    public boolean reattach() {
+        if (playerId <= 0) {
+            return false;
+        }
+        TicTacToeService lost = async.getService();
+        if (lost instanceof NioGameService) {
+            ((NioGameService) lost).close();
+        }
+        long giveUpAt = System.currentTimeMillis() + GameConstants.REATTACH_MILLIS;
+        while (System.currentTimeMillis() < giveUpAt) {
+            try {
+                Thread.sleep(GameConstants.REATTACH_RETRY_MILLIS);
+                async.connect(serverIP).get();
+                if (async.resumeGame(sessionId, playerId, resumeToken, callback).get() == null) {
+                    return false; // The game did not survive
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception e) {
+                // Still down; try again
+            }
+        }
+        return false;
+    }
 
-        callback = new PlayerCallbackImpl(this, clientIP);
-        playerId = gameService.joinGame(callback);
+    public synchronized void applySnapshot(char[][] snapshot, long sequenceNumber) {
+        board = snapshot;
+        lastSequence = sequenceNumber;
+        gui.updateBoard(snapshot);
+    }
 
-        if (playerId == -1) {
-            throw new RemoteException("Server is full. Please try again later.");
+    public synchronized void applyMove(int row, int col, char symbol, long sequenceNumber) {
+        if (board != null && sequenceNumber <= lastSequence) {
+            return; // Already part of a newer snapshot
+        }
+        if (board == null || sequenceNumber != lastSequence + 1) {
+            // Missed a move; the server queues a full snapshot behind this delta
+            async.resyncBoard(sessionId, playerId).exceptionally(error -> {
+                System.err.println("Error while resynchronizing board: " + AsyncGameService.unwrap(error).getMessage());
+                return null;
+            });
+            return;
         }
-    } catch (Exception e) {
-        throw new RemoteException("Connection error: Sorry, all sessions are full. Try again Later");
+        board[row][col] = symbol;
+        lastSequence = sequenceNumber;
+        gui.updateCell(row, col, symbol);
     }
-}
+
     public void displayBoard(char[][] board) {
+        int size = board.length;
         System.out.println("\nCurrent Board:");
-        for (int i = 0; i < GameConstants.BOARD_SIZE; i++) {
-            for (int j = 0; j < GameConstants.BOARD_SIZE; j++) {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
                 System.out.print(" " + board[i][j] + " ");
-                if (j < GameConstants.BOARD_SIZE - 1) {
+                if (j < size - 1) {
                     System.out.print("|");
                 }
             }
             System.out.println();
-            if (i < GameConstants.BOARD_SIZE - 1) {
-                System.out.println("-----------");
+            if (i < size - 1) {
+                System.out.println("-".repeat(size * 4 - 1));
             }
         }
         System.out.println();
     }
 
-    public void notifyYourTurn() {
-        System.out.println("\nIt's your turn! Enter row and column (0-2) separated by space:");
-        try {
-            String input = scanner.nextLine().trim();
-
-            if (input.equalsIgnoreCase("quit")) {
-                quit(); 
-                return;
-            }
-
-            String[] parts = input.split(" ");
-            if (parts.length != 2) {
-                System.out.println("Invalid input. Please enter row and column separated by space.");
-                notifyYourTurn();
-                return;
-            }
-
-            int row = Integer.parseInt(parts[0]);
-            int col = Integer.parseInt(parts[1]);
-
-            boolean validMove = gameService.makeMove(playerId, row, col);
-            if (!validMove) {
-                notifyYourTurn();
-            }
-        } catch (NumberFormatException e) {
-            System.out.println("Please enter numbers only.");
-            notifyYourTurn();
-        } catch (RemoteException e) {
-            System.err.println("Error: Could not reach the server. The game might be over or the server is down.");
-            quit();
-        } catch (Exception e) {
-            System.err.println("Error: " + e.getMessage());
-            quit(); // Ensure clean exit on any error
-        }
-    }
-
-    public void gameOver(String message) {
-        System.out.println("\n" + message);
-        System.out.println("Enter your choice (yes/no/quit):");
-
-        new Thread(() -> {
-            try {
-                String response = scanner.nextLine().trim().toLowerCase();
-                switch (response) {
-                    case "quit":
-                        quit();
-                        break;
-                    case "yes":
-                    case "no":
-                        System.out.println("Sending response: " + response);
-                        try {
-                            gameService.playAgain(playerId, response.equals("yes"));
-                            if (response.equals("no")) {
-                                System.out.println("Thank you for playing! Goodbye.");
-                                Thread.sleep(1000); // Give time for message to display
-                                quit();
-                            }
-                        } catch (RemoteException e) {
-                            System.err.println("Error: Could not reach the server. The game session might have ended.");
-                            quit();
-                        }
-                        break;
-                    default:
-                        System.out.println("Invalid input. Please try again.");
-                        gameOver(message); // Restart the prompt
-                }
-            } catch (Exception e) {
-                System.err.println("Error handling input: " + e.getMessage());
-                quit();
-            }
-        }).start();
-    }
-
     public void handleNewGame() {
         // Empty implementation - GUI handles this
     }
 
     public void displayMessage(String message) {
-    if (message.startsWith("GAME_OVER|")) {
-        String content = message.substring("GAME_OVER|".length());
-        if (content.startsWith("SESSION_END|")) {
-            // Show the timed message
-            gui.showErrorMessage("Opponent left: " + content.substring("SESSION_END|".length()) + 
-                               " Closing in 5 seconds...");
-            new Thread(() -> {
-                try {
-                    Thread.sleep(5000);
-                    System.exit(0);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }).start();
-        } else {
-            gui.gameOver(content);
-        }
-    } else {
         gui.displayMessage(message);
     }
-}
+
+    // Tells the server we are leaving, then exits; the exit does not wait on a dead link forever
     public void quit() {
-    try {
-        if (gameService != null && playerId != -1) {
-            gameService.quitGame(playerId);  // Explicitly notify server
-            System.out.println("Notified server about leaving game");
+        if (async.getService() == null || playerId <= 0) {
+            System.exit(0);
         }
-    } catch (RemoteException e) {
-        System.err.println("Error while notifying server: " + e.getMessage());
-    } finally {
-        System.exit(0);  // Ensure complete shutdown
+        async.quitGame(sessionId, playerId)
+                .orTimeout(5, TimeUnit.SECONDS)
+                .whenComplete((ignored, error) -> {
+                    if (error == null) {
+                        System.out.println("Notified server about leaving game");
+                    } else {
+                        System.err.println("Error while notifying server: " + AsyncGameService.unwrap(error).getMessage());
+                    }
+                    System.exit(0);  // Ensure complete shutdown
+                });
     }
 }
-}
@@ -1,24 +1,24 @@
 package client;
 
 import javax.swing.*;
-import common.TicTacToeService;
 import java.awt.*;
-import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
 import common.GameConstants;
+import common.GameOptions;
 
 public class TicTacToeGUI {
     private TicTacToeClient client;
     private JFrame gameFrame;
     private JFrame connectionFrame;
-    private JButton[][] buttons = new JButton[3][3];
+    private JButton[][] buttons = new JButton[GameConstants.BOARD_SIZE][GameConstants.BOARD_SIZE];
     private JLabel statusLabel;
     private JTextField serverIpField;
     private JTextField clientIpField;
+    private JTextField boardSizeField;
+    private JTextField winLengthField;
 
 private JButton playAgainButton;
 private JButton quitButton;
+private JButton connectButton;
 
     // Simple color scheme
     private final Color PRIMARY_COLOR = new Color(70, 130, 180);  // Steel blue
@@ -55,12 +55,12 @@ public void enableBoard(boolean enable) {
 
     private void createConnectionPanel() {
         connectionFrame = new JFrame("Connect to Server");
-        connectionFrame.setSize(350, 200);
+        connectionFrame.setSize(350, 280);
         connectionFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         connectionFrame.setLayout(new BorderLayout(10, 10));
         connectionFrame.getContentPane().setBackground(SECONDARY_COLOR);
 
-        JPanel inputPanel = new JPanel(new GridLayout(2, 2, 10, 10));
+        JPanel inputPanel = new JPanel(new GridLayout(4, 2, 10, 10));
         inputPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 10, 20));
         inputPanel.setBackground(SECONDARY_COLOR);
 
@@ -80,8 +80,23 @@ public void enableBoard(boolean enable) {
         styleTextField(clientIpField);
         inputPanel.add(clientIpField);
 
+        // Board rules, negotiated with the server when joining
+        JLabel boardSizeLabel = createBoldLabel("Board Size:");
+        inputPanel.add(boardSizeLabel);
+
+        boardSizeField = new JTextField(String.valueOf(GameConstants.BOARD_SIZE));
+        styleTextField(boardSizeField);
+        inputPanel.add(boardSizeField);
+
+        JLabel winLengthLabel = createBoldLabel("In a Row:");
+        inputPanel.add(winLengthLabel);
+
+        winLengthField = new JTextField(String.valueOf(GameConstants.DEFAULT_WIN_LENGTH));
+        styleTextField(winLengthField);
+        inputPanel.add(winLengthField);
+
         // Connect Button
-        JButton connectButton = new JButton("CONNECT");
+        connectButton = new JButton("CONNECT");
         styleButton(connectButton, ACCENT_COLOR);
         connectButton.addActionListener(e -> connectToServer());
 
@@ -94,6 +109,11 @@ public void enableBoard(boolean enable) {
         connectionFrame.setVisible(true);
     }
 
+    // 48pt fits the classic 3x3 grid; shrink with the number of cells per row
+    private int cellFontSize(int size) {
+        return Math.max(12, 144 / size);
+    }
+
     private JLabel createBoldLabel(String text) {
         JLabel label = new JLabel(text);
         label.setFont(new Font("Arial", Font.BOLD, 14));
@@ -127,29 +147,53 @@ public void enableBoard(boolean enable) {
     try {
         String serverIP = serverIpField.getText();
         String clientIP = clientIpField.getText();
+        GameOptions options = new GameOptions(
+            Integer.parseInt(boardSizeField.getText().trim()),
+            Integer.parseInt(winLengthField.getText().trim()));
+        if (!options.isValid()) {
+            JOptionPane.showMessageDialog(
+                connectionFrame,
+                "Board size must be " + GameConstants.BOARD_SIZE + "-" + GameConstants.MAX_BOARD_SIZE
+                    + " and the row length between " + GameConstants.DEFAULT_WIN_LENGTH + " and the board size.",
+                "Invalid Board",
+                JOptionPane.WARNING_MESSAGE
+            );
+            return;
+        }
 
-        this.client = new TicTacToeClient(null, serverIP, clientIP);
+        this.client = new TicTacToeClient(serverIP, clientIP, options);
         client.gui = this;
 
-        Registry registry = LocateRegistry.getRegistry(serverIP, 1099);
-        TicTacToeService service = (TicTacToeService) registry.lookup("TicTacToeService1");
-
-        client.setGameService(service);
-
-        // Attempt to start the client (now propagates errors)
-        client.start(); 
-
-        // Close connection window only if successful
-        connectionFrame.dispose();
+        // Build the board before joining so callbacks that arrive ahead of the join result
+        // have something to update; it is shown once the seat is confirmed
         initializeGameGUI();
         statusLabel.setText("Waiting for opponent...");
-    } catch (RemoteException e) {
-        // Show error in connection window
+        connectButton.setEnabled(false);
+        connectButton.setText("CONNECTING...");
+
+        client.start().whenCompleteAsync((joined, error) -> {
+            if (error == null) {
+                // Close connection window only if successful
+                connectionFrame.dispose();
+                gameFrame.setVisible(true);
+                return;
+            }
+            gameFrame.dispose();
+            connectButton.setEnabled(true);
+            connectButton.setText("CONNECT");
+            JOptionPane.showMessageDialog(
+                connectionFrame,
+                "Connection error: Sorry, all sessions are full. Try again Later",
+                "Connection Error",
+                JOptionPane.ERROR_MESSAGE
+            );
+        }, AsyncGameService.EDT);
+    } catch (NumberFormatException e) {
         JOptionPane.showMessageDialog(
             connectionFrame,
-            e.getMessage(),
-            "Connection Error",
-            JOptionPane.ERROR_MESSAGE
+            "Board size and row length must be numbers.",
+            "Invalid Board",
+            JOptionPane.WARNING_MESSAGE
         );
     } catch (Exception ex) {
         JOptionPane.showMessageDialog(
@@ -161,21 +205,23 @@ public void enableBoard(boolean enable) {
     }
 }
    private void initializeGameGUI() {
+    int size = client.getOptions().getBoardSize();
     gameFrame = new JFrame("Tic Tac Toe");
-    gameFrame.setSize(400, 500); // Increased height to fit button
+    gameFrame.setSize(Math.max(400, size * 45 + 40), Math.max(500, size * 45 + 140)); // Increased height to fit button
     gameFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     gameFrame.setLayout(new BorderLayout(10, 10));
     gameFrame.getContentPane().setBackground(SECONDARY_COLOR);
 
-    // Game Board (unchanged)
-    JPanel boardPanel = new JPanel(new GridLayout(3, 3, 5, 5));
+    // Game Board
+    JPanel boardPanel = new JPanel(new GridLayout(size, size, 5, 5));
     boardPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 10, 20)); // Reduced bottom padding
     boardPanel.setBackground(BOARD_COLOR);
     
-    for (int i = 0; i < 3; i++) {
-        for (int j = 0; j < 3; j++) {
+    buttons = new JButton[size][size];
+    for (int i = 0; i < size; i++) {
+        for (int j = 0; j < size; j++) {
             buttons[i][j] = new JButton("");
-            buttons[i][j].setFont(new Font("Arial", Font.BOLD, 48));
+            buttons[i][j].setFont(new Font("Arial", Font.BOLD, cellFontSize(size)));
             buttons[i][j].setBackground(Color.WHITE);
             buttons[i][j].setForeground(PRIMARY_COLOR);
             buttons[i][j].setFocusPainted(false);
@@ -203,42 +249,45 @@ public void enableBoard(boolean enable) {
     leaveButton.setFont(new Font("Arial", Font.BOLD, 14));
     leaveButton.setBackground(ERROR_COLOR);
     leaveButton.setForeground(Color.WHITE);
-    leaveButton.addActionListener(e -> {
-        if (client != null) {
-            client.quit(); // This now properly notifies server
-        }
-        gameFrame.dispose();
-        System.exit(0); // Force exit
-    });
+    leaveButton.addActionListener(e -> leaveGame());
     leavePanel.add(leaveButton);
 
     // Add components to frame
     gameFrame.add(boardPanel, BorderLayout.CENTER);
     gameFrame.add(statusLabel, BorderLayout.SOUTH);
     gameFrame.add(leavePanel, BorderLayout.NORTH); // Button at top
-
-    gameFrame.setVisible(true);
 }
 
+    // The board stays disabled while the move is in flight so a slow link cannot queue clicks
     private void makeMove(int row, int col) {
-        try {
-            boolean validMove = client.getGameService().makeMove(client.getPlayerId(), row, col);
-            if(validMove) {
-                showOpponentTurn();
-            }
-        } catch (RemoteException ex) {
-            if(ex.getMessage().contains("not your turn")) {
-                showErrorMessage("Wait for your turn!");
-            } else {
-                showErrorMessage("Error making move: " + ex.getMessage());
-            }
+        enableBoard(false);
+        client.getAsyncService().makeMove(client.getSessionId(), client.getPlayerId(), row, col)
+                .whenCompleteAsync((validMove, error) -> {
+                    if (error != null) {
+                        showErrorMessage("Error making move: " + AsyncGameService.unwrap(error).getMessage());
+                        enableBoard(true);
+                    } else if (validMove) {
+                        showOpponentTurn();
+                    } else {
+                        // The server has already sent the reason
+                        enableBoard(true);
+                    }
+                }, AsyncGameService.EDT);
+    }
+
+    private void leaveGame() {
+        gameFrame.dispose();
+        if (client != null) {
+            client.quit(); // Notifies the server off the EDT, then exits
+        } else {
+            System.exit(0);
         }
     }
 
     public void updateBoard(char[][] board) {
         SwingUtilities.invokeLater(() -> {
-            for (int i = 0; i < 3; i++) {
-                for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < board.length; i++) {
+                for (int j = 0; j < board[i].length; j++) {
                     buttons[i][j].setText(String.valueOf(board[i][j]));
                     buttons[i][j].setEnabled(board[i][j] == GameConstants.EMPTY);
                     buttons[i][j].setForeground(
@@ -249,6 +298,14 @@ public void enableBoard(boolean enable) {
         });
     }
 
+    public void updateCell(int row, int col, char symbol) {
+        SwingUtilities.invokeLater(() -> {
+            buttons[row][col].setText(String.valueOf(symbol));
+            buttons[row][col].setEnabled(false);
+            buttons[row][col].setForeground(symbol == 'X' ? ACCENT_COLOR : PRIMARY_COLOR);
+        });
+    }
+
     public void notifyYourTurn() {
         SwingUtilities.invokeLater(() -> {
             statusLabel.setText("YOUR TURN - Make your move!");
@@ -290,29 +347,35 @@ public void gameOver(String message) {
         playAgainButton = new JButton("Play Again");
         styleButton(playAgainButton, ACCENT_COLOR);
         playAgainButton.addActionListener(e -> {
-            try {
-                client.getGameService().playAgain(client.getPlayerId(), true);
-                statusLabel.setText("Waiting for opponent's response...");
-                statusLabel.setForeground(PRIMARY_COLOR);
-                playAgainButton.setEnabled(false);
-                quitButton.setEnabled(false);
-            } catch (RemoteException ex) {
-                statusLabel.setText("Error sending response");
-                statusLabel.setForeground(ERROR_COLOR);
-            }
+            playAgainButton.setEnabled(false);
+            quitButton.setEnabled(false);
+            statusLabel.setText("Waiting for opponent's response...");
+            statusLabel.setForeground(PRIMARY_COLOR);
+            client.getAsyncService().playAgain(client.getSessionId(), client.getPlayerId(), true)
+                    .whenCompleteAsync((accepted, error) -> {
+                        if (error != null) {
+                            statusLabel.setText("Error sending response");
+                            statusLabel.setForeground(ERROR_COLOR);
+                            playAgainButton.setEnabled(true);
+                            quitButton.setEnabled(true);
+                        }
+                    }, AsyncGameService.EDT);
         });
 
         // Quit button
         quitButton = new JButton("Quit Game");
         styleButton(quitButton, ERROR_COLOR);
         quitButton.addActionListener(e -> {
-            try {
-                client.getGameService().playAgain(client.getPlayerId(), false);
-                System.exit(0);
-            } catch (RemoteException ex) {
-                statusLabel.setText("Error quitting game");
-                statusLabel.setForeground(ERROR_COLOR);
-            }
+            quitButton.setEnabled(false);
+            client.getAsyncService().playAgain(client.getSessionId(), client.getPlayerId(), false)
+                    .whenCompleteAsync((accepted, error) -> {
+                        if (error == null) {
+                            System.exit(0);
+                        }
+                        statusLabel.setText("Error quitting game");
+                        statusLabel.setForeground(ERROR_COLOR);
+                        quitButton.setEnabled(true);
+                    }, AsyncGameService.EDT);
         });
 
         buttonPanel.add(playAgainButton);
@@ -339,16 +402,17 @@ private void initializeGameBoard() {
     gameFrame.getContentPane().removeAll();
     
     // Create board panel
-    JPanel boardPanel = new JPanel(new GridLayout(3, 3, 5, 5));
+    int size = client.getOptions().getBoardSize();
+    JPanel boardPanel = new JPanel(new GridLayout(size, size, 5, 5));
     boardPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
     boardPanel.setBackground(BOARD_COLOR);
 
     // Reinitialize buttons
-    buttons = new JButton[3][3];
-    for (int i = 0; i < 3; i++) {
-        for (int j = 0; j < 3; j++) {
+    buttons = new JButton[size][size];
+    for (int i = 0; i < size; i++) {
+        for (int j = 0; j < size; j++) {
             buttons[i][j] = new JButton("");
-            buttons[i][j].setFont(new Font("Arial", Font.BOLD, 48));
+            buttons[i][j].setFont(new Font("Arial", Font.BOLD, cellFontSize(size)));
             buttons[i][j].setBackground(Color.WHITE);
             buttons[i][j].setForeground(PRIMARY_COLOR);
             buttons[i][j].setFocusPainted(false);
@@ -369,13 +433,7 @@ private void initializeGameBoard() {
     leaveButton.setFont(new Font("Arial", Font.BOLD, 14));
     leaveButton.setBackground(ERROR_COLOR);
     leaveButton.setForeground(Color.WHITE);
-    leaveButton.addActionListener(e -> {
-        if (client != null) {
-            client.quit();
-        }
-        gameFrame.dispose();
-        System.exit(0);
-    });
+    leaveButton.addActionListener(e -> leaveGame());
     leavePanel.add(leaveButton);
 
     // Reinitialize status label if needed
@@ -471,14 +529,8 @@ public void showTimedErrorMessage(String message, int delayMillis) {
 
     public void displayMessage(String message) {
         SwingUtilities.invokeLater(() -> {
-            if (message.equals("It's not your turn!")) {
-                showErrorMessage("Wait for your turn!");
-            } 
-            // Don't show game over messages in status label - handled by gameOver()
-            else if (!message.startsWith("GAME_OVER|")) {
-                statusLabel.setText(message);
-                statusLabel.setForeground(PRIMARY_COLOR);
-            }
+            statusLabel.setText(message);
+            statusLabel.setForeground(PRIMARY_COLOR);
         });
     }
 
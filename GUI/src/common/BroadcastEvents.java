@@ -0,0 +1,63 @@
+package common;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+// Events sent to every spectator of a game, encoded once. The server builds one instance per
+// update and passes the same object to all watchers: RMI copies the encoded bytes into each call
+// instead of serializing the events again, and the NIO transport writes the ready-made frame.
+// Receivers see a plain List<GameEvent>.
+public final class BroadcastEvents extends AbstractList<GameEvent> implements Externalizable {
+    private static final long serialVersionUID = 1L;
+
+    private List<GameEvent> events;
+    // A complete WireFormat EVENTS frame
+    private byte[] frame;
+
+    // Required by Externalizable
+    public BroadcastEvents() {
+    }
+
+    public BroadcastEvents(List<GameEvent> events) throws IOException {
+        this.events = Collections.unmodifiableList(events);
+        this.frame = WireFormat.events(events);
+    }
+
+    // Shared by every receiver; must not be modified
+    public byte[] frame() {
+        return frame;
+    }
+
+    @Override
+    public GameEvent get(int index) {
+        return events.get(index);
+    }
+
+    @Override
+    public int size() {
+        return events.size();
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(frame.length);
+        out.write(frame);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        DataInputStream body = new DataInputStream(new ByteArrayInputStream(bytes));
+        body.skipBytes(WireFormat.HEADER_BYTES);
+        events = WireFormat.readEvents(body);
+        frame = bytes;
+    }
+}
@@ -0,0 +1,316 @@
+package common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+// One state change pushed to a player. A state transition produces several events that
+// travel together in a single PlayerCallback.onEvents call. Clients dispatch on the kind;
+// on the wire an event is a one-byte opcode followed only by the fields that kind uses.
+public class GameEvent implements Externalizable {
+    private static final long serialVersionUID = 2L;
+
+    public enum Kind {
+        BOARD,          // full snapshot: board + sequenceNumber
+        MOVE,           // one move: row, col, symbol, sequenceNumber
+        TURN,           // it is the receiver's turn
+        MOVE_REJECTED,  // the receiver's move was refused: rejection
+        WIN,            // game won: playerId (symbol)
+        DRAW,           // board full, nobody won
+        REMATCH_PROMPT, // the receiver should answer playAgain
+        NEW_GAME,       // a rematch is starting
+        SESSION_END,    // the session is closed: endReason
+        CHAT,           // chat line: playerId, message
+        MESSAGE         // informational text for the player: message
+    }
+
+    public enum Rejection {
+        NOT_YOUR_TURN("It's not your turn!"),
+        INVALID_CELL("Invalid move! Try again.");
+
+        private final String description;
+
+        Rejection(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    public enum EndReason {
+        OPPONENT_LEFT("Opponent left the game"),
+        REMATCH_DECLINED("Player declined rematch. Closing session..."),
+        REMATCH_TIMEOUT("Game session ended - opponent didn't respond in time."),
+        IDLE_TIMEOUT("Game session closed after a period of inactivity.");
+
+        private final String description;
+
+        EndReason(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private Kind kind;
+    // row for MOVE, player id for WIN/CHAT, ordinal of the reason for MOVE_REJECTED/SESSION_END
+    private int row;
+    private int col;
+    private char symbol = GameConstants.EMPTY;
+    private long sequenceNumber;
+    private char[][] board;
+    private String message;
+
+    // Required by Externalizable
+    public GameEvent() {
+    }
+
+    private GameEvent(Kind kind) {
+        this.kind = kind;
+    }
+
+    public static GameEvent board(char[][] board, long sequenceNumber) {
+        GameEvent event = new GameEvent(Kind.BOARD);
+        event.board = board;
+        event.sequenceNumber = sequenceNumber;
+        return event;
+    }
+
+    public static GameEvent move(int row, int col, char symbol, long sequenceNumber) {
+        GameEvent event = new GameEvent(Kind.MOVE);
+        event.row = row;
+        event.col = col;
+        event.symbol = symbol;
+        event.sequenceNumber = sequenceNumber;
+        return event;
+    }
+
+    public static GameEvent turn() {
+        return new GameEvent(Kind.TURN);
+    }
+
+    public static GameEvent rejected(Rejection rejection) {
+        GameEvent event = new GameEvent(Kind.MOVE_REJECTED);
+        event.row = rejection.ordinal();
+        return event;
+    }
+
+    public static GameEvent win(int playerId) {
+        GameEvent event = new GameEvent(Kind.WIN);
+        event.row = playerId;
+        event.symbol = playerId == 1 ? GameConstants.PLAYER_X : GameConstants.PLAYER_O;
+        return event;
+    }
+
+    public static GameEvent draw() {
+        return new GameEvent(Kind.DRAW);
+    }
+
+    public static GameEvent rematchPrompt() {
+        return new GameEvent(Kind.REMATCH_PROMPT);
+    }
+
+    public static GameEvent newGame() {
+        return new GameEvent(Kind.NEW_GAME);
+    }
+
+    public static GameEvent sessionEnd(EndReason reason) {
+        GameEvent event = new GameEvent(Kind.SESSION_END);
+        event.row = reason.ordinal();
+        return event;
+    }
+
+    public static GameEvent chat(int playerId, String message) {
+        GameEvent event = new GameEvent(Kind.CHAT);
+        event.row = playerId;
+        event.message = message;
+        return event;
+    }
+
+    public static GameEvent message(String message) {
+        GameEvent event = new GameEvent(Kind.MESSAGE);
+        event.message = message;
+        return event;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
+    public char getSymbol() {
+        return symbol;
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public char[][] getBoard() {
+        return board;
+    }
+
+    public int getPlayerId() {
+        return row;
+    }
+
+    public Rejection getRejection() {
+        return Rejection.values()[row];
+    }
+
+    public EndReason getEndReason() {
+        return EndReason.values()[row];
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    // Human-readable form used by clients that just print events
+    public String describe() {
+        switch (kind) {
+            case MOVE_REJECTED:
+                return getRejection().getDescription();
+            case WIN:
+                return "Player " + getPlayerId() + " (" + symbol + ") wins!";
+            case DRAW:
+                return "It's a Draw!";
+            case SESSION_END:
+                return getEndReason().getDescription();
+            case CHAT:
+                return "Player " + getPlayerId() + ": " + message;
+            default:
+                return message == null ? kind.name() : message;
+        }
+    }
+
+    public void encode(DataOutput out) throws IOException {
+        out.writeByte(kind.ordinal());
+        switch (kind) {
+            case BOARD:
+                out.writeByte(board.length);
+                for (char[] cells : board) {
+                    for (char cell : cells) {
+                        out.writeByte(cell);
+                    }
+                }
+                writeVarLong(out, sequenceNumber);
+                break;
+            case MOVE:
+                out.writeByte(row);
+                out.writeByte(col);
+                out.writeByte(symbol);
+                writeVarLong(out, sequenceNumber);
+                break;
+            case MOVE_REJECTED:
+            case SESSION_END:
+                out.writeByte(row);
+                break;
+            case WIN:
+                out.writeByte(row);
+                out.writeByte(symbol);
+                break;
+            case CHAT:
+                out.writeByte(row);
+                out.writeUTF(message);
+                break;
+            case MESSAGE:
+                out.writeUTF(message);
+                break;
+            default:
+                // Opcode only
+        }
+    }
+
+    public static GameEvent decode(DataInput in) throws IOException {
+        GameEvent event = new GameEvent();
+        event.readFields(in);
+        return event;
+    }
+
+    private void readFields(DataInput in) throws IOException {
+        kind = KINDS[in.readUnsignedByte()];
+        switch (kind) {
+            case BOARD:
+                int size = in.readUnsignedByte();
+                board = new char[size][size];
+                for (int i = 0; i < size; i++) {
+                    for (int j = 0; j < size; j++) {
+                        board[i][j] = (char) in.readUnsignedByte();
+                    }
+                }
+                sequenceNumber = readVarLong(in);
+                break;
+            case MOVE:
+                row = in.readUnsignedByte();
+                col = in.readUnsignedByte();
+                symbol = (char) in.readUnsignedByte();
+                sequenceNumber = readVarLong(in);
+                break;
+            case MOVE_REJECTED:
+            case SESSION_END:
+                row = in.readUnsignedByte();
+                break;
+            case WIN:
+                row = in.readUnsignedByte();
+                symbol = (char) in.readUnsignedByte();
+                break;
+            case CHAT:
+                row = in.readUnsignedByte();
+                message = in.readUTF();
+                break;
+            case MESSAGE:
+                message = in.readUTF();
+                break;
+            default:
+                // Opcode only
+        }
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        encode(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        readFields(in);
+    }
+
+    // Sequence numbers are small for most of a session's life, so use 7 bits per byte
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed sequence number");
+    }
+}
@@ -0,0 +1,51 @@
+package common;
+
+import java.io.Serializable;
+
+// Board rules a player asks for at join time; only players asking for the same rules are paired
+public class GameOptions implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final GameOptions STANDARD =
+            new GameOptions(GameConstants.BOARD_SIZE, GameConstants.DEFAULT_WIN_LENGTH);
+
+    private final int boardSize;
+    private final int winLength;
+
+    public GameOptions(int boardSize, int winLength) {
+        this.boardSize = boardSize;
+        this.winLength = winLength;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public boolean isValid() {
+        return boardSize >= GameConstants.BOARD_SIZE && boardSize <= GameConstants.MAX_BOARD_SIZE
+                && winLength >= GameConstants.DEFAULT_WIN_LENGTH && winLength <= boardSize;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof GameOptions)) {
+            return false;
+        }
+        GameOptions that = (GameOptions) other;
+        return boardSize == that.boardSize && winLength == that.winLength;
+    }
+
+    @Override
+    public int hashCode() {
+        return boardSize * 31 + winLength;
+    }
+
+    @Override
+    public String toString() {
+        return boardSize + "x" + boardSize + " (" + winLength + " in a row)";
+    }
+}
@@ -0,0 +1,277 @@
+package common;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.ConnectException;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Client side of the NIO transport: TicTacToeService over one connection that also carries the
+// player's events, so the client exports nothing and opens no port. Calls block until their
+// reply arrives and may come from any thread. Events are handed to the callback on the reader
+// thread, so a callback must not call back into the service while handling them.
+public class NioGameService implements TicTacToeService {
+    // Same bound as the RMI client's sun.rmi.transport.tcp.responseTimeout
+    private static final long CALL_TIMEOUT_MILLIS = 30_000;
+
+    private final SocketChannel channel;
+    private final Object writeLock = new Object();
+    private final AtomicInteger callIds = new AtomicInteger();
+    private final ConcurrentHashMap<Integer, CompletableFuture<DataInputStream>> calls = new ConcurrentHashMap<>();
+    private volatile PlayerCallback callback;
+    private volatile boolean closed;
+
+    private NioGameService(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    public static boolean isSelected() {
+        return "nio".equals(System.getProperty(GameConstants.TRANSPORT_PROPERTY));
+    }
+
+    public static NioGameService connect(String host, int port) throws RemoteException {
+        try {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+            channel.socket().setTcpNoDelay(true);
+            NioGameService service = new NioGameService(channel);
+            Thread reader = new Thread(service::readFrames, "nio-reader");
+            reader.setDaemon(true);
+            reader.start();
+            return service;
+        } catch (IOException e) {
+            throw new ConnectException("Could not connect to " + host + ":" + port, e);
+        }
+    }
+
+    public void close() {
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public void ping() throws RemoteException {
+        call(WireFormat.PING, null);
+    }
+
+    @Override
+    public boolean heartbeat(int sessionId, int playerId) throws RemoteException {
+        return readBoolean(call(WireFormat.HEARTBEAT, out -> {
+            out.writeInt(sessionId);
+            out.writeByte(playerId);
+        }));
+    }
+
+    @Override
+    public int connectToAvailableSession() throws RemoteException {
+        return readInt(call(WireFormat.CONNECT, null));
+    }
+
+    @Override
+    public JoinResult quickJoin(PlayerCallback callback) throws RemoteException {
+        return quickJoin(callback, GameOptions.STANDARD);
+    }
+
+    // The connection stands for the callback on the server, so it carries one player at a time
+    @Override
+    public JoinResult quickJoin(PlayerCallback callback, GameOptions options) throws RemoteException {
+        this.callback = callback;
+        DataInputStream in = call(WireFormat.QUICK_JOIN, out -> WireFormat.writeOptions(out, options));
+        try {
+            return WireFormat.readJoinResult(in);
+        } catch (IOException e) {
+            throw new RemoteException("Malformed reply", e);
+        }
+    }
+
+    @Override
+    public int joinGame(int sessionId, PlayerCallback callback) throws RemoteException {
+        this.callback = callback;
+        return readInt(call(WireFormat.JOIN_GAME, out -> out.writeInt(sessionId)));
+    }
+
+    @Override
+    public boolean makeMove(int sessionId, int playerId, int row, int col) throws RemoteException {
+        return readBoolean(call(WireFormat.MAKE_MOVE, out -> {
+            out.writeInt(sessionId);
+            out.writeByte(playerId);
+            out.writeByte(row);
+            out.writeByte(col);
+        }));
+    }
+
+    @Override
+    public boolean playAgain(int sessionId, int playerId, boolean response) throws RemoteException {
+        return readBoolean(call(WireFormat.PLAY_AGAIN, out -> {
+            out.writeInt(sessionId);
+            out.writeByte(playerId);
+            out.writeBoolean(response);
+        }));
+    }
+
+    @Override
+    public void quitGame(int sessionId, int playerId) throws RemoteException {
+        call(WireFormat.QUIT, out -> {
+            out.writeInt(sessionId);
+            out.writeByte(playerId);
+        });
+    }
+
+    @Override
+    public void resyncBoard(int sessionId, int playerId) throws RemoteException {
+        call(WireFormat.RESYNC, out -> {
+            out.writeInt(sessionId);
+            out.writeByte(playerId);
+        });
+    }
+
+    // The new connection takes over as the player's callback
+    @Override
+    public JoinResult resumeGame(int sessionId, int playerId, long resumeToken, PlayerCallback callback)
+            throws RemoteException {
+        this.callback = callback;
+        DataInputStream in = call(WireFormat.RESUME, out -> {
+            out.writeInt(sessionId);
+            out.writeByte(playerId);
+            out.writeLong(resumeToken);
+        });
+        try {
+            return in.readBoolean() ? WireFormat.readJoinResult(in) : null;
+        } catch (IOException e) {
+            throw new RemoteException("Malformed reply", e);
+        }
+    }
+
+    // This connection's events now include the watched game's
+    @Override
+    public GameOptions watchGame(int sessionId, PlayerCallback callback) throws RemoteException {
+        this.callback = callback;
+        DataInputStream in = call(WireFormat.WATCH, out -> out.writeInt(sessionId));
+        try {
+            return WireFormat.readOptions(in);
+        } catch (IOException e) {
+            throw new RemoteException("Malformed reply", e);
+        }
+    }
+
+    @Override
+    public void sendChat(int sessionId, int playerId, String text) throws RemoteException {
+        call(WireFormat.CHAT, out -> {
+            out.writeInt(sessionId);
+            out.writeByte(playerId);
+            out.writeUTF(text);
+        });
+    }
+
+    private DataInputStream call(byte opcode, WireFormat.Body body) throws RemoteException {
+        if (closed) {
+            throw new ConnectException("Connection to server lost");
+        }
+        int callId = callIds.incrementAndGet();
+        CompletableFuture<DataInputStream> reply = new CompletableFuture<>();
+        calls.put(callId, reply);
+        try {
+            ByteBuffer frame = ByteBuffer.wrap(WireFormat.frame(opcode, callId, body));
+            synchronized (writeLock) {
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            }
+            return reply.get(CALL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            close();
+            throw new ConnectException("Connection to server lost", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RemoteException ? (RemoteException) cause : new RemoteException("Call failed", cause);
+        } catch (TimeoutException e) {
+            throw new RemoteException("No reply from server within " + CALL_TIMEOUT_MILLIS + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while waiting for the server");
+        } finally {
+            calls.remove(callId);
+        }
+    }
+
+    private void readFrames() {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(channel.socket().getInputStream()));
+            while (true) {
+                int length = in.readInt();
+                if (length < WireFormat.HEADER_BYTES - 4 || length > WireFormat.MAX_FRAME_BYTES) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                DataInputStream frame = new DataInputStream(new ByteArrayInputStream(bytes));
+                byte opcode = frame.readByte();
+                int callId = frame.readInt();
+                if (opcode == WireFormat.EVENTS) {
+                    deliver(WireFormat.readEvents(frame));
+                    continue;
+                }
+                CompletableFuture<DataInputStream> reply = calls.get(callId);
+                if (reply == null) {
+                    continue; // Timed out already
+                }
+                if (opcode == WireFormat.ERROR) {
+                    reply.completeExceptionally(new RemoteException(frame.readUTF()));
+                } else {
+                    reply.complete(frame);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed && !(e instanceof EOFException)) {
+                System.err.println("Connection to server lost: " + e.getMessage());
+            }
+        } finally {
+            close();
+            for (CompletableFuture<DataInputStream> reply : calls.values()) {
+                reply.completeExceptionally(new ConnectException("Connection to server lost"));
+            }
+        }
+    }
+
+    private void deliver(List<GameEvent> events) {
+        PlayerCallback target = callback;
+        if (target == null) {
+            return;
+        }
+        try {
+            target.onEvents(events);
+        } catch (RemoteException | RuntimeException e) {
+            System.err.println("Event handling failed: " + e);
+        }
+    }
+
+    private static boolean readBoolean(DataInputStream in) throws RemoteException {
+        try {
+            return in.readBoolean();
+        } catch (IOException e) {
+            throw new RemoteException("Malformed reply", e);
+        }
+    }
+
+    private static int readInt(DataInputStream in) throws RemoteException {
+        try {
+            return in.readInt();
+        } catch (IOException e) {
+            throw new RemoteException("Malformed reply", e);
+        }
+    }
+}
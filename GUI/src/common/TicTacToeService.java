@@ -5,9 +5,20 @@ import java.rmi.RemoteException;
 
 public interface TicTacToeService extends Remote {
     void ping() throws RemoteException;
-    String connectToAvailableSession() throws RemoteException;
-    int joinGame(PlayerCallback callback) throws RemoteException;
-    boolean makeMove(int playerId, int row, int col) throws RemoteException;
-    boolean playAgain(int playerId, boolean response) throws RemoteException;
-    void quitGame(int playerId) throws RemoteException;
-}
\ No newline at end of file
+    boolean heartbeat(int sessionId, int playerId) throws RemoteException;
+    int connectToAvailableSession() throws RemoteException;
+    JoinResult quickJoin(PlayerCallback callback) throws RemoteException;
+    JoinResult quickJoin(PlayerCallback callback, GameOptions options) throws RemoteException;
+    int joinGame(int sessionId, PlayerCallback callback) throws RemoteException;
+    boolean makeMove(int sessionId, int playerId, int row, int col) throws RemoteException;
+    boolean playAgain(int sessionId, int playerId, boolean response) throws RemoteException;
+    void quitGame(int sessionId, int playerId) throws RemoteException;
+    void resyncBoard(int sessionId, int playerId) throws RemoteException;
+    void sendChat(int sessionId, int playerId, String text) throws RemoteException;
+    // Takes a seat back on a new callback after a lost connection or a server restart; null once
+    // the seat is no longer held
+    JoinResult resumeGame(int sessionId, int playerId, long resumeToken, PlayerCallback callback) throws RemoteException;
+    // Follows a game without a seat: the callback gets the board, then every move and result,
+    // until the session ends. Returns the game's rules.
+    GameOptions watchGame(int sessionId, PlayerCallback callback) throws RemoteException;
+}
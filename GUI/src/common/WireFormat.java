@@ -0,0 +1,107 @@
+package common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Framing of the optional NIO transport. Every frame is a 4-byte length followed by an opcode,
+// a call id and the opcode's arguments. Calls are answered with REPLY or ERROR carrying the
+// same id; the server pushes events as EVENTS frames (call id 0) on the same connection, each
+// event in GameEvent's compact encoding. A move is 16 bytes on the wire, its reply 10.
+// Spectator updates are built once as BroadcastEvents and the same frame bytes go to every watcher.
+public final class WireFormat {
+    // Client to server
+    public static final byte PING = 1;
+    public static final byte HEARTBEAT = 2;
+    public static final byte CONNECT = 3;
+    public static final byte QUICK_JOIN = 4;
+    public static final byte JOIN_GAME = 5;
+    public static final byte MAKE_MOVE = 6;
+    public static final byte PLAY_AGAIN = 7;
+    public static final byte QUIT = 8;
+    public static final byte RESYNC = 9;
+    public static final byte CHAT = 10;
+    public static final byte RESUME = 11;
+    public static final byte WATCH = 12;
+    // Server to client
+    public static final byte REPLY = 64;
+    public static final byte ERROR = 65;
+    public static final byte EVENTS = 66;
+
+    // Far above any legal frame; a larger length prefix means a broken or hostile peer
+    public static final int MAX_FRAME_BYTES = 64 * 1024;
+    // Bytes before the arguments: length, opcode, call id
+    public static final int HEADER_BYTES = 9;
+
+    @FunctionalInterface
+    public interface Body {
+        void write(DataOutput out) throws IOException;
+    }
+
+    private WireFormat() {
+    }
+
+    public static byte[] frame(byte opcode, int callId, Body body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // Patched below
+        out.writeByte(opcode);
+        out.writeInt(callId);
+        if (body != null) {
+            body.write(out);
+        }
+        byte[] frame = bytes.toByteArray();
+        int length = frame.length - 4;
+        frame[0] = (byte) (length >>> 24);
+        frame[1] = (byte) (length >>> 16);
+        frame[2] = (byte) (length >>> 8);
+        frame[3] = (byte) length;
+        return frame;
+    }
+
+    public static byte[] events(List<GameEvent> events) throws IOException {
+        return frame(EVENTS, 0, out -> {
+            out.writeShort(events.size());
+            for (GameEvent event : events) {
+                event.encode(out);
+            }
+        });
+    }
+
+    public static List<GameEvent> readEvents(DataInput in) throws IOException {
+        int count = in.readUnsignedShort();
+        List<GameEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(GameEvent.decode(in));
+        }
+        return events;
+    }
+
+    public static void writeOptions(DataOutput out, GameOptions options) throws IOException {
+        out.writeByte(options.getBoardSize());
+        out.writeByte(options.getWinLength());
+    }
+
+    public static GameOptions readOptions(DataInput in) throws IOException {
+        int boardSize = in.readUnsignedByte();
+        return new GameOptions(boardSize, in.readUnsignedByte());
+    }
+
+    public static void writeJoinResult(DataOutput out, JoinResult result) throws IOException {
+        out.writeInt(result.getSessionId());
+        out.writeByte(result.getPlayerId());
+        writeOptions(out, result.getOptions());
+        out.writeLong(result.getResumeToken());
+    }
+
+    public static JoinResult readJoinResult(DataInput in) throws IOException {
+        int sessionId = in.readInt();
+        int playerId = in.readByte();
+        GameOptions options = readOptions(in);
+        return new JoinResult(sessionId, playerId, options, in.readLong());
+    }
+}
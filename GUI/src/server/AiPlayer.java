@@ -0,0 +1,166 @@
+package server;
+
+import common.GameConstants;
+import common.GameEvent;
+import common.GameOptions;
+import common.PlayerCallback;
+import common.TicTacToeService;
+
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Computer opponent. It is seated like any other player, as a PlayerCallback that answers its
+// own events: it tracks the board from BOARD and MOVE events, and on TURN plays the
+// PerfectPlayTable move on 3x3, runs an AlphaBetaSearch on mid-sized boards and a
+// MonteCarloSearch from -Dtictactoe.mctsMinBoardSize up. Searches take up to
+// -Dtictactoe.aiMoveMillis, so they run on their own small pool rather than on the callback
+// dispatcher. It accepts every rematch and heartbeats like a client so its lease never runs
+// out. A move rejected for its cell means its board has drifted: it asks for the board again
+// and replans from that. Calls go through an unexported TicTacToeServiceImpl by session id, so
+// once the session is gone (ids are never reused) they fail instead of reaching a pooled
+// session that serves another match.
+final class AiPlayer implements PlayerCallback {
+    private static final TicTacToeService service = new TicTacToeServiceImpl();
+    private static final long HEARTBEAT_SECONDS = 5;
+    private static final long MOVE_MILLIS = Long.getLong("tictactoe.aiMoveMillis", 500);
+    private static final int MCTS_MIN_BOARD_SIZE = Integer.getInteger("tictactoe.mctsMinBoardSize", 15);
+    private static final AtomicInteger threadCounter = new AtomicInteger(1);
+    private static final ExecutorService searches = Executors.newFixedThreadPool(
+            Integer.getInteger("tictactoe.aiThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+            task -> {
+                Thread thread = new Thread(task, "ai-search-" + threadCounter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final int sessionId;
+    private final int playerId;
+    private final GameOptions options;
+    // Touched only by onEvents, which a PlayerChannel never runs concurrently; 0 empty, else player id
+    private byte[] board;
+    // Set before asking for the board again, so the BOARD that answers replans the move
+    private volatile boolean replanOnBoard;
+
+    AiPlayer(int sessionId, int playerId, GameOptions options) {
+        this.sessionId = sessionId;
+        this.playerId = playerId;
+        this.options = options;
+        this.board = new byte[options.getBoardSize() * options.getBoardSize()];
+    }
+
+    void startHeartbeat() {
+        TimerWheel.schedule(this::heartbeat, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void onEvents(List<GameEvent> events) {
+        for (GameEvent event : events) {
+            try {
+                switch (event.getKind()) {
+                    case BOARD:
+                        board = decode(event.getBoard());
+                        if (replanOnBoard) {
+                            replanOnBoard = false;
+                            plan();
+                        }
+                        break;
+                    case MOVE:
+                        board[event.getRow() * options.getBoardSize() + event.getCol()] =
+                                (byte) (event.getSymbol() == GameConstants.PLAYER_X ? 1 : 2);
+                        break;
+                    case TURN:
+                        plan();
+                        break;
+                    case MOVE_REJECTED:
+                        // NOT_YOUR_TURN means the turn has moved on (a forfeit, the end of the
+                        // game) and the next TURN plans again
+                        if (event.getRejection() == GameEvent.Rejection.INVALID_CELL) {
+                            resync();
+                        }
+                        break;
+                    case REMATCH_PROMPT:
+                        service.playAgain(sessionId, playerId, true);
+                        break;
+                    default:
+                }
+            } catch (RemoteException e) {
+                // The session ended under us; there is nobody left to play against
+                return;
+            }
+        }
+    }
+
+    private void plan() throws RemoteException {
+        if (options.equals(GameOptions.STANDARD)) {
+            ServerMetrics.aiTableMove();
+            play(board, PerfectPlayTable.bestMove(PerfectPlayTable.encode(board), playerId));
+        } else {
+            byte[] position = board.clone();
+            searches.execute(() -> searchAndPlay(position));
+        }
+    }
+
+    private void searchAndPlay(byte[] position) {
+        try {
+            play(position, options.getBoardSize() >= MCTS_MIN_BOARD_SIZE
+                    ? MonteCarloSearch.bestMove(options, position, playerId, MOVE_MILLIS)
+                    : AlphaBetaSearch.bestMove(options, position, playerId, MOVE_MILLIS));
+        } catch (RemoteException ignored) {
+            // The session ended while we were thinking
+        }
+    }
+
+    // The searches only come back empty-handed on a full board, which it never is on our turn
+    private void play(byte[] position, int cell) throws RemoteException {
+        if (cell < 0) {
+            System.err.println("Computer player in session " + sessionId + " found no move, taking the first empty cell");
+            cell = firstEmpty(position);
+            if (cell < 0) {
+                resync();
+                return;
+            }
+        }
+        service.makeMove(sessionId, playerId, cell / options.getBoardSize(), cell % options.getBoardSize());
+    }
+
+    private void resync() throws RemoteException {
+        replanOnBoard = true;
+        service.resyncBoard(sessionId, playerId);
+    }
+
+    // Stops once the seat is gone
+    private void heartbeat() {
+        try {
+            if (service.heartbeat(sessionId, playerId)) {
+                startHeartbeat();
+            }
+        } catch (RemoteException ignored) {
+        }
+    }
+
+    private static int firstEmpty(byte[] position) {
+        for (int cell = 0; cell < position.length; cell++) {
+            if (position[cell] == 0) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] decode(char[][] snapshot) {
+        byte[] cells = new byte[snapshot.length * snapshot.length];
+        for (int row = 0; row < snapshot.length; row++) {
+            for (int col = 0; col < snapshot.length; col++) {
+                char symbol = snapshot[row][col];
+                if (symbol != GameConstants.EMPTY) {
+                    cells[row * snapshot.length + col] = (byte) (symbol == GameConstants.PLAYER_X ? 1 : 2);
+                }
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,169 @@
+package server;
+
+import common.GameConstants;
+import common.GameOptions;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Board state packed into one bit set per player (bit = row * size + col), sized for any
+// N x N board with K in a row. Only the lines through the last move are checked for a win:
+// boards that fit in one word use precomputed line masks, larger ones count along the four
+// directions, so each move costs O(K) instead of a full-board scan.
+public class BitBoard {
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+    private static final ConcurrentHashMap<Integer, long[][]> LINE_MASKS = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final int winLength;
+    private final long[] xBits;
+    private final long[] oBits;
+    // Win lines through each cell, only for boards of at most 64 cells
+    private final long[][] linesThrough;
+    private int stones;
+
+    public BitBoard(GameOptions options) {
+        this.size = options.getBoardSize();
+        this.winLength = options.getWinLength();
+        int words = (size * size + 63) >>> 6;
+        this.xBits = new long[words];
+        this.oBits = new long[words];
+        this.linesThrough = words == 1
+                ? LINE_MASKS.computeIfAbsent(size << 8 | winLength, key -> buildLineMasks(size, winLength))
+                : null;
+    }
+
+    private BitBoard(BitBoard source) {
+        this.size = source.size;
+        this.winLength = source.winLength;
+        this.xBits = source.xBits.clone();
+        this.oBits = source.oBits.clone();
+        this.linesThrough = source.linesThrough;
+        this.stones = source.stones;
+    }
+
+    // Copy with one more stone; used by immutable game states, the receiver is left untouched
+    public BitBoard withStone(int row, int col, int playerId) {
+        BitBoard next = new BitBoard(this);
+        next.place(row, col, playerId);
+        return next;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(xBits, 0);
+        Arrays.fill(oBits, 0);
+        stones = 0;
+    }
+
+    public boolean inBounds(int row, int col) {
+        return row >= 0 && row < size && col >= 0 && col < size;
+    }
+
+    public boolean isOccupied(int row, int col) {
+        int cell = row * size + col;
+        return ((xBits[cell >>> 6] | oBits[cell >>> 6]) & (1L << cell)) != 0;
+    }
+
+    // 1 or 2 for the owner of the stone, 0 if the cell is empty
+    public int stoneAt(int row, int col) {
+        int cell = row * size + col;
+        long bit = 1L << cell;
+        return (xBits[cell >>> 6] & bit) != 0 ? 1 : (oBits[cell >>> 6] & bit) != 0 ? 2 : 0;
+    }
+
+    public void place(int row, int col, int playerId) {
+        int cell = row * size + col;
+        bits(playerId)[cell >>> 6] |= 1L << cell;
+        stones++;
+    }
+
+    // Whether the stone just placed at (row, col) completes a line for its owner
+    public boolean isWinningMove(int row, int col, int playerId) {
+        long[] own = bits(playerId);
+        if (linesThrough != null) {
+            long mask = own[0];
+            for (long line : linesThrough[row * size + col]) {
+                if ((mask & line) == line) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int[] direction : DIRECTIONS) {
+            int run = 1 + run(own, row, col, direction[0], direction[1])
+                    + run(own, row, col, -direction[0], -direction[1]);
+            if (run >= winLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isFull() {
+        return stones == size * size;
+    }
+
+    public char[][] toCharArray() {
+        char[][] view = new char[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int cell = i * size + j;
+                long bit = 1L << cell;
+                view[i][j] = (xBits[cell >>> 6] & bit) != 0 ? GameConstants.PLAYER_X
+                        : (oBits[cell >>> 6] & bit) != 0 ? GameConstants.PLAYER_O
+                        : GameConstants.EMPTY;
+            }
+        }
+        return view;
+    }
+
+    private long[] bits(int playerId) {
+        return playerId == 1 ? xBits : oBits;
+    }
+
+    // Consecutive own stones from (row, col) in one direction, excluding the start cell
+    private int run(long[] own, int row, int col, int dRow, int dCol) {
+        int count = 0;
+        int r = row + dRow;
+        int c = col + dCol;
+        while (count < winLength - 1 && inBounds(r, c)) {
+            int cell = r * size + c;
+            if ((own[cell >>> 6] & (1L << cell)) == 0) {
+                break;
+            }
+            count++;
+            r += dRow;
+            c += dCol;
+        }
+        return count;
+    }
+
+    private static long[][] buildLineMasks(int size, int winLength) {
+        long[][] masks = new long[size * size][0];
+        for (int[] direction : DIRECTIONS) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int endRow = row + direction[0] * (winLength - 1);
+                    int endCol = col + direction[1] * (winLength - 1);
+                    if (endRow < 0 || endRow >= size || endCol < 0 || endCol >= size) {
+                        continue;
+                    }
+                    long line = 0;
+                    for (int k = 0; k < winLength; k++) {
+                        line |= 1L << ((row + direction[0] * k) * size + col + direction[1] * k);
+                    }
+                    for (int k = 0; k < winLength; k++) {
+                        int cell = (row + direction[0] * k) * size + col + direction[1] * k;
+                        masks[cell] = Arrays.copyOf(masks[cell], masks[cell].length + 1);
+                        masks[cell][masks[cell].length - 1] = line;
+                    }
+                }
+            }
+        }
+        return masks;
+    }
+}
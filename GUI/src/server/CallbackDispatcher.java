@@ -0,0 +1,36 @@
+package server;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Process-wide pool that delivers every outbound callback. PlayerChannel keeps per-player
+// order on top of it; the pool only bounds how many remote calls are in flight at once.
+final class CallbackDispatcher {
+    private static final int THREADS = Integer.getInteger("tictactoe.callbackThreads",
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    private static final AtomicInteger threadCounter = new AtomicInteger(1);
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            THREADS, THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonThreads());
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private CallbackDispatcher() {
+    }
+
+    static void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    private static ThreadFactory daemonThreads() {
+        return task -> {
+            Thread thread = new Thread(task, "callback-dispatcher-" + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,22 @@
+package server;
+
+import java.util.Map;
+
+// JMX view of onEvents round trips, registered as tictactoe:type=Callbacks. Every callback is
+// one onEvents call, so latencies are keyed by the kind of the first event in the batch.
+public interface CallbackMetricsMXBean {
+    Map<String, Long> getCallCount();
+
+    Map<String, Double> getLatencyP50Micros();
+
+    Map<String, Double> getLatencyP99Micros();
+
+    Map<String, Double> getLatencyP999Micros();
+
+    Map<String, Double> getLatencyMaxMicros();
+
+    // Failed callbacks by exception type, plus LeaseExpired for players evicted without a call
+    Map<String, Long> getFailures();
+
+    void resetLatency();
+}
@@ -0,0 +1,21 @@
+package server;
+
+import java.util.Map;
+
+// JMX view of moves and rematches, registered as tictactoe:type=Gameplay
+public interface GameplayMetricsMXBean {
+    long getTotalMoves();
+
+    double getMovesPerSecond();
+
+    // Counts by GameEvent.Rejection, plus NOT_SEATED for moves from players without a seat
+    Map<String, Long> getRejectedMoves();
+
+    // Games that ended in a win, a draw or a forfeit
+    long getGamesFinished();
+
+    long getRematches();
+
+    // Rematches started per finished game
+    double getRematchRate();
+}
@@ -0,0 +1,21 @@
+package server;
+
+// JMX view of the move journal, registered as tictactoe:type=Journal
+public interface JournalMetricsMXBean {
+    boolean isOpen();
+
+    // Records forced to disk since the journal opened
+    long getRecords();
+
+    // Forces, each covering every record drained in one pass
+    long getCommits();
+
+    double getAverageRecordsPerCommit();
+
+    double getAverageCommitMicros();
+
+    // Appended records not yet forced
+    long getBacklog();
+
+    long getSegment();
+}
@@ -0,0 +1,534 @@
+package server;
+
+import common.GameOptions;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Monte Carlo tree search for the computer player on Gomoku-sized boards, where alpha-beta
+// cannot see far enough. Every core runs UCT iterations against one shared tree until the move's
+// time budget is spent: a thread descending through a node adds a virtual loss to it, so the
+// others spread out over different branches, and takes it back when it backs up the playout
+// result. The tree lives in fixed primitive arrays (children of a node are one contiguous block)
+// that are reused from move to move, and playouts run on per-thread bitboards with an in-place
+// list of empty cells, so an iteration allocates nothing. Children are the empty cells within
+// two of a stone; a move that wins at once, or blocks the opponent's immediate win, is played
+// without searching.
+final class MonteCarloSearch {
+    private static final int NODES = Integer.getInteger("tictactoe.mctsNodes", 1 << 19);
+    private static final int THREADS = Integer.getInteger("tictactoe.mctsThreads",
+            Runtime.getRuntime().availableProcessors());
+    private static final int VIRTUAL_LOSS = 3;
+    // Children are empty cells within this many rows and columns of a stone
+    private static final int REACH = 2;
+    // Random cells a playout draws looking for one next to a stone
+    private static final int LOCAL_TRIES = 8;
+    // Weight of the static prior, which fades as a child collects visits
+    private static final double BIAS = 2.0;
+    private static final int[] WEIGHTS = {0, 1, 8, 64, 512, 4_096, 32_768};
+    private static final double EXPLORATION = 1.0;
+    private static final int UNEXPANDED = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+
+    private static final AtomicInteger threadCounter = new AtomicInteger(1);
+    private static final ExecutorService workers = Executors.newFixedThreadPool(THREADS, task -> {
+        Thread thread = new Thread(task, "mcts-worker-" + threadCounter.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    });
+    // One tree per searching thread, reused for every move it searches
+    private static final ThreadLocal<MonteCarloSearch> trees = ThreadLocal.withInitial(MonteCarloSearch::new);
+
+    // Cell played to reach each node
+    private final int[] move = new int[NODES];
+    private final int[] firstChild = new int[NODES];
+    private final int[] childCount = new int[NODES];
+    private final AtomicIntegerArray expansion = new AtomicIntegerArray(NODES);
+    private final AtomicIntegerArray visits = new AtomicIntegerArray(NODES);
+    // Half points for the player who made the node's move: 2 per win, 1 per draw
+    private final AtomicLongArray score = new AtomicLongArray(NODES);
+    // Static value of the node's move in [0, 1], relative to its siblings
+    private final float[] prior = new float[NODES];
+    private final AtomicInteger allocated = new AtomicInteger();
+    private final AtomicInteger playouts = new AtomicInteger();
+
+    private int size;
+    private int winLength;
+    private int cells;
+    private byte[] root;
+    private int rootMover;
+    private int rootStones;
+    private long deadline;
+
+    // Best cell for the player to move, searched for limitMillis; -1 if the board is full
+    static int bestMove(GameOptions options, byte[] position, int mover, long limitMillis) {
+        long start = System.nanoTime();
+        MonteCarloSearch search = trees.get();
+        search.reset(options, position, mover, start + limitMillis * 1_000_000L);
+        int tactical = search.tacticalMove();
+        if (tactical != -2) {
+            return tactical;
+        }
+
+        int helpers = THREADS - 1;
+        CountDownLatch done = new CountDownLatch(helpers);
+        for (int t = 0; t < helpers; t++) {
+            workers.execute(() -> {
+                try {
+                    search.iterate(new Playout(search));
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        search.iterate(new Playout(search));
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int best = -1;
+        int bestVisits = -1;
+        for (int c = search.firstChild[0], end = c + search.childCount[0]; c < end; c++) {
+            if (search.visits.get(c) > bestVisits) {
+                bestVisits = search.visits.get(c);
+                best = search.move[c];
+            }
+        }
+        ServerMetrics.aiMonteCarloCompleted(search.playouts.get(), System.nanoTime() - start, search.allocated.get());
+        return best;
+    }
+
+    private void reset(GameOptions rules, byte[] position, int mover, long until) {
+        size = rules.getBoardSize();
+        winLength = rules.getWinLength();
+        cells = size * size;
+        root = position;
+        rootMover = mover;
+        rootStones = 0;
+        for (byte cell : position) {
+            if (cell != 0) {
+                rootStones++;
+            }
+        }
+        deadline = until;
+        playouts.set(0);
+        // Only the root is live; later nodes are cleared as they are handed out
+        allocated.set(1);
+        clearNode(0, -1);
+    }
+
+    private void clearNode(int node, int cell) {
+        move[node] = cell;
+        firstChild[node] = 0;
+        childCount[node] = 0;
+        expansion.set(node, UNEXPANDED);
+        visits.set(node, 0);
+        score.set(node, 0);
+    }
+
+    // A winning cell, else a cell that stops the opponent winning next move; -2 if neither,
+    // -1 if the board is full
+    private int tacticalMove() {
+        if (rootStones == cells) {
+            return -1;
+        }
+        if (rootStones == 0) {
+            return cells / 2;
+        }
+        Playout scratch = new Playout(this);
+        scratch.load();
+        int block = -2;
+        for (int cell = 0; cell < cells; cell++) {
+            if (root[cell] != 0) {
+                continue;
+            }
+            if (scratch.wouldComplete(cell, rootMover)) {
+                return cell;
+            }
+            if (block == -2 && scratch.wouldComplete(cell, 3 - rootMover)) {
+                block = cell;
+            }
+        }
+        return block;
+    }
+
+    // UCT iterations until the deadline
+    private void iterate(Playout playout) {
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < 16; i++) {
+                playout.run();
+            }
+        }
+    }
+
+    // Allocates the children of a node on the thread that won the expansion race; false if the
+    // pool is out of nodes, in which case the node is left EXPANDING and stays a leaf
+    private boolean expand(int node, Playout board, int mover) {
+        if (!expansion.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+            return false;
+        }
+        int count = board.candidates();
+        int first = allocated.getAndAdd(count);
+        if (count == 0 || first + count > NODES) {
+            return false;
+        }
+        int[] cellsByValue = board.candidates;
+        int[] values = board.values;
+        int max = 1;
+        for (int i = 0; i < count; i++) {
+            int cell = cellsByValue[i];
+            int value = board.potential(cell, mover);
+            max = Math.max(max, value);
+            // Insertion sort, best first, so unvisited children are tried in order of value
+            int j = i;
+            while (j > 0 && values[j - 1] < value) {
+                cellsByValue[j] = cellsByValue[j - 1];
+                values[j] = values[j - 1];
+                j--;
+            }
+            cellsByValue[j] = cell;
+            values[j] = value;
+        }
+        for (int i = 0; i < count; i++) {
+            clearNode(first + i, cellsByValue[i]);
+            prior[first + i] = values[i] / (float) max;
+        }
+        firstChild[node] = first;
+        childCount[node] = count;
+        expansion.set(node, EXPANDED);
+        return true;
+    }
+
+    // Child with the best upper confidence bound; unvisited children first
+    private int select(int node) {
+        double logParent = Math.log(Math.max(1, visits.get(node)));
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int c = firstChild[node], end = c + childCount[node]; c < end; c++) {
+            int n = visits.get(c);
+            if (n == 0) {
+                return c;
+            }
+            double value = score.get(c) / (2.0 * n) + EXPLORATION * Math.sqrt(logParent / n)
+                    + BIAS * prior[c] / (n + 1);
+            if (value > bestValue) {
+                bestValue = value;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    // Per-thread iteration state, allocated once per search; run() allocates nothing
+    private static final class Playout {
+        private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+        private final MonteCarloSearch tree;
+        private final int size;
+        private final int cells;
+        private final int winLength;
+        // Bit per cell for players 1 and 2
+        private final long[][] bits;
+        private final int[] empty;
+        // Index of each empty cell in empty[]
+        private final int[] slot;
+        private final int[] path;
+        private final int[] candidates;
+        private final int[] values;
+        private int emptyCount;
+        private long seed = System.nanoTime() | 1;
+
+        Playout(MonteCarloSearch tree) {
+            this.tree = tree;
+            this.size = tree.size;
+            this.cells = tree.cells;
+            this.winLength = tree.winLength;
+            int words = (cells + 63) >>> 6;
+            this.bits = new long[][] {new long[words], new long[words]};
+            this.empty = new int[cells];
+            this.slot = new int[cells];
+            this.path = new int[cells + 1];
+            this.candidates = new int[cells];
+            this.values = new int[cells];
+        }
+
+        void load() {
+            Arrays.fill(bits[0], 0);
+            Arrays.fill(bits[1], 0);
+            emptyCount = 0;
+            for (int cell = 0; cell < cells; cell++) {
+                byte owner = tree.root[cell];
+                if (owner == 0) {
+                    slot[cell] = emptyCount;
+                    empty[emptyCount++] = cell;
+                } else {
+                    bits[owner - 1][cell >>> 6] |= 1L << cell;
+                }
+            }
+        }
+
+        // One iteration: select with virtual loss, expand, play out at random, back up
+        void run() {
+            load();
+            int node = 0;
+            int depth = 0;
+            int mover = tree.rootMover;
+            int winner = -1;
+            // Last stones of the player to move and of the other player
+            int ownLast = -1;
+            int otherLast = -1;
+            path[depth++] = 0;
+            tree.visits.addAndGet(0, VIRTUAL_LOSS);
+            while (true) {
+                // A leaf is expanded on its second visit; one that another thread is expanding
+                // is played out as it is
+                if (tree.expansion.get(node) != EXPANDED
+                        && (tree.visits.get(node) <= VIRTUAL_LOSS || !tree.expand(node, this, mover))) {
+                    break;
+                }
+                node = tree.select(node);
+                path[depth++] = node;
+                tree.visits.addAndGet(node, VIRTUAL_LOSS);
+                int cell = tree.move[node];
+                place(cell, mover);
+                if (completes(cell, mover)) {
+                    winner = mover;
+                    break;
+                }
+                if (emptyCount == 0) {
+                    winner = 0;
+                    break;
+                }
+                ownLast = otherLast;
+                otherLast = cell;
+                mover = 3 - mover;
+            }
+            if (winner < 0) {
+                winner = rollout(mover, ownLast, otherLast);
+            }
+            tree.playouts.incrementAndGet();
+
+            // Node at depth d was reached by a move of the root mover when d is odd
+            for (int d = depth - 1; d >= 0; d--) {
+                int visited = path[d];
+                tree.visits.addAndGet(visited, 1 - VIRTUAL_LOSS);
+                int moved = (d & 1) == 1 ? tree.rootMover : 3 - tree.rootMover;
+                if (winner == 0) {
+                    tree.score.addAndGet(visited, 1);
+                } else if (winner == moved) {
+                    tree.score.addAndGet(visited, 2);
+                }
+            }
+        }
+
+        // Plays from the current position, mover to play, and returns the winner or 0. Each move
+        // completes a line through the mover's last stone if it can, else blocks one through the
+        // opponent's last stone, else is random near a stone: purely random playouts miss every threat.
+        private int rollout(int mover, int ownLast, int otherLast) {
+            while (emptyCount > 0) {
+                int cell = finishingCell(ownLast, mover);
+                if (cell < 0) {
+                    cell = finishingCell(otherLast, 3 - mover);
+                }
+                if (cell < 0) {
+                    cell = localCell();
+                }
+                place(cell, mover);
+                if (completes(cell, mover)) {
+                    return mover;
+                }
+                ownLast = otherLast;
+                otherLast = cell;
+                mover = 3 - mover;
+            }
+            return 0;
+        }
+
+        // A random empty cell next to a stone when a few tries find one, else any empty cell
+        private int localCell() {
+            int cell = empty[nextInt(emptyCount)];
+            for (int attempt = 0; attempt < LOCAL_TRIES && !touchesStone(cell); attempt++) {
+                cell = empty[nextInt(emptyCount)];
+            }
+            return cell;
+        }
+
+        private boolean touchesStone(int cell) {
+            int row = cell / size;
+            int col = cell % size;
+            for (int r = Math.max(0, row - 1); r <= Math.min(size - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(size - 1, col + 1); c++) {
+                    if (occupied(r * size + c)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        // The empty cell that completes a line of the player's through the given stone, or -1
+        private int finishingCell(int stone, int player) {
+            if (stone < 0) {
+                return -1;
+            }
+            long[] own = bits[player - 1];
+            int row = stone / size;
+            int col = stone % size;
+            for (int[] d : DIRECTIONS) {
+                for (int offset = 1 - winLength; offset <= 0; offset++) {
+                    int startRow = row + d[0] * offset;
+                    int startCol = col + d[1] * offset;
+                    int endRow = startRow + d[0] * (winLength - 1);
+                    int endCol = startCol + d[1] * (winLength - 1);
+                    if (startRow < 0 || startRow >= size || startCol < 0 || startCol >= size
+                            || endRow < 0 || endRow >= size || endCol < 0 || endCol >= size) {
+                        continue;
+                    }
+                    int missing = -1;
+                    for (int i = 0; i < winLength; i++) {
+                        int cell = (startRow + d[0] * i) * size + startCol + d[1] * i;
+                        if (has(own, cell)) {
+                            continue;
+                        }
+                        if (missing >= 0 || occupied(cell)) {
+                            missing = -2;
+                            break;
+                        }
+                        missing = cell;
+                    }
+                    if (missing >= 0) {
+                        return missing;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private void place(int cell, int player) {
+            bits[player - 1][cell >>> 6] |= 1L << cell;
+            int last = empty[--emptyCount];
+            empty[slot[cell]] = last;
+            slot[last] = slot[cell];
+        }
+
+        // Empty cells within two of a stone, written to candidates
+        int candidates() {
+            int count = 0;
+            for (int i = 0; i < emptyCount; i++) {
+                int cell = empty[i];
+                int row = cell / size;
+                int col = cell % size;
+                search:
+                for (int r = Math.max(0, row - REACH); r <= Math.min(size - 1, row + REACH); r++) {
+                    for (int c = Math.max(0, col - REACH); c <= Math.min(size - 1, col + REACH); c++) {
+                        if (occupied(r * size + c)) {
+                            candidates[count++] = cell;
+                            break search;
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        // Sum over the lines through an empty cell of what a stone there builds for the player
+        // and what it takes away from the opponent
+        int potential(int cell, int player) {
+            long[] own = bits[player - 1];
+            long[] other = bits[2 - player];
+            int row = cell / size;
+            int col = cell % size;
+            int value = 0;
+            for (int[] d : DIRECTIONS) {
+                for (int offset = 1 - winLength; offset <= 0; offset++) {
+                    int startRow = row + d[0] * offset;
+                    int startCol = col + d[1] * offset;
+                    int endRow = startRow + d[0] * (winLength - 1);
+                    int endCol = startCol + d[1] * (winLength - 1);
+                    if (startRow < 0 || startRow >= size || startCol < 0 || startCol >= size
+                            || endRow < 0 || endRow >= size || endCol < 0 || endCol >= size) {
+                        continue;
+                    }
+                    int mine = 0;
+                    int theirs = 0;
+                    for (int i = 0; i < winLength; i++) {
+                        int at = (startRow + d[0] * i) * size + startCol + d[1] * i;
+                        if (has(own, at)) {
+                            mine++;
+                        } else if (has(other, at)) {
+                            theirs++;
+                        }
+                    }
+                    if (theirs == 0) {
+                        value += WEIGHTS[Math.min(mine + 1, WEIGHTS.length - 1)];
+                    } else if (mine == 0) {
+                        value += WEIGHTS[Math.min(theirs + 1, WEIGHTS.length - 1)] / 2;
+                    }
+                }
+            }
+            return value;
+        }
+
+        boolean wouldComplete(int cell, int player) {
+            long[] own = bits[player - 1];
+            own[cell >>> 6] |= 1L << cell;
+            boolean line = completes(cell, player);
+            own[cell >>> 6] &= ~(1L << cell);
+            return line;
+        }
+
+        // Whether the player's stone at cell is part of winLength in a row
+        private boolean completes(int cell, int player) {
+            long[] own = bits[player - 1];
+            int row = cell / size;
+            int col = cell % size;
+            for (int[] d : DIRECTIONS) {
+                int run = 1;
+                for (int step = 1; run < winLength; step++) {
+                    int r = row + d[0] * step;
+                    int c = col + d[1] * step;
+                    if (r < 0 || r >= size || c < 0 || c >= size || !has(own, r * size + c)) {
+                        break;
+                    }
+                    run++;
+                }
+                for (int step = 1; run < winLength; step++) {
+                    int r = row - d[0] * step;
+                    int c = col - d[1] * step;
+                    if (r < 0 || r >= size || c < 0 || c >= size || !has(own, r * size + c)) {
+                        break;
+                    }
+                    run++;
+                }
+                if (run >= winLength) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean occupied(int cell) {
+            return has(bits[0], cell) || has(bits[1], cell);
+        }
+
+        private static boolean has(long[] own, int cell) {
+            return (own[cell >>> 6] & (1L << cell)) != 0;
+        }
+
+        // xorshift64; java.util.Random would contend on its seed across threads
+        private int nextInt(int bound) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            return (int) ((seed >>> 33) % bound);
+        }
+    }
+}
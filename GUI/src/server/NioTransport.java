@@ -0,0 +1,343 @@
+package server;
+
+import common.BroadcastEvents;
+import common.GameEvent;
+import common.GameOptions;
+import common.JoinResult;
+import common.PlayerCallback;
+import common.TicTacToeService;
+import common.WireFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Optional transport (-Dtictactoe.transport=nio or both): the TicTacToeService calls and the
+// player's events share one connection per client, framed by WireFormat. A single selector
+// thread accepts, reads and runs requests; session calls never wait on a remote peer, so
+// running them inline is cheap. Each connection is the player's PlayerCallback: onEvents
+// encodes the events on the dispatcher thread and queues the frame for the selector to write,
+// and a closed connection fails the callback so the session evicts the player as it would an
+// unreachable RMI client. A connection whose peer stops reading is closed once its queued
+// frames pass -Dtictactoe.nioQueueKilobytes. Spectator frames never pile up to that: the
+// connection is a SpectatorFeed.Sink, so each watcher has at most one frame queued here.
+public final class NioTransport implements Runnable {
+    private static final int READ_BUFFER_BYTES = 16 * 1024;
+    private static final int MAX_QUEUED_BYTES = Integer.getInteger("tictactoe.nioQueueKilobytes", 256) * 1024;
+
+    private final TicTacToeService service;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    // Connections with frames waiting to be written
+    private final ConcurrentLinkedQueue<Connection> writable = new ConcurrentLinkedQueue<>();
+    // Bytes waiting in every connection's queue
+    private final LongAdder queuedBytes = new LongAdder();
+
+    private NioTransport(TicTacToeService service, Selector selector, ServerSocketChannel server) {
+        this.service = service;
+        this.selector = selector;
+        this.server = server;
+    }
+
+    public static NioTransport start(TicTacToeService service, int port) throws IOException {
+        Selector selector = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        NioTransport transport = new NioTransport(service, selector, server);
+        // Not a daemon: with RMI disabled this thread is what keeps the server running
+        Thread thread = new Thread(transport, "nio-transport");
+        thread.start();
+        System.out.println("NIO transport listening on port " + port);
+        return transport;
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public long getQueuedBytes() {
+        return queuedBytes.sum();
+    }
+
+    @Override
+    public void run() {
+        while (selector.isOpen()) {
+            try {
+                selector.select();
+                Connection pending;
+                while ((pending = writable.poll()) != null) {
+                    pending.flush();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isReadable()) {
+                        connection.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("NIO transport error: " + e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    // A frame waiting to be written; written, if set, is told whether it went out
+    private static final class Outbound {
+        final ByteBuffer bytes;
+        final Consumer<Boolean> written;
+
+        Outbound(byte[] frame, Consumer<Boolean> written) {
+            this.bytes = ByteBuffer.wrap(frame);
+            this.written = written;
+        }
+    }
+
+    private final class Connection implements PlayerCallback, SpectatorFeed.Sink {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        private final ConcurrentLinkedQueue<Outbound> out = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger outBytes = new AtomicInteger();
+        private final AtomicBoolean flushQueued = new AtomicBoolean();
+        private SelectionKey key;
+        // Set by any thread; the selector thread then closes the channel and drops the queue
+        private volatile boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        // Runs on a CallbackDispatcher thread
+        @Override
+        public void onEvents(List<GameEvent> events) throws RemoteException {
+            if (events instanceof BroadcastEvents) {
+                queue(((BroadcastEvents) events).frame(), null);
+                return;
+            }
+            try {
+                queue(WireFormat.events(events), null);
+            } catch (IOException e) {
+                throw new RemoteException("Could not encode events", e);
+            }
+        }
+
+        // Runs on a spectator thread. Encoded once for every spectator; each connection only
+        // gets its own view of the bytes.
+        @Override
+        public void send(BroadcastEvents events, Consumer<Boolean> written) throws RemoteException {
+            queue(events.frame(), written);
+        }
+
+        private void queue(byte[] frame, Consumer<Boolean> written) throws RemoteException {
+            if (closed) {
+                throw new RemoteException("Client connection closed");
+            }
+            if (outBytes.addAndGet(frame.length) > MAX_QUEUED_BYTES) {
+                outBytes.addAndGet(-frame.length);
+                closed = true;
+                requestFlush();
+                throw new RemoteException("Client is not reading; connection closed");
+            }
+            queuedBytes.add(frame.length);
+            out.offer(new Outbound(frame, written));
+            // Also if the connection closed meanwhile: the flush drops what is left
+            requestFlush();
+        }
+
+        private void requestFlush() {
+            if (flushQueued.compareAndSet(false, true)) {
+                writable.offer(this);
+                selector.wakeup();
+            }
+        }
+
+        // Selector thread only
+        void flush() {
+            flushQueued.set(false);
+            if (closed) {
+                close();
+                return;
+            }
+            try {
+                Outbound frame;
+                while ((frame = out.peek()) != null) {
+                    channel.write(frame.bytes);
+                    if (frame.bytes.hasRemaining()) {
+                        // Socket buffer full; resume when the selector says it drained
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    out.poll();
+                    done(frame, true);
+                }
+                if (key.isValid()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void done(Outbound frame, boolean written) {
+            int length = frame.bytes.capacity();
+            outBytes.addAndGet(-length);
+            queuedBytes.add(-length);
+            if (frame.written != null) {
+                frame.written.accept(written);
+            }
+        }
+
+        // Selector thread only; runs every complete frame in the buffer
+        void read() {
+            try {
+                if (channel.read(in) < 0) {
+                    close();
+                    return;
+                }
+                in.flip();
+                while (in.remaining() >= 4) {
+                    int length = in.getInt(in.position());
+                    if (length < WireFormat.HEADER_BYTES - 4 || length > in.capacity() - 4) {
+                        throw new IOException("Bad frame length " + length);
+                    }
+                    if (in.remaining() < 4 + length) {
+                        break;
+                    }
+                    byte[] frame = new byte[length];
+                    in.position(in.position() + 4);
+                    in.get(frame);
+                    handle(new DataInputStream(new ByteArrayInputStream(frame)));
+                }
+                in.compact();
+                // Write the replies now rather than on the next pass of the selector
+                flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void handle(DataInputStream request) throws IOException {
+            byte opcode = request.readByte();
+            int callId = request.readInt();
+            byte[] reply;
+            try {
+                reply = invoke(opcode, callId, request);
+            } catch (RemoteException | RuntimeException e) {
+                String message = e.getMessage() == null ? e.toString() : e.getMessage();
+                reply = WireFormat.frame(WireFormat.ERROR, callId, out -> out.writeUTF(message));
+            }
+            queue(reply, null);
+        }
+
+        private byte[] invoke(byte opcode, int callId, DataInputStream in) throws IOException {
+            switch (opcode) {
+                case WireFormat.PING:
+                    service.ping();
+                    return WireFormat.frame(WireFormat.REPLY, callId, null);
+                case WireFormat.HEARTBEAT: {
+                    boolean seated = service.heartbeat(in.readInt(), in.readByte());
+                    return WireFormat.frame(WireFormat.REPLY, callId, out -> out.writeBoolean(seated));
+                }
+                case WireFormat.CONNECT: {
+                    int sessionId = service.connectToAvailableSession();
+                    return WireFormat.frame(WireFormat.REPLY, callId, out -> out.writeInt(sessionId));
+                }
+                case WireFormat.QUICK_JOIN: {
+                    JoinResult joined = service.quickJoin(this, WireFormat.readOptions(in));
+                    return WireFormat.frame(WireFormat.REPLY, callId, out -> WireFormat.writeJoinResult(out, joined));
+                }
+                case WireFormat.JOIN_GAME: {
+                    int playerId = service.joinGame(in.readInt(), this);
+                    return WireFormat.frame(WireFormat.REPLY, callId, out -> out.writeInt(playerId));
+                }
+                case WireFormat.MAKE_MOVE: {
+                    boolean accepted = service.makeMove(in.readInt(), in.readByte(), in.readByte(), in.readByte());
+                    return WireFormat.frame(WireFormat.REPLY, callId, out -> out.writeBoolean(accepted));
+                }
+                case WireFormat.PLAY_AGAIN: {
+                    boolean result = service.playAgain(in.readInt(), in.readByte(), in.readBoolean());
+                    return WireFormat.frame(WireFormat.REPLY, callId, out -> out.writeBoolean(result));
+                }
+                case WireFormat.QUIT:
+                    service.quitGame(in.readInt(), in.readByte());
+                    return WireFormat.frame(WireFormat.REPLY, callId, null);
+                case WireFormat.RESYNC:
+                    service.resyncBoard(in.readInt(), in.readByte());
+                    return WireFormat.frame(WireFormat.REPLY, callId, null);
+                case WireFormat.CHAT:
+                    service.sendChat(in.readInt(), in.readByte(), in.readUTF());
+                    return WireFormat.frame(WireFormat.REPLY, callId, null);
+                case WireFormat.RESUME: {
+                    JoinResult resumed = service.resumeGame(in.readInt(), in.readByte(), in.readLong(), this);
+                    return WireFormat.frame(WireFormat.REPLY, callId, out -> {
+                        out.writeBoolean(resumed != null);
+                        if (resumed != null) {
+                            WireFormat.writeJoinResult(out, resumed);
+                        }
+                    });
+                }
+                case WireFormat.WATCH: {
+                    GameOptions options = service.watchGame(in.readInt(), this);
+                    return WireFormat.frame(WireFormat.REPLY, callId, out -> WireFormat.writeOptions(out, options));
+                }
+                default:
+                    throw new RemoteException("Unknown opcode " + opcode);
+            }
+        }
+
+        // Selector thread only. The seat is released by the session once its next callback
+        // fails or its lease runs out.
+        private void close() {
+            closed = true;
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            Outbound frame;
+            while ((frame = out.poll()) != null) {
+                done(frame, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package server;
+
+import common.GameConstants;
+
+import java.util.Arrays;
+
+// Best move for every 3x3 position, solved once at class load. A position is the base-3 number
+// sum(cell value * 3^cell) with 0 empty, 1 X (player 1) and 2 O (player 2); either player may
+// move first, so the table is indexed by the player to move as well. Moves at play time are a
+// single array read. Among equal outcomes the table prefers the quickest win or the slowest loss.
+final class PerfectPlayTable {
+    static final int CELLS = GameConstants.BOARD_SIZE * GameConstants.BOARD_SIZE;
+    static final int POSITIONS = 19_683; // 3^9
+
+    private static final int[][] LINES = {
+            {0, 1, 2}, {3, 4, 5}, {6, 7, 8},
+            {0, 3, 6}, {1, 4, 7}, {2, 5, 8},
+            {0, 4, 8}, {2, 4, 6}
+    };
+    private static final int[] POWERS = new int[CELLS];
+    private static final byte UNSOLVED = Byte.MIN_VALUE;
+
+    // [player to move - 1][position]: cell to play, or -1 when the game is over
+    private static final byte[][] bestMove = new byte[2][POSITIONS];
+    // Outcome for the player to move: positive wins, negative loses, larger magnitude is sooner
+    private static final byte[][] score = new byte[2][POSITIONS];
+    private static int solved;
+
+    static {
+        for (int cell = 0, power = 1; cell < CELLS; cell++, power *= 3) {
+            POWERS[cell] = power;
+        }
+        for (byte[] row : score) {
+            Arrays.fill(row, UNSOLVED);
+        }
+        solve(0, 1);
+        solve(0, 2);
+    }
+
+    private PerfectPlayTable() {
+    }
+
+    static int bestMove(int position, int playerToMove) {
+        return bestMove[playerToMove - 1][position];
+    }
+
+    // Positions reachable from an empty board with either player starting
+    static int positionCount() {
+        return solved;
+    }
+
+    // Index of a board holding 0 (empty) or the player id per cell
+    static int encode(byte[] board) {
+        int position = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            position += board[cell] * POWERS[cell];
+        }
+        return position;
+    }
+
+    static int withStone(int position, int cell, int playerId) {
+        return position + playerId * POWERS[cell];
+    }
+
+    static int cellValue(int position, int cell) {
+        return position / POWERS[cell] % 3;
+    }
+
+    private static int solve(int position, int mover) {
+        byte known = score[mover - 1][position];
+        if (known != UNSOLVED) {
+            return known;
+        }
+        solved++;
+        int empty = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (cellValue(position, cell) == 0) {
+                empty++;
+            }
+        }
+        int result;
+        int move = -1;
+        if (hasLine(position, 3 - mover)) {
+            // The opponent just completed a line; losing later is better than losing now
+            result = -(empty + 1);
+        } else if (empty == 0) {
+            result = 0;
+        } else {
+            result = Integer.MIN_VALUE;
+            for (int cell = 0; cell < CELLS; cell++) {
+                if (cellValue(position, cell) != 0) {
+                    continue;
+                }
+                int value = -solve(withStone(position, cell, mover), 3 - mover);
+                if (value > result) {
+                    result = value;
+                    move = cell;
+                }
+            }
+        }
+        score[mover - 1][position] = (byte) result;
+        bestMove[mover - 1][position] = (byte) move;
+        return result;
+    }
+
+    private static boolean hasLine(int position, int playerId) {
+        for (int[] line : LINES) {
+            if (cellValue(position, line[0]) == playerId && cellValue(position, line[1]) == playerId
+                    && cellValue(position, line[2]) == playerId) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -2,14 +2,11 @@ package server;
 
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
-import common.TicTacToeService;
-import java.rmi.server.RemoteServer;
-import java.rmi.server.ServerNotActiveException;
+import common.GameConstants;
+import common.GameOptions;
 
 
 public class ServerMain {
-    private static final int FIXED_PORT = 1099;
-    private static final int SERVICE_PORT_BASE = 1100;
 
     public static void main(String[] args) {
         if (args.length < 1) {
@@ -20,17 +17,28 @@ public class ServerMain {
         try {
             String serverIP = args[0];
             System.setProperty("java.rmi.server.hostname", serverIP);
+            // rmi (default), nio, or both side by side
+            String transport = System.getProperty(GameConstants.TRANSPORT_PROPERTY, "rmi");
             
-            Registry registry = LocateRegistry.createRegistry(FIXED_PORT);
-            TicTacToeServiceImpl service1 = new TicTacToeServiceImpl(SERVICE_PORT_BASE);
-            registry.rebind("TicTacToeService1", service1);
+            MoveJournal.open();
+            Recovery.recover();
+            SessionSnapshot.schedule();
+            TicTacToeServiceImpl service;
+            if (transport.equals("nio")) {
+                SessionPool.prewarm(GameOptions.STANDARD);
+                service = new TicTacToeServiceImpl();
+            } else {
+                Registry registry = LocateRegistry.createRegistry(GameConstants.REGISTRY_PORT);
+                service = TicTacToeServer.exportService(registry, GameConstants.SERVICE_PORT);
+            }
+            if (!transport.equals("rmi")) {
+                NioTransport.start(service, GameConstants.NIO_PORT);
+            }
+            ServerMetrics.register();
             
-            TicTacToeServer.registerPermanentService("TicTacToeService1", service1);
-            TicTacToeServer.setPortConfiguration(SERVICE_PORT_BASE);
-            
-            System.out.println("Server ready at " + serverIP);
+            System.out.println("Server ready at " + serverIP + " (" + transport + ")");
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+}
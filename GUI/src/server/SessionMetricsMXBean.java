@@ -0,0 +1,18 @@
+package server;
+
+// JMX view of session churn, registered as tictactoe:type=Sessions
+public interface SessionMetricsMXBean {
+    int getActiveSessions();
+
+    // Idle sessions waiting in the SessionPool for reuse
+    int getPooledSessions();
+
+    // Sessions created since startup
+    long getTotalSessions();
+
+    double getPoolHitRate();
+
+    long getTotalJoins();
+
+    double getJoinsPerSecond();
+}
@@ -0,0 +1,209 @@
+package server;
+
+import common.GameOptions;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Compact image of every live session, written every -Dtictactoe.snapshotSeconds next to the
+// journal so that a restart only replays the records appended since. Per session it keeps the
+// rules, phase, turn, winner, move sequence, state version, the seats held (and which of them is
+// the computer) and the board at 2 bits a cell, about 30 bytes for a 3x3 game. Resume tokens are
+// derived from the session id and seat (see ResumeTokens), so they need no room here.
+// The snapshot remembers the journal position taken before the sessions are read: every
+// transition it missed has a record at or after that position, and records of transitions it
+// did see are recognised by their state version. The file is written aside and renamed over the
+// previous one, with a CRC at the end, so a crash mid-write leaves the old snapshot in place.
+public final class SessionSnapshot {
+    static final String FILE_NAME = "sessions.snapshot";
+    private static final int MAGIC = 0x54545453;
+    private static final int FORMAT = 1;
+    private static final long INTERVAL_SECONDS = Long.getLong("tictactoe.snapshotSeconds", 30);
+    private static final GameState.Phase[] PHASES = GameState.Phase.values();
+
+    private static boolean scheduled;
+
+    // One session as read back
+    static final class Entry {
+        final int sessionId;
+        final GameOptions options;
+        final GameState state;
+        final int seatFlags;
+
+        Entry(int sessionId, GameOptions options, GameState state, int seatFlags) {
+            this.sessionId = sessionId;
+            this.options = options;
+            this.state = state;
+            this.seatFlags = seatFlags;
+        }
+    }
+
+    static final class Image {
+        // First journal record the snapshot may not reflect
+        final long journalPosition;
+        final int nextSessionId;
+        final List<Entry> entries;
+
+        Image(long journalPosition, int nextSessionId, List<Entry> entries) {
+            this.journalPosition = journalPosition;
+            this.nextSessionId = nextSessionId;
+            this.entries = entries;
+        }
+    }
+
+    private SessionSnapshot() {
+    }
+
+    // Starts the snapshot thread once the journal is open; 0 seconds disables it
+    public static synchronized void schedule() {
+        if (scheduled || INTERVAL_SECONDS <= 0 || !MoveJournal.isOpen()) {
+            return;
+        }
+        scheduled = true;
+        Thread thread = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(INTERVAL_SECONDS * 1_000);
+                    write();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    System.err.println("Session snapshot failed: " + e);
+                }
+            }
+        }, "session-snapshot");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Snapshot of the live sessions into the open journal's directory; returns how many it holds
+    public static int write() throws IOException {
+        Path directory = MoveJournal.getDirectory();
+        if (directory == null) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        long position = MoveJournal.nextRecord();
+        Path temporary = directory.resolve(FILE_NAME + ".tmp");
+        int count = 0;
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32 crc = new CRC32();
+            OutputStream raw = Channels.newOutputStream(file);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(raw, crc), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(position);
+            out.writeInt(TicTacToeServer.nextSessionId());
+            for (GameSession session : TicTacToeServer.sessions()) {
+                int seatFlags = session.getSeatFlags();
+                if (seatFlags == 0) {
+                    continue;
+                }
+                writeSession(out, session.getSessionId(), session.getOptions(), session.getState(), seatFlags);
+                count++;
+            }
+            // Session ids are never negative, so this ends the list
+            out.writeInt(-1);
+            out.flush();
+            out = new DataOutputStream(raw);
+            out.writeLong(crc.getValue());
+            out.flush();
+            file.force(true);
+        }
+        Files.move(temporary, directory.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Snapshot of " + count + " sessions at journal record " + position + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return count;
+    }
+
+    private static void writeSession(DataOutputStream out, int sessionId, GameOptions options, GameState state,
+                                     int seatFlags) throws IOException {
+        out.writeInt(sessionId);
+        out.writeByte(options.getBoardSize());
+        out.writeByte(options.getWinLength());
+        out.writeByte(state.getPhase().ordinal());
+        out.writeByte(state.getCurrentPlayer());
+        out.writeByte(state.getWinner());
+        out.writeByte(seatFlags);
+        out.writeLong(state.getSequence());
+        out.writeLong(state.getVersion());
+        BitBoard board = state.getBoard();
+        int size = options.getBoardSize();
+        int packed = 0;
+        int cell = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++, cell++) {
+                packed |= board.stoneAt(row, col) << ((cell & 3) * 2);
+                if ((cell & 3) == 3) {
+                    out.writeByte(packed);
+                    packed = 0;
+                }
+            }
+        }
+        if ((cell & 3) != 0) {
+            out.writeByte(packed);
+        }
+    }
+
+    // The last snapshot in the directory, or null if there is none or it does not check out
+    static Image read(Path directory) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(directory.resolve(FILE_NAME));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, Math.max(0, bytes.length - Long.BYTES));
+        if (bytes.length < 24 || in.getInt() != MAGIC || in.getInt() != FORMAT
+                || in.getLong(bytes.length - Long.BYTES) != crc.getValue()) {
+            System.err.println("Ignoring damaged session snapshot in " + directory);
+            return null;
+        }
+        long position = in.getLong();
+        int nextSessionId = in.getInt();
+        List<Entry> entries = new ArrayList<>();
+        int sessionId;
+        while ((sessionId = in.getInt()) >= 0) {
+            GameOptions options = new GameOptions(in.get(), in.get());
+            GameState.Phase phase = PHASES[in.get()];
+            int currentPlayer = in.get();
+            int winner = in.get();
+            int seatFlags = in.get();
+            long sequence = in.getLong();
+            long version = in.getLong();
+            int size = options.getBoardSize();
+            BitBoard board = new BitBoard(options);
+            int packed = 0;
+            for (int cell = 0; cell < size * size; cell++) {
+                if ((cell & 3) == 0) {
+                    packed = in.get();
+                }
+                int stone = (packed >>> ((cell & 3) * 2)) & 3;
+                if (stone != 0) {
+                    board.place(cell / size, cell % size, stone);
+                }
+            }
+            entries.add(new Entry(sessionId, options,
+                    GameState.restore(board, phase, currentPlayer, sequence, version, winner), seatFlags));
+        }
+        return new Image(position, nextSessionId, entries);
+    }
+}
@@ -0,0 +1,18 @@
+package server;
+
+// JMX view of spectators, registered as tictactoe:type=Spectators
+public interface SpectatorMetricsMXBean {
+    // Watching now, across all games
+    long getWatchers();
+
+    // Updates encoded for spectators; each is shared by every watcher of its game
+    long getFrames();
+
+    double getAverageFrameEncodeMicros();
+
+    // onEvents calls made to spectators
+    long getDeliveries();
+
+    // Times a slow watcher skipped frames and was sent the latest full board instead
+    long getCatchUps();
+}
@@ -1,25 +1,72 @@
 package server;
 
+import common.GameConstants;
+import common.GameOptions;
+import common.JoinResult;
+import common.PlayerCallback;
+
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
-import java.util.Map;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class TicTacToeServer {
-    private static final int MAX_SESSIONS = 6;
-    private static final ConcurrentHashMap<String, TicTacToeServiceImpl> activeSessions = new ConcurrentHashMap<>();
-    private static final AtomicInteger sessionCounter = new AtomicInteger(2);
-    private static TicTacToeServiceImpl permanentService;
-    private static int portBase = 1100; // Default base port
+    private static final int DEFAULT_MAX_SESSIONS = Integer.getInteger("tictactoe.maxSessions", 50_000);
+    // How long a waiting player waits for a human before the computer takes seat 2; 0 disables
+    // the computer opponent
+    private static final long AI_SEAT_SECONDS = Long.getLong("tictactoe.aiSeatSeconds", 30);
+    private static final ConcurrentHashMap<Integer, GameSession> activeSessions = new ConcurrentHashMap<>();
+    // Ids of sessions with exactly one seated player, oldest first, one queue per board rules.
+    // Entries can go stale when the waiting player leaves or a direct joinGame fills the seat;
+    // they are dropped on poll. Ids are never reused, so a stale entry cannot match a pooled
+    // session that now serves another match.
+    private static final ConcurrentHashMap<GameOptions, ConcurrentLinkedQueue<Integer>> waitingSessions =
+            new ConcurrentHashMap<>();
+    // Recovered sessions no player has reattached to yet. One with a single seat joins the queue
+    // only once that player is back: until then the seat is a placeholder that lapses after the
+    // grace period.
+    private static final Set<Integer> awaitingResume = ConcurrentHashMap.newKeySet();
+    private static final AtomicInteger sessionCounter = new AtomicInteger(1);
+    private static final AtomicInteger sessionCount = new AtomicInteger();
+    private static volatile int maxSessions = DEFAULT_MAX_SESSIONS;
+    // RMI holds exported objects weakly and the registry only has the stub
+    private static volatile TicTacToeServiceImpl exportedService;
+
+    public static void setMaxSessions(int limit) {
+        maxSessions = limit;
+    }
 
-    public static void setPortConfiguration(int basePort) {
-        portBase = basePort;
+    public static GameSession getSession(int sessionId) {
+        return activeSessions.get(sessionId);
     }
-    public static void registerPermanentService(String serviceName, TicTacToeServiceImpl service) {
-        permanentService = service;
-        activeSessions.put(serviceName, service);
+
+    public static int getActiveSessionCount() {
+        return sessionCount.get();
+    }
+
+    // Id the next new session gets
+    static int nextSessionId() {
+        return sessionCounter.get();
+    }
+
+    // After a restart: ids up to the highest one in the journal stay retired
+    static void reserveSessionIds(int next) {
+        sessionCounter.accumulateAndGet(next, Math::max);
+    }
+
+    // Exports the single multiplexed endpoint and binds it under the well-known name
+    public static TicTacToeServiceImpl exportService(Registry registry, int servicePort) throws RemoteException {
+        SessionPool.prewarm(GameOptions.STANDARD);
+        TicTacToeServiceImpl service = new TicTacToeServiceImpl(servicePort);
+        exportedService = service;
+        registry.rebind(GameConstants.SERVICE_NAME, UnicastRemoteObject.toStub(service));
+        System.out.println(SessionPool.describe());
+        return service;
     }
 
     public static void main(String[] args) {
@@ -27,12 +74,17 @@ public class TicTacToeServer {
             // Create registry if it doesn't exist
             Registry registry;
             try {
-                registry = LocateRegistry.createRegistry(1099);
-                System.out.println("RMI registry created on port 1099");
+                registry = LocateRegistry.createRegistry(GameConstants.REGISTRY_PORT);
+                System.out.println("RMI registry created on port " + GameConstants.REGISTRY_PORT);
             } catch (Exception e) {
-                registry = LocateRegistry.getRegistry(1099);
-                System.out.println("Using existing RMI registry on port 1099");
+                registry = LocateRegistry.getRegistry(GameConstants.REGISTRY_PORT);
+                System.out.println("Using existing RMI registry on port " + GameConstants.REGISTRY_PORT);
             }
+            MoveJournal.open();
+            Recovery.recover();
+            SessionSnapshot.schedule();
+            exportService(registry, GameConstants.SERVICE_PORT);
+            ServerMetrics.register();
 
             System.out.println("TicTacToeServer ready with dynamic session management...");
         } catch (Exception e) {
@@ -41,55 +93,161 @@ public class TicTacToeServer {
         }
     }
 
-    public static synchronized String connectToAvailableSession() throws RemoteException {
-        // First try to find a session with only one player
-        for (Map.Entry<String, TicTacToeServiceImpl> entry : activeSessions.entrySet()) {
-            if (!entry.getKey().equals("TicTacToeService1") && 
-                entry.getValue().getPlayerCount() == 1) {
-                return entry.getKey();
+    public static int connectToAvailableSession() throws RemoteException {
+        // Prefer the oldest session that still has a player waiting for an opponent
+        ConcurrentLinkedQueue<Integer> queue = waitingQueue(GameOptions.STANDARD);
+        Integer waitingId;
+        while ((waitingId = queue.peek()) != null) {
+            if (waitingSession(waitingId) != null) {
+                return waitingId;
             }
+            queue.remove(waitingId);
         }
-    
-        // Create new session if we have capacity
-        if (activeSessions.size() < MAX_SESSIONS) {
-            try {
-                Registry registry = LocateRegistry.getRegistry(1099);
-                return createNewSession(registry);
-            } catch (Exception e) {
-                throw new RemoteException("Failed to create new session", e);
+        return createNewSession(GameOptions.STANDARD).getSessionId();
+    }
+
+    public static int joinGame(GameSession session, PlayerCallback callback) throws RemoteException {
+        int playerId = session.joinGame(callback);
+        if (playerId == 1) {
+            offerWaiting(session);
+        }
+        return playerId;
+    }
+
+    // Makes a session with one seated player available to matchmaking and, after a while, to
+    // the computer opponent
+    private static void offerWaiting(GameSession session) {
+        int sessionId = session.getSessionId();
+        waitingQueue(session.getOptions()).offer(sessionId);
+        if (AI_SEAT_SECONDS > 0) {
+            TimerWheel.schedule(() -> seatComputer(sessionId, session.getOptions()), AI_SEAT_SECONDS,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    // Runs on the timer wheel; the queue entry goes stale and is dropped on the next poll
+    private static void seatComputer(int sessionId, GameOptions options) {
+        GameSession waiting = waitingSession(sessionId);
+        if (waiting == null) {
+            return;
+        }
+        AiPlayer computer = new AiPlayer(sessionId, 2, options);
+        try {
+            if (waiting.joinWaiting(sessionId, computer) == 2) {
+                computer.startHeartbeat();
+                waiting.sendNotice("No opponent arrived, so you are playing the computer.");
+                System.out.println("No opponent for session " + sessionId + " after " + AI_SEAT_SECONDS
+                        + "s; computer player seated");
+            }
+        } catch (RemoteException e) {
+            System.err.println("Could not seat computer player: " + e.getMessage());
+        }
+    }
+
+    // Pairs with the oldest waiting player or opens a new session; each attempt is a queue
+    // poll plus one join on an uncontended session, so no global lock is taken
+    public static JoinResult quickJoin(PlayerCallback callback, GameOptions options) throws RemoteException {
+        if (options == null || !options.isValid()) {
+            throw new RemoteException("Unsupported board rules: " + options);
+        }
+        ConcurrentLinkedQueue<Integer> queue = waitingQueue(options);
+        Integer waitingId;
+        while ((waitingId = queue.poll()) != null) {
+            GameSession waiting = waitingSession(waitingId);
+            if (waiting == null) {
+                continue;
+            }
+            // -1 means the waiting player already left or was paired; try the next one
+            if (waiting.joinWaiting(waitingId, callback) == 2) {
+                return new JoinResult(waitingId, 2, options, ResumeTokens.tokenFor(waitingId, 2));
             }
         }
-    
-        throw new RemoteException("All sessions are full");
+
+        GameSession session = createNewSession(options);
+        int sessionId = session.getSessionId();
+        int playerId = joinGame(session, callback);
+        return new JoinResult(sessionId, playerId, options, ResumeTokens.tokenFor(sessionId, playerId));
     }
 
-    private static synchronized String createNewSession(Registry registry) throws RemoteException {
-        if (activeSessions.size() >= MAX_SESSIONS) {
-            throw new RemoteException("Maximum number of sessions reached");
+    public static JoinResult resumeGame(int sessionId, int playerId, long resumeToken, PlayerCallback callback)
+            throws RemoteException {
+        if (!ResumeTokens.matches(sessionId, playerId, resumeToken)) {
+            throw new RemoteException("Invalid resume token for session " + sessionId);
+        }
+        GameSession session = activeSessions.get(sessionId);
+        if (session == null || !session.resume(playerId, callback)) {
+            return null;
+        }
+        System.out.println("Player " + playerId + " reattached to session " + sessionId);
+        // Only a recovered session left with its returning player alone needs an opponent
+        if (awaitingResume.remove(sessionId) && session.getPlayerCount() == 1) {
+            offerWaiting(session);
+        }
+        return new JoinResult(sessionId, playerId, session.getOptions(), resumeToken);
+    }
+
+    public static GameOptions watchGame(int sessionId, PlayerCallback callback) throws RemoteException {
+        GameSession session = activeSessions.get(sessionId);
+        if (session == null) {
+            throw new RemoteException("Game session " + sessionId + " no longer exists.");
+        }
+        session.watch(sessionId, callback);
+        return session.getOptions();
+    }
+
+    // Live sessions, for snapshots; a weakly consistent view
+    static Iterable<GameSession> sessions() {
+        return activeSessions.values();
+    }
+
+    // Puts a session rebuilt by Recovery back in service under its old id. Called before the
+    // service is exported, from several recovery threads at once. New ids continue after the
+    // highest recovered one. Registered before its seats are, so it can be found as soon as
+    // they are back. A session whose one player is waiting goes back in the queue when that
+    // player reattaches, so nobody is paired with a seat whose owner may never return.
+    static void restore(GameSession session) {
+        int sessionId = session.getSessionId();
+        sessionCounter.accumulateAndGet(sessionId + 1, Math::max);
+        sessionCount.incrementAndGet();
+        track(session);
+        awaitingResume.add(sessionId);
+    }
+
+    private static ConcurrentLinkedQueue<Integer> waitingQueue(GameOptions options) {
+        return waitingSessions.computeIfAbsent(options, key -> new ConcurrentLinkedQueue<>());
+    }
+
+    private static GameSession waitingSession(int sessionId) {
+        GameSession session = activeSessions.get(sessionId);
+        return session != null && session.getPlayerCount() == 1 ? session : null;
+    }
+
+    private static GameSession createNewSession(GameOptions options) throws RemoteException {
+        if (sessionCount.incrementAndGet() > maxSessions) {
+            sessionCount.decrementAndGet();
+            throw new RemoteException("All sessions are full");
         }
 
         int sessionId = sessionCounter.getAndIncrement();
-        String serviceName = "TicTacToeService" + sessionId;
-        
-        // Calculate port for this service (base + sessionId)
-        int servicePort = portBase + sessionId;
-        TicTacToeServiceImpl gameService = new TicTacToeServiceImpl(servicePort);
-        
-        gameService.setCleanupCallback(() -> {
-            try {
-                if (!serviceName.equals("TicTacToeService1")) {
-                    registry.unbind(serviceName);
-                }
-                activeSessions.remove(serviceName);
-                System.out.println("Session " + serviceName + " cleaned up");
-            } catch (Exception e) {
-                System.err.println("Error cleaning up session: " + e.getMessage());
+        GameSession session = SessionPool.acquire(sessionId, options);
+        track(session);
+        ServerMetrics.sessionCreated();
+        MoveJournal.append(MoveJournal.Type.SESSION_CREATED, sessionId, 0, options.getBoardSize(),
+                options.getWinLength(), session.getState().getVersion());
+        System.out.println("Created new session: " + sessionId + " " + options);
+        return session;
+    }
+
+    private static void track(GameSession session) {
+        int sessionId = session.getSessionId();
+        session.setCleanupCallback(() -> {
+            if (activeSessions.remove(sessionId, session)) {
+                awaitingResume.remove(sessionId);
+                sessionCount.decrementAndGet();
+                System.out.println("Session " + sessionId + " cleaned up");
+                SessionPool.release(session);
             }
         });
-
-        registry.rebind(serviceName, gameService);
-        activeSessions.put(serviceName, gameService);
-        System.out.println("Created new session: " + serviceName + " on port " + servicePort);
-        return serviceName;
+        activeSessions.put(sessionId, session);
     }
 }